@@ -54,7 +54,7 @@ class AdvancementCalculatorTest extends Specification implements CristalTestSetu
 
     def printVertex(v) {
         print " - $v.path"
-        if(v instanceof Activity) println "- active:"+((Activity)v).active
+        if(v instanceof Activity) println "- active:"+((Activity)v).getActive()
         else println ""
     }
 
@@ -70,7 +70,7 @@ class AdvancementCalculatorTest extends Specification implements CristalTestSetu
                             true
         ).each {
             printVertex(it)
-            if(it instanceof Activity && ((Activity)it).active) activeActs.add(it)
+            if(it instanceof Activity && ((Activity)it).getActive()) activeActs.add(it)
         }
 
         return activeActs
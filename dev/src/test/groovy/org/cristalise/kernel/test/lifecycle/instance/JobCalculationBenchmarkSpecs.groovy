@@ -0,0 +1,177 @@
+/**
+ * This file is part of the CRISTAL-iSE Development Module.
+ * Copyright (c) 2001-2017 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.lifecycle.instance
+
+import org.cristalise.dsl.lifecycle.instance.BlockDelegate
+import org.cristalise.dsl.test.builders.WorkflowTestBuilder
+import org.cristalise.kernel.entity.Job
+import org.cristalise.kernel.lifecycle.instance.CompositeActivity
+import org.cristalise.kernel.process.Gateway
+import org.cristalise.kernel.test.utils.CristalTestSetup
+
+import groovy.util.logging.Slf4j
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Checks that the Job calculation using the index of active Activities returns the same Jobs as the
+ * recursive walk of the whole Workflow on wide and deep CompositeActivities. The features measuring
+ * the two calculations are only executed with the 'benchmark' profile.
+ */
+@Slf4j
+class JobCalculationBenchmarkSpecs extends Specification implements CristalTestSetup {
+
+    static final String USE_ACTIVE_INDEX = 'Workflow.calculateJobs.useActiveIndex'
+
+    static final int WARMUP     = 50
+    static final int ITERATIONS = 200
+
+    static WorkflowTestBuilder util
+
+    def setupSpec() {
+        inMemoryServer(null, true)
+        util = new WorkflowTestBuilder()
+    }
+
+    def cleanup() {
+        Gateway.getProperties().remove(USE_ACTIVE_INDEX)
+    }
+
+    def cleanupSpec() {
+        cristalCleanup()
+    }
+
+    static void nestedCompAct(BlockDelegate parent, int depth, int width) {
+        parent.CompAct("ca$depth") {
+            (1..width).each { ElemAct("act${depth}_$it") }
+            if (depth > 1) nestedCompAct((BlockDelegate) delegate, depth - 1, width)
+        }
+    }
+
+    CompositeActivity getDomain() {
+        return (CompositeActivity) util.wf.search('workflow/domain')
+    }
+
+    List<String> calculateJobs(boolean useIndex) {
+        Gateway.getProperties().put(USE_ACTIVE_INDEX, String.valueOf(useIndex))
+
+        return getDomain().calculateJobs(util.agentPath, util.itemPath, true).collect { Job j ->
+            "$j.stepPath:$j.transitionName".toString()
+        }
+    }
+
+    long measure(boolean useIndex, int count) {
+        Gateway.getProperties().put(USE_ACTIVE_INDEX, String.valueOf(useIndex))
+        CompositeActivity domain = getDomain()
+
+        long start = System.nanoTime()
+        for (int i = 0; i < count; i++) domain.calculateJobs(util.agentPath, util.itemPath, true)
+        return System.nanoTime() - start
+    }
+
+    static long opsPerSec(long nanos) {
+        return ITERATIONS * 1_000_000_000L / Math.max(1, nanos)
+    }
+
+    void benchmark(String name) {
+        measure(false, WARMUP)
+        measure(true,  WARMUP)
+
+        long recursive = measure(false, ITERATIONS)
+        long indexed   = measure(true,  ITERATIONS)
+
+        log.info("benchmark() - {} jobs:{} recursive:{} ops/s activeIndex:{} ops/s",
+            name, calculateJobs(true).size(), opsPerSec(recursive), opsPerSec(indexed))
+    }
+
+    void buildWideWf() {
+        util.buildAndInitWf {
+            AndSplit {
+                (1..50).each { i -> B { (1..20).each { j -> ElemAct("wide${i}_$j") } } }
+            }
+        }
+    }
+
+    void buildDeepWf() {
+        util.buildAndInitWf { nestedCompAct((BlockDelegate) delegate, 20, 10) }
+    }
+
+    def 'Jobs of wide AndSplit are the same using the index of active Activities'() {
+        when: "AndSplit with 50 branches each containing 20 ElemActs is initialised"
+        buildWideWf()
+
+        then: "the first ElemActs have the Jobs"
+        calculateJobs(true).size() > 0
+        calculateJobs(true) == calculateJobs(false)
+
+        when: "the first ElemAct of each branch is finished"
+        (1..50).each { util.requestAction("wide${it}_1", "Done") }
+
+        then: "the next ElemActs have the Jobs"
+        calculateJobs(true) == calculateJobs(false)
+        calculateJobs(true).every { it.contains('_2:') }
+    }
+
+    def 'Jobs of deeply nested CompActs are the same using the index of active Activities'() {
+        when: "20 nested CompActs each containing 10 ElemActs are initialised"
+        buildDeepWf()
+
+        then:
+        calculateJobs(true) == calculateJobs(false)
+
+        when: "the ElemActs of the outermost 3 CompActs are finished"
+        (20..18).each { depth ->
+            (1..10).each { util.requestAction("act${depth}_$it", "Done") }
+        }
+
+        then: "the ElemActs of the next CompAct have the Jobs"
+        calculateJobs(true) == calculateJobs(false)
+        calculateJobs(true).every { it.contains('/ca17/act17_1:') }
+    }
+
+    @Requires({ Boolean.getBoolean('benchmark') })
+    def 'Benchmark Job calculation of wide AndSplit'() {
+        given: "the first ElemAct of each branch is finished"
+        buildWideWf()
+        (1..50).each { util.requestAction("wide${it}_1", "Done") }
+
+        when:
+        benchmark('wide(50x20)')
+
+        then:
+        noExceptionThrown()
+    }
+
+    @Requires({ Boolean.getBoolean('benchmark') })
+    def 'Benchmark Job calculation of deeply nested CompActs'() {
+        given: "the ElemActs of the outermost 3 CompActs are finished"
+        buildDeepWf()
+        (20..18).each { depth ->
+            (1..10).each { util.requestAction("act${depth}_$it", "Done") }
+        }
+
+        when:
+        benchmark('deep(20x10)')
+
+        then:
+        noExceptionThrown()
+    }
+}
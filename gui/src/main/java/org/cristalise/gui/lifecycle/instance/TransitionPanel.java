@@ -149,7 +149,7 @@ public class TransitionPanel extends SelectedVertexPanel implements ActionListen
                 states.setSelectedItem(thisState);
         }
         states.setEnabled(true);
-        active.setSelected(mCurrentAct.active);
+        active.setSelected(mCurrentAct.getActive());
         active.setEnabled(true);
         List<Transition> transitions;
         try {
@@ -183,7 +183,7 @@ public class TransitionPanel extends SelectedVertexPanel implements ActionListen
     public void actionPerformed(ActionEvent e) {
         if (active.isEnabled()) {
             if (e.getSource() == active && mCurrentAct != null) {
-                mCurrentAct.active = active.isSelected();
+                mCurrentAct.setActive(active.isSelected());
                 return;
             }
         }
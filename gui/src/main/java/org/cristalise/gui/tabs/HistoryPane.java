@@ -226,8 +226,8 @@ public class HistoryPane extends ItemTabPane implements ActionListener {
             ids = new Integer[size];
             sm = new StateMachine[size];
             this.startId = startId;
+            for (Event e : history.getRange(startId, startId + size)) event[e.getID() - startId] = e;
             for (int i = 0; i < size; i++) {
-                event[i] = history.getEvent(startId + i);
                 try {
                     sm[i] = LocalObjectLoader.getStateMachine(event[i].getStateMachineName(), event[i].getStateMachineVersion());
                 }
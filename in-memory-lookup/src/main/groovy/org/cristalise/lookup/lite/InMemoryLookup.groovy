@@ -20,6 +20,12 @@
  */
 package org.cristalise.lookup.lite
 
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.ConcurrentNavigableMap
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.ConcurrentSkipListSet
+
 import org.apache.commons.lang3.NotImplementedException
 import org.cristalise.kernel.common.ObjectNotFoundException
 import org.cristalise.kernel.lookup.AgentPath
@@ -46,13 +52,26 @@ abstract class InMemoryLookup extends ClusterStorage implements Lookup {
 
     @Delegate MemoryOnlyClusterStorage propertyStore = new MemoryOnlyClusterStorage()
 
-    protected Map<String, Path> cache = [:] //LinkedHashMap
+    //All Paths sorted by their string path, so the Paths below a given Path can be read as a range
+    protected final ConcurrentNavigableMap<String, Path> cache = new ConcurrentSkipListMap<String, Path>()
 
-    //Maps String RolePath to List of String AgentPath
-    protected Map<String,List<String>> role2AgentsCache  = [:]
+    //Maps String DomainPath/RolePath to the sorted Set of String Path of its direct children
+    protected final ConcurrentMap<String, NavigableSet<String>> childrenIndex = new ConcurrentHashMap<String, NavigableSet<String>>()
+
+    //Maps the name of the Agent to the String AgentPath(s)
+    protected final ConcurrentMap<String, NavigableSet<String>> agentNameIndex = new ConcurrentHashMap<String, NavigableSet<String>>()
+
+    //Maps the name of the Role to the String RolePath(s)
+    protected final ConcurrentMap<String, NavigableSet<String>> roleNameIndex = new ConcurrentHashMap<String, NavigableSet<String>>()
 
     //Maps String RolePath to List of String AgentPath
-    protected Map<String,List<String>> agent2RolesCache = [:]
+    protected final ConcurrentMap<String,List<String>> role2AgentsCache = new ConcurrentHashMap<String,List<String>>()
+
+    //Maps String AgentPath to List of String RolePath
+    protected final ConcurrentMap<String,List<String>> agent2RolesCache = new ConcurrentHashMap<String,List<String>>()
+
+    //Striped locks to add a child to a Path and to delete a leaf Path atomically, selected by the key of the parent
+    private final Object[] pathLocks = (0..<64).collect { new Object() } as Object[]
 
     private Iterator<Path> getEmptyPathIter() {
         return new Iterator<Path>() {
@@ -65,11 +84,112 @@ abstract class InMemoryLookup extends ClusterStorage implements Lookup {
     public void clear() {
         log.info("clear() - Clearing lookup cache and property store")
         cache.clear()
+        childrenIndex.clear()
+        agentNameIndex.clear()
+        roleNameIndex.clear()
         propertyStore.clear()
         role2AgentsCache.clear()
         agent2RolesCache.clear()
     }
 
+    /**
+     * Returns the lock guarding the children of the given Path. Adding a child and deleting a leaf Path
+     * both hold this lock, so a child cannot be added between the check for children and the removal.
+     *
+     * @param key the string path of the parent
+     * @return the lock object
+     */
+    protected Object getPathLock(String key) {
+        return pathLocks[(key.hashCode() & Integer.MAX_VALUE) % pathLocks.length]
+    }
+
+    /**
+     * Adds the Path to the cache and to the indexes unless a Path with the same key exists already
+     *
+     * @param p the Path to be added
+     * @return true if the Path was added, false if it existed already
+     */
+    protected boolean putPath(Path p) {
+        String key = p.stringPath
+
+        //read the name before adding the path to the cache, AgentPath without a name would call the lookup
+        String agentName = (p instanceof AgentPath) ? ((AgentPath)p).agentName : null
+
+        String parentKey = (p instanceof DomainPath || p instanceof RolePath) ? getParentKey(key) : null
+
+        if (parentKey) {
+            synchronized (getPathLock(parentKey)) {
+                if (cache.putIfAbsent(key, p) != null) return false
+                getOrCreate(childrenIndex, parentKey).add(key)
+            }
+        }
+        else if (cache.putIfAbsent(key, p) != null) {
+            return false
+        }
+
+        if      (p instanceof AgentPath && agentName) getOrCreate(agentNameIndex, agentName).add(key)
+        else if (p instanceof RolePath)               getOrCreate(roleNameIndex,  p.name).add(key)
+
+        return true
+    }
+
+    /**
+     * Removes the Path from the cache and from the indexes
+     *
+     * @param key the string path of the Path
+     * @return the removed Path or null if it did not exist
+     */
+    protected Path removePath(String key) {
+        Path p = cache.remove(key)
+
+        if (p == null) return null
+
+        String parentKey = getParentKey(key)
+        if (parentKey) childrenIndex[parentKey]?.remove(key)
+        childrenIndex.remove(key)
+
+        if      (p instanceof AgentPath) agentNameIndex[((AgentPath)p).agentName]?.remove(key)
+        else if (p instanceof RolePath)  roleNameIndex[p.name]?.remove(key)
+
+        return p
+    }
+
+    /**
+     * Checks if the Path has any children, i.e. it is not a leaf
+     */
+    protected boolean hasChildren(Path p) {
+        NavigableSet<String> children = childrenIndex[p.stringPath]
+        return children != null && !children.isEmpty()
+    }
+
+    protected static String getParentKey(String key) {
+        int idx = key.lastIndexOf('/')
+        return idx > 0 ? key.substring(0, idx) : null
+    }
+
+    private static NavigableSet<String> getOrCreate(ConcurrentMap<String, NavigableSet<String>> index, String key) {
+        NavigableSet<String> value = index[key]
+
+        if (value == null) {
+            NavigableSet<String> newValue = new ConcurrentSkipListSet<String>()
+            value = index.putIfAbsent(key, newValue)
+            if (value == null) value = newValue
+        }
+        return value
+    }
+
+    /**
+     * Finds the single Path registered for the name in the given index
+     */
+    private Path findByName(ConcurrentMap<String, NavigableSet<String>> index, String name, String type) throws ObjectNotFoundException {
+        NavigableSet<String> keys = index[name]
+
+        if     (keys == null || keys.size() == 0) throw new ObjectNotFoundException("$name")
+        else if(keys.size() > 1)                  throw new ObjectNotFoundException("Umbiguous result for $type '$name'")
+
+        return retrievePath(keys.iterator().next())
+    }
+
     /**
      *
      *
@@ -121,28 +241,22 @@ abstract class InMemoryLookup extends ClusterStorage implements Lookup {
     public AgentPath getAgentPath(String agentName, TransactionKey transactionKey) throws ObjectNotFoundException {
         log.debug("getAgentPath() - agentName: $agentName")
 
-        def pList = cache.values().findAll {it instanceof AgentPath && ((AgentPath)it).agentName ==  agentName}
-
-        if     (pList.size() == 0) throw new ObjectNotFoundException("$agentName")
-        else if(pList.size() > 1)  throw new ObjectNotFoundException("Umbiguous result for agent '$agentName'")
+        AgentPath agent = (AgentPath) findByName(agentNameIndex, agentName, "agent")
 
         log.debug("getAgentPath() - agentName '$agentName' was found")
 
-        return (AgentPath)pList[0]
+        return agent
     }
 
     @Override
     public RolePath getRolePath(String roleName, TransactionKey transactionKey) throws ObjectNotFoundException {
         log.debug("getRolePath() - roleName: $roleName")
 
-        def pList = cache.values().findAll {it instanceof RolePath && ((RolePath)it).name ==  roleName}
-
-        if     (pList.size() == 0) throw new ObjectNotFoundException("$roleName")
-        else if(pList.size() > 1)  throw new ObjectNotFoundException("Umbiguous result for agent '$roleName'")
+        RolePath role = (RolePath) findByName(roleNameIndex, roleName, "role")
 
         log.debug("getRolePath() - roleName '$roleName' was found")
 
-        return (RolePath)pList[0]
+        return role
     }
 
     /**
@@ -169,26 +283,48 @@ abstract class InMemoryLookup extends ClusterStorage implements Lookup {
     @Override
     public boolean exists(Path path, TransactionKey transactionKey) {
         //log.debug("exists() - Path: $path");
-        return cache.keySet().contains(path.stringPath)
+        return cache.containsKey(path.stringPath)
     }
 
     @Override
     public PagedResult getChildren(Path path, int offset, int limit, TransactionKey transactionKey) {
-        //cache.values().findAll { ((Path)it).stringPath =~ /^$path.stringPath\/\w+$/ }
-        throw new NotImplementedException("Retrieving children of PagedResult is not implemented");
+        return getChildren(path, offset, limit, false, transactionKey)
     }
 
     @Override
     public Iterator<Path> getChildren(Path path, TransactionKey transactionKey) {
         log.debug("getChildren() - Path: $path")
-        return cache.values().findAll { ((Path)it).stringPath =~ /^$path.stringPath\/\w+$/ }.iterator()
+        return getChildren(path, 0, 0, false, transactionKey).rows.iterator()
     }
 
+    /**
+     * Returns the children of the DomainPath or RolePath in the order of their string path. ItemPaths has no children.
+     * 
+     * @param limit the maximum number of returned Paths, 0 or negative value means no limit
+     * @param contextOnly only return the DomainPaths which are contexts, i.e. have no target
+     */
     @Override
     public PagedResult getChildren(Path path, int offset, int limit, boolean contextOnly, TransactionKey transactionKey) {
-        if (!contextOnly) getChildren(path, offset, limit, transactionKey);
+        log.debug("getChildren() - Path: $path offset:$offset limit:$limit contextOnly:$contextOnly")
+
+        NavigableSet<String> children = childrenIndex[path.stringPath]
+
+        if (children == null) return new PagedResult()
+
+        List<Path> rows = []
+        int maxRows = 0
+
+        for (String key : children) {
+            Path child = cache[key]
+
+            if (child == null) continue
+            if (contextOnly && !(child instanceof DomainPath && ((DomainPath)child).isContext())) continue
+
+            if (maxRows >= offset && (limit <= 0 || rows.size() < limit)) rows.add(child)
+            maxRows++
+        }
 
-        throw new NotImplementedException("Retrieving only children of DomainContext is not implemented");
+        return new PagedResult(maxRows, rows)
     }
 
     @Override
@@ -196,7 +332,9 @@ abstract class InMemoryLookup extends ClusterStorage implements Lookup {
         log.debug("search(name: $name) - start: $start")
         def pattern = "^${start.stringPath}.*$name"
         if (constraints == SearchConstraints.EXACT_NAME_MATCH) pattern = "^${start.stringPath}/.*/$name\$"
-        def result = cache.values().findAll { ((Path)it).stringPath =~ /$pattern/ }
+        //only the Paths starting with the path of start can match the pattern
+        String prefix = start.stringPath
+        def result = cache.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values().findAll { ((Path)it).stringPath =~ /$pattern/ }
         log.debug("search(name: $name) - returning ${result.size()} pathes")
         return result.iterator()
     }
@@ -21,6 +21,8 @@
 package org.cristalise.lookup.lite
 
 import java.security.NoSuchAlgorithmException
+import java.util.concurrent.CopyOnWriteArrayList
+
 import org.apache.commons.lang3.NotImplementedException
 import org.cristalise.kernel.common.ObjectAlreadyExistsException
 import org.cristalise.kernel.common.ObjectCannotBeUpdated
@@ -57,7 +59,7 @@ class InMemoryLookupManager extends InMemoryLookup implements LookupManager {
                 createRole(newPath, transactionKey)
             }
             else if(newPath instanceof DomainPath) {
-                cache[newPath.stringPath] = newPath
+                if (!putPath(newPath)) throw new ObjectAlreadyExistsException("$newPath")
 
                 log.trace("add() + Adding each DomainPath element")
                 GString sPath
@@ -67,16 +69,15 @@ class InMemoryLookupManager extends InMemoryLookup implements LookupManager {
 
                     DomainPath d = new DomainPath(sPath)
 
-                    if(exists(d, transactionKey)) {
-                        log.trace("add() + DomainPath '$d' already exists")
+                    if(putPath(d)) {
+                        log.trace("add() + DomainPath '$d' was added")
                     }
                     else {
-                        cache[d.stringPath] = d
-                        log.trace("add() + DomainPath '$d' was added")
+                        log.trace("add() + DomainPath '$d' already exists")
                     }
                 }
             }
-            else cache[newPath.stringPath] = newPath
+            else if (!putPath(newPath)) throw new ObjectAlreadyExistsException("$newPath")
         }
     }
 
@@ -84,24 +85,26 @@ class InMemoryLookupManager extends InMemoryLookup implements LookupManager {
     public void delete(Path path, TransactionKey transactionKey) throws ObjectCannotBeUpdated {
         log.debug("delete() - Path: $path");
 
-        if(exists(path, transactionKey)) {
-            if(search(path, "", SearchConstraints.WILDCARD_MATCH, transactionKey).size() != 1 ) throw new ObjectCannotBeUpdated("Path $path is not a leaf")
+        if(!exists(path, transactionKey)) throw new ObjectCannotBeUpdated("$path does not exists")
+
+        //no child can be added to the path while it is checked and removed
+        synchronized (getPathLock(path.stringPath)) {
+            if(hasChildren(path)) throw new ObjectCannotBeUpdated("Path $path is not a leaf")
 
             if(path instanceof RolePath && role2AgentsCache.containsKey(path.stringPath)) {
                 log.trace("delete() - RolePath: $path");
                 role2AgentsCache[path.stringPath].each { removeRole(new AgentPath(it), (RolePath)path, transactionKey) }
+                role2AgentsCache.remove(path.stringPath)
             }
             else if(path instanceof AgentPath && agent2RolesCache.containsKey(path.stringPath)) {
                 log.trace("delete() - AgentPath: $path");
-                agent2RolesCache[path.stringPath].each { removeRole((AgentPath)path, new RolePath(it.split("/"), false), transactionKey) }
+                agent2RolesCache[path.stringPath].each { removeRole((AgentPath)path, (RolePath)retrievePath(it), transactionKey) }
+                agent2RolesCache.remove(path.stringPath)
             }
 
-            cache.remove(path.stringPath)
+            removePath(path.stringPath)
             log.trace("delete() - $path removed");
         }
-        else {
-            throw new ObjectCannotBeUpdated("$path does not exists")
-        }
     }
 
     @Override
@@ -110,10 +113,17 @@ class InMemoryLookupManager extends InMemoryLookup implements LookupManager {
 
         if(exists(role, transactionKey)) throw new ObjectAlreadyExistsException("$role")
 
-        try                 { role.getParent(transactionKey) } 
-        catch (Throwable t) { log.error("createRole()", t); throw new ObjectCannotBeUpdated("Parent role for '$role' does not exists") }
+        String parentKey = getParentKey(role.stringPath)
+
+        //the parent role cannot be deleted between the check of its existence and the adding of the role
+        synchronized (getPathLock(parentKey ?: role.stringPath)) {
+            try                 { role.getParent(transactionKey) } 
+            catch (Throwable t) { log.error("createRole()", t); throw new ObjectCannotBeUpdated("Parent role for '$role' does not exists") }
 
-        cache[role.stringPath] = role
+            if (!putPath(role)) throw new ObjectAlreadyExistsException("$role")
+        }
+
+        return role
     }
 
     @Override
@@ -125,8 +135,8 @@ class InMemoryLookupManager extends InMemoryLookup implements LookupManager {
 
         if( agent2RolesCache[agent.stringPath]?.find {it == role.stringPath} ) throw new ObjectCannotBeUpdated("Agent '$agent' already has role '$role'")
 
-        if(agent2RolesCache[agent.stringPath] == null) agent2RolesCache[agent.stringPath] = []
-        if(role2AgentsCache[role.stringPath]  == null) role2AgentsCache[role.stringPath] = []
+        agent2RolesCache.putIfAbsent(agent.stringPath, new CopyOnWriteArrayList<String>())
+        role2AgentsCache.putIfAbsent(role.stringPath,  new CopyOnWriteArrayList<String>())
 
         agent2RolesCache[agent.stringPath].add(role.stringPath)
         role2AgentsCache[role.stringPath].add(agent.stringPath)
@@ -141,9 +151,8 @@ class InMemoryLookupManager extends InMemoryLookup implements LookupManager {
 
         if(! agent2RolesCache[agent.stringPath]?.find {it == role.stringPath} ) throw new ObjectCannotBeUpdated("Agent '$agent' has not got such role '$role'")
 
-        List<String> roles = agent2RolesCache[agent.stringPath]
-
-        roles.remove(role)
+        agent2RolesCache[agent.stringPath].remove(role.stringPath)
+        role2AgentsCache[role.stringPath]?.remove(agent.stringPath)
         log.debug("removeRole() - AgentPath: $agent, RolePath: $role -> DONE");
     }
 
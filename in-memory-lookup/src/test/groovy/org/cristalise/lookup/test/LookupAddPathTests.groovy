@@ -3,6 +3,12 @@ package org.cristalise.lookup.test;
 import static org.junit.Assert.*
 import groovy.transform.CompileStatic
 
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
 import org.cristalise.kernel.common.ObjectAlreadyExistsException
 import org.cristalise.kernel.common.ObjectCannotBeUpdated
 import org.cristalise.kernel.lookup.AgentPath
@@ -89,4 +95,41 @@ class LookupAddPathTests extends LookupTestBase {
             assert e.message.contains("Path /domain/empty is not a leaf")
         }
     }
+
+    @Test
+    public void concurrentAddChildAndDeleteParent() {
+        ExecutorService executor = Executors.newFixedThreadPool(2)
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                DomainPath parent = new DomainPath("concurrent$i")
+                DomainPath child  = new DomainPath("concurrent$i/child")
+                lookup.add(parent)
+
+                CountDownLatch start = new CountDownLatch(1)
+
+                Future deleteParent = executor.submit({
+                    start.await()
+                    try { lookup.delete(parent) } catch (ObjectCannotBeUpdated e) {}
+                } as Callable)
+
+                Future addChild = executor.submit({
+                    start.await()
+                    lookup.add(child)
+                } as Callable)
+
+                start.countDown()
+                deleteParent.get()
+                addChild.get()
+
+                //either the delete failed or the add re-created the parent, the child cannot be an orphan
+                assert lookup.exists(child)
+                assert lookup.exists(parent)
+                CompareUtils.comparePathLists([child], lookup.getChildren(parent))
+            }
+        }
+        finally {
+            executor.shutdown()
+        }
+    }
 }
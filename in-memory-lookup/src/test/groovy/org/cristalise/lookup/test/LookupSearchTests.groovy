@@ -52,6 +52,21 @@ class LookupSearchTests extends LookupTestBase {
             lookup.getChildren(new DomainPath("empty")))
     }
     
+    @Test
+    public void getChildrenPaged() {
+        def result = lookup.getChildren(new DomainPath("empty"), 0, 1)
+        assert result.maxRows == 2
+        CompareUtils.comparePathLists([new DomainPath("empty/nothing")], result.rows)
+
+        result = lookup.getChildren(new DomainPath("empty"), 1, 1)
+        assert result.maxRows == 2
+        CompareUtils.comparePathLists([new DomainPath("empty/something")], result.rows)
+
+        result = lookup.getChildren(new DomainPath("empty/something"), 0, 10, true, null)
+        assert result.maxRows == 0
+        assert result.rows.isEmpty()
+    }
+
     @Test
     public void resolvePath() {
         assert lookup.resolvePath(new DomainPath("empty/something/uuid0"))
@@ -24,25 +24,33 @@ import static org.cristalise.storage.jooqdb.JooqDataSourceHandler.retrieveContex
 import static org.cristalise.storage.jooqdb.JooqHandler.getPrimaryKeys;
 import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_disableDomainCreateTables;
 import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_domainHandlers;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_Query_fetchSize;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_Query_templateCacheSize;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_writeBehind;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
-import java.sql.SQLException;
-import java.sql.SQLXML;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
+import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.entity.C2KLocalObject;
 import org.cristalise.kernel.lookup.ItemPath;
 import org.cristalise.kernel.persistency.ClusterStorage;
 import org.cristalise.kernel.persistency.ClusterType;
 import org.cristalise.kernel.persistency.TransactionKey;
+import org.cristalise.kernel.persistency.codec.ClusterCodecs;
 import org.cristalise.kernel.querying.Parameter;
 import org.cristalise.kernel.querying.Query;
 import org.cristalise.storage.jooqdb.clusterStore.JooqCollectionHadler;
@@ -53,14 +61,19 @@ import org.cristalise.storage.jooqdb.clusterStore.JooqLifecycleHandler;
 import org.cristalise.storage.jooqdb.clusterStore.JooqOutcomeAttachmentHandler;
 import org.cristalise.storage.jooqdb.clusterStore.JooqOutcomeHandler;
 import org.cristalise.storage.jooqdb.clusterStore.JooqViewpointHandler;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
-import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.Result;
+import org.jooq.ResultQuery;
 import org.jooq.impl.DSL;
+import org.mvel2.templates.CompiledTemplate;
 import org.mvel2.templates.TemplateCompiler;
 import org.mvel2.templates.TemplateRuntime;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -72,6 +85,28 @@ public class JooqClusterStorage extends ClusterStorage {
     protected Map<ClusterType, JooqHandler> jooqHandlers   = new HashMap<ClusterType, JooqHandler>();
     protected List<JooqDomainHandler>       domainHandlers = new ArrayList<JooqDomainHandler>();
 
+    /**
+     * Buffered writes of the transactions when JOOQ.writeBehind is enabled
+     */
+    private final Map<TransactionKey, JooqWriteBuffer> writeBuffers = new ConcurrentHashMap<>();
+
+    /**
+     * Compiled MVEL templates of the SQL Queries. The key is the UUID and version of the Query Item, 
+     * or the SQL itself for Queries not stored in an Item.
+     */
+    private final Cache<String, CompiledQuery> queryTemplates = 
+            CacheBuilder.newBuilder().maximumSize(JOOQ_Query_templateCacheSize.getInteger()).build();
+
+    private static class CompiledQuery {
+        final String           sql;
+        final CompiledTemplate template;
+
+        CompiledQuery(String sql) {
+            this.sql      = sql;
+            this.template = TemplateCompiler.compileTemplate(sql);
+        }
+    }
+
     @Override
     public void open() throws PersistencyException {
         JooqDataSourceHandler.readSystemProperties();
@@ -179,6 +214,8 @@ public class JooqClusterStorage extends ClusterStorage {
     public void commit(TransactionKey transactionKey) throws PersistencyException {
         log.debug("commit() - transactionKey:{}", transactionKey);
 
+        flush(transactionKey);
+
         DSLContext context = retrieveContext(transactionKey);
 
         for (JooqDomainHandler domainHandler : domainHandlers) domainHandler.commit(context, transactionKey);
@@ -202,10 +239,16 @@ public class JooqClusterStorage extends ClusterStorage {
     public void abort(TransactionKey transactionKey) throws PersistencyException {
         log.debug("abort() - transactionKey:{}", transactionKey);
 
+        if (transactionKey != null) writeBuffers.remove(transactionKey);
+
         DSLContext context = retrieveContext(transactionKey);
 
         for (JooqDomainHandler domainHandler : domainHandlers) domainHandler.abort(context, transactionKey);
 
+        // the rolled back deltas are not known, so the next write of the Workflow shall store a snapshot
+        JooqHandler lifecycleHandler = jooqHandlers.get(ClusterType.LIFECYCLE);
+        if (lifecycleHandler instanceof JooqLifecycleHandler) ((JooqLifecycleHandler)lifecycleHandler).clearPersistedStates();
+
         Connection conn = JooqDataSourceHandler.removeConnection(transactionKey);
         if (conn == null) return;
 
@@ -248,6 +291,8 @@ public class JooqClusterStorage extends ClusterStorage {
     
     @Override
     public int getLastIntegerId(ItemPath itemPath, String path, TransactionKey transactionKey) throws PersistencyException {
+        flush(transactionKey);
+
         DSLContext  context = retrieveContext(transactionKey);
         ClusterType cluster = getClusterType(path);
         JooqHandler handler = jooqHandlers.get(cluster);
@@ -266,15 +311,57 @@ public class JooqClusterStorage extends ClusterStorage {
     }
 
     @Override
-    public String executeQuery(Query query, TransactionKey transactionKey) throws PersistencyException {
-        if(!checkQuerySupport(query.getLanguage())) throw new PersistencyException("Unsupported query:"+query.getLanguage());
+    public List<C2KLocalObject> getIntegerIdRange(ItemPath itemPath, String path, int from, int to, TransactionKey transactionKey) 
+            throws PersistencyException
+    {
+        flush(transactionKey);
 
-        DSLContext context = retrieveContext(transactionKey);
+        ClusterType cluster = getClusterType(path);
+
+        if (cluster == ClusterType.HISTORY && jooqHandlers.containsKey(cluster)) {
+            DSLContext context = retrieveContext(transactionKey);
+            return ((JooqHistoryHandler)jooqHandlers.get(cluster)).fetchRange(context, itemPath.getUUID(), from, to);
+        }
+        else {
+            return super.getIntegerIdRange(itemPath, path, from, to, transactionKey);
+        }
+    }
+
+    /**
+     * Returns the compiled MVEL template of the Query from the cache, or compiles and caches it. The SQL of
+     * the cached template is compared with the actual SQL, so a modified Query is always recompiled.
+     */
+    private CompiledTemplate getCompiledTemplate(Query query) {
+        String sql = query.getQuery();
+
+        if (JOOQ_Query_templateCacheSize.getInteger() == 0) return TemplateCompiler.compileTemplate(sql);
+
+        String key = StringUtils.isBlank(query.getItemID()) ? sql : query.getItemID() + ":" + query.getVersion();
+        CompiledQuery compiled = queryTemplates.getIfPresent(key);
+
+        if (compiled == null || !compiled.sql.equals(sql)) {
+            log.debug("getCompiledTemplate() - compiling query:{} version:{}", query.getName(), query.getVersion());
+            compiled = new CompiledQuery(sql);
+            queryTemplates.put(key, compiled);
+        }
+
+        return compiled.template;
+    }
+
+    /**
+     * Creates the ResultQuery from the MVEL template of the Query using the values of the parameters
+     */
+    private ResultQuery<Record> createResultQuery(DSLContext context, Query query) throws PersistencyException {
+        if(!checkQuerySupport(query.getLanguage())) throw new PersistencyException("Unsupported query:"+query.getLanguage());
 
         Map<Object, Object> params = new HashMap<Object, Object>();
 
         if (query.hasParameters()) {
             for(Parameter p: query.getParameters()) {
+                if (JooqQueryBindings.VARIABLE_NAME.equals(p.getName())) {
+                    throw new PersistencyException("Query:"+query.getName()+" cannot have parameter '"+JooqQueryBindings.VARIABLE_NAME+"', it is a reserved name");
+                }
+
                 if (p.getValue() != null) {
                     log.debug("executeQuery() - param:'"+p.getName()+"' = '"+p.getValue()+"'");
                     params.put(p.getName(), p.getValue());
@@ -282,22 +369,84 @@ public class JooqClusterStorage extends ClusterStorage {
             }
         }
 
-        String sql = query.getQuery();
-        sql = (String)TemplateRuntime.execute(TemplateCompiler.compileTemplate(sql), params);
-        Result<Record> result = context.fetch(sql);
+        JooqQueryBindings bindings = new JooqQueryBindings(new HashMap<>(params));
+        params.put(JooqQueryBindings.VARIABLE_NAME, bindings);
+
+        String sql = (String)TemplateRuntime.execute(getCompiledTemplate(query), params);
+        checkBinaryClusters(query, sql);
+        checkIncrementalLifecycle(query, sql);
+
+        return context.resultQuery(sql, bindings.getValues().toArray());
+    }
+
+    /**
+     * The XML column of the clusters stored with a binary ClusterCodec only contains {@link JooqHandler#NULL_XML},
+     * so queries reading their tables would silently return no data.
+     */
+    private void checkBinaryClusters(Query query, String sql) throws PersistencyException {
+        for (ClusterType cluster : EnumSet.of(ClusterType.LIFECYCLE, ClusterType.COLLECTION, ClusterType.JOB)) {
+            JooqHandler handler = jooqHandlers.get(cluster);
+
+            if (handler == null) continue;
+
+            try {
+                if (ClusterCodecs.getCodec(cluster).isXml()) continue;
+            }
+            catch (InvalidDataException e) {
+                throw new PersistencyException(e);
+            }
+
+            String table = handler.getTable().getName();
+
+            if (readsTable(sql, table)) {
+                String msg = "Query:" + query.getName() + " reads table:" + table + " of cluster:" + cluster + " which is stored with a binary codec";
+                log.error("checkBinaryClusters() - {}", msg);
+                throw new PersistencyException(msg);
+            }
+        }
+    }
+
+    /**
+     * The XML column of the LIFECYCLE table is only rewritten by the snapshots of the incremental persistence,
+     * the state changes since the last snapshot are in the LIFECYCLE_DELTA table, so queries would read stale data.
+     */
+    private void checkIncrementalLifecycle(Query query, String sql) throws PersistencyException {
+        JooqHandler handler = jooqHandlers.get(ClusterType.LIFECYCLE);
+
+        if (!(handler instanceof JooqLifecycleHandler) || !((JooqLifecycleHandler)handler).isIncremental()) return;
+
+        String table = handler.getTable().getName();
+
+        if (readsTable(sql, table)) {
+            String msg = "Query:" + query.getName() + " reads table:" + table + " which is stale when JOOQ.Lifecycle.incremental is enabled";
+            log.error("checkIncrementalLifecycle() - {}", msg);
+            throw new PersistencyException(msg);
+        }
+    }
+
+    private static boolean readsTable(String sql, String table) {
+        return Pattern.compile("\\b" + Pattern.quote(table) + "\\b", Pattern.CASE_INSENSITIVE).matcher(sql).find();
+    }
+
+    @Override
+    public String executeQuery(Query query, TransactionKey transactionKey) throws PersistencyException {
+        flush(transactionKey);
+
+        DSLContext context = retrieveContext(transactionKey);
+        Result<Record> result = createResultQuery(context, query).fetch();
 
         if (result == null || result.size() == 0) {
             return "<NULL/>";
             //return "</"+query.getRootElement()+">";
         }
         else if (result.size() == 1) {
-            return convertRecord2Xml(result.get(0), query.getRecordElement());
+            return JooqQueryResultWriter.convertRecord2Xml(result.get(0), query.getRecordElement());
         }
         else {
             StringBuffer b = new StringBuffer("<"+query.getRootElement()+">");
 
             for (Record rec: result) {
-                b.append(convertRecord2Xml(rec, query.getRecordElement()));
+                b.append(JooqQueryResultWriter.convertRecord2Xml(rec, query.getRecordElement()));
             }
 
             b.append("</"+query.getRootElement()+">");
@@ -306,64 +455,33 @@ public class JooqClusterStorage extends ClusterStorage {
         }
     }
 
-    private String convertRecord2Xml(Record rec, String recordElement) throws PersistencyException {
-        if (rec.fields().length == 0) {
-            return "<"+recordElement+"/>";
-        }
-        else if (rec.fields().length == 1) {
-            Field<?> field = rec.fields()[0];
-            return convertField2Xml(field, rec.get(field));
-        }
-        else {
-            StringBuffer b = new StringBuffer("<"+recordElement+">");
-
-            for (Field<?> field: rec.fields()) {
-                b.append(convertField2Xml(field, rec.get(field)));
-            }
-
-            b.append("</"+recordElement+">");
-
-            return b.toString();
-        }
+    @Override
+    public boolean checkQueryStreamingSupport(String language) {
+        return checkQuerySupport(language);
     }
 
-    private String convertField2Xml(Field<?> field, Object value) throws PersistencyException {
-        StringBuffer b = new StringBuffer();
+    @Override
+    public void executeQuery(Query query, OutputStream out, boolean jsonFlag, TransactionKey transactionKey) throws PersistencyException {
+        flush(transactionKey);
 
-        if (value == null) {
+        DSLContext context = retrieveContext(transactionKey);
             
-            //b.append("</"+field.getName()+">");
-        }
-        else if (value instanceof SQLXML) {
-            try {
-                b.append(((SQLXML)value).getString());
-            }
-            catch (SQLException e) {
-                log.error("Could not process SQLXML type of jdbc", e);
-                throw new PersistencyException(e.getMessage());
-            }
-        }
-        else if("XML".equals(field.getName().toUpperCase())) { //cristal-ise tables use field name 'XML'
-            b.append(value.toString());
-        }
-        else {
-            String stringValue = value.toString();
+        try (Cursor<Record> cursor = createResultQuery(context, query).fetchSize(JOOQ_Query_fetchSize.getInteger()).fetchLazy()) {
+            JooqQueryResultWriter writer = new JooqQueryResultWriter(query.getRootElement(), query.getRecordElement());
 
-            if (StringUtils.isEmpty(stringValue)) {
-                b.append("<"+field.getName()+"/>");
-            }
-            else {
-                b.append("<"+field.getName()+">")
-                .append(stringValue)
-                .append("</"+field.getName()+">");
-            }
+            if (jsonFlag) writer.writeJson(cursor, out);
+            else          writer.writeXml(cursor, out);
+        }
+        catch (IOException e) {
+            log.error("executeQuery() - query:{}", query.getName(), e);
+            throw new PersistencyException(e);
         }
-
-        return b.toString();
     }
 
     @Override
     public ClusterType[] getClusters(ItemPath itemPath, TransactionKey transactionKey) throws PersistencyException {
+        flush(transactionKey);
+
         ArrayList<ClusterType> result = new ArrayList<ClusterType>();
 
         for (ClusterType type:jooqHandlers.keySet()) {
@@ -375,6 +493,8 @@ public class JooqClusterStorage extends ClusterStorage {
 
     @Override
     public String[] getClusterContents(ItemPath itemPath, String path, TransactionKey transactionKey) throws PersistencyException {
+        flush(transactionKey);
+
         if (StringUtils.isBlank(path)) {
             ArrayList<String> result = new ArrayList<String>();
 
@@ -400,6 +520,15 @@ public class JooqClusterStorage extends ClusterStorage {
     public C2KLocalObject get(ItemPath itemPath, String path, TransactionKey transactionKey) throws PersistencyException {
         UUID uuid = itemPath.getUUID();
 
+        JooqWriteBuffer buffer = transactionKey != null ? writeBuffers.get(transactionKey) : null;
+
+        if (buffer != null) {
+            C2KLocalObject obj = buffer.get(uuid, path);
+
+            if (obj != null)                       return obj;
+            else if (buffer.isDeleted(uuid, path)) return null;
+        }
+
         ClusterType cluster     = getClusterType(path);
         JooqHandler handler     = jooqHandlers.get(cluster);
         String[]    primaryKeys = getPrimaryKeys(path);
@@ -418,6 +547,26 @@ public class JooqClusterStorage extends ClusterStorage {
             throw new PersistencyException("No handler found for cluster:'"+cluster+"'");
     }
 
+    @Override
+    public List<C2KLocalObject> getClusterObjects(ItemPath itemPath, String path, TransactionKey transactionKey) 
+            throws PersistencyException
+    {
+        flush(transactionKey);
+
+        UUID uuid = itemPath.getUUID();
+
+        ClusterType cluster     = getClusterType(path);
+        JooqHandler handler     = jooqHandlers.get(cluster);
+        String[]    primaryKeys = getPrimaryKeys(path);
+
+        if (handler != null) {
+            log.debug("getClusterObjects() - uuid:"+uuid+" cluster:"+cluster+" primaryKeys:"+Arrays.toString(primaryKeys));
+            return handler.fetchAll(retrieveContext(transactionKey), uuid, primaryKeys);
+        }
+        else
+            throw new PersistencyException("No handler found for cluster:'"+cluster+"'");
+    }
+
     @Override
     public void put(ItemPath itemPath, C2KLocalObject obj, TransactionKey transactionKey) throws PersistencyException {
         if (!JooqDataSourceHandler.getDataSource().isAutoCommit() && transactionKey == null) {
@@ -426,22 +575,83 @@ public class JooqClusterStorage extends ClusterStorage {
 
         UUID        uuid    = itemPath.getUUID();
         ClusterType cluster = obj.getClusterType();
-        JooqHandler handler = jooqHandlers.get(cluster);
-        DSLContext  context = retrieveContext(transactionKey);
-
-        JooqDataSourceHandler.logConnectionCount("JooqClusterStorage.put(before)", context);
 
-        if (handler != null) {
-            log.debug("put() - uuid:"+uuid+" cluster:"+cluster+" path:"+obj.getClusterPath());
-            handler.put(context, uuid, obj);
-        }
-        else {
+        if (jooqHandlers.get(cluster) == null) {
             throw new PersistencyException("Write is not supported for cluster:'"+cluster+"'");
         }
+
+        if (isWriteBehind(transactionKey)) {
+            log.debug("put() - buffering uuid:"+uuid+" cluster:"+cluster+" path:"+obj.getClusterPath());
+            writeBuffers.computeIfAbsent(transactionKey, k -> new JooqWriteBuffer()).put(uuid, obj);
+            return;
+        }
+
+        DSLContext context = retrieveContext(transactionKey);
+
+        JooqDataSourceHandler.logConnectionCount("JooqClusterStorage.put(before)", context);
+        write(context, uuid, obj, transactionKey);
+        JooqDataSourceHandler.logConnectionCount("JooqClusterStorage.put(after) ", context);
+    }
+
+    private void write(DSLContext context, UUID uuid, C2KLocalObject obj, TransactionKey transactionKey) throws PersistencyException {
+        log.debug("write() - uuid:"+uuid+" cluster:"+obj.getClusterType()+" path:"+obj.getClusterPath());
+
+        jooqHandlers.get(obj.getClusterType()).put(context, uuid, obj);
+
         // Trigger all registered handlers to update domain specific tables
         for (JooqDomainHandler domainHandler : domainHandlers) domainHandler.put(context, uuid, obj, transactionKey);
+    }
 
-        JooqDataSourceHandler.logConnectionCount("JooqClusterStorage.put(after) ", context);
+    private void delete(DSLContext context, UUID uuid, ClusterType cluster, String[] primaryKeys, TransactionKey transactionKey) 
+            throws PersistencyException
+    {
+        // Trigger DoimanHandlers first (issue: #656)
+        for (JooqDomainHandler domainHandler : domainHandlers) {
+            domainHandler.delete(context, uuid, cluster, primaryKeys, transactionKey);
+        }
+
+        int deletedCount = jooqHandlers.get(cluster).delete(context, uuid, primaryKeys);
+        log.debug("delete() - DONE uuid:{} cluster:{} primaryKeys:{} deletedCount:{}", uuid, cluster, Arrays.toString(primaryKeys), deletedCount);
+    }
+
+    private boolean isWriteBehind(TransactionKey transactionKey) {
+        return transactionKey != null && JOOQ_writeBehind.getBoolean();
+    }
+
+    /**
+     * Executes the buffered writes of the transaction. Consecutive identical statements are sent to the database 
+     * as JDBC batches. The writes are grouped by ClusterType unless domain handlers are configured, because 
+     * those may depend on the order of the writes.
+     * 
+     * @param transactionKey the key of the transaction, can be null
+     * @throws PersistencyException the writes could not be executed
+     */
+    private void flush(TransactionKey transactionKey) throws PersistencyException {
+        if (transactionKey == null) return;
+
+        JooqWriteBuffer buffer = writeBuffers.remove(transactionKey);
+
+        if (buffer == null || buffer.isEmpty()) return;
+
+        log.debug("flush() - transactionKey:{} writes:{}", transactionKey, buffer.size());
+
+        List<JooqWriteBuffer.Write> writes = domainHandlers.isEmpty() ? buffer.getWritesByCluster() : buffer.getWrites();
+
+        try {
+            retrieveContext(transactionKey).batched(config -> {
+                DSLContext context = DSL.using(config);
+
+                for (JooqWriteBuffer.Write w : writes) {
+                    if (w.isDelete()) delete(context, w.getUuid(), w.getCluster(), w.getPrimaryKeys(), transactionKey);
+                    else              write(context, w.getUuid(), w.getObject(), transactionKey);
+                }
+            });
+        }
+        catch (Exception e) {
+            log.error("flush() - transactionKey:{}", transactionKey, e);
+            if (e.getCause() instanceof PersistencyException) throw (PersistencyException)e.getCause();
+            else                                              throw new PersistencyException(e);
+        }
     }
 
     @Override
@@ -467,21 +677,18 @@ public class JooqClusterStorage extends ClusterStorage {
 
         UUID        uuid        = itemPath.getUUID();
         ClusterType cluster     = getClusterType(path);
-        JooqHandler handler     = jooqHandlers.get(cluster);
         String[]    primaryKeys = getPrimaryKeys(path);
-        DSLContext  context     = retrieveContext(transactionKey);
 
-        if (handler != null) {
-            // Trigger DoimanHandlers first (issue: #656)
-            for (JooqDomainHandler domainHandler : domainHandlers) {
-                domainHandler.delete(context, uuid, cluster, primaryKeys, transactionKey);
-            }
+        if (jooqHandlers.get(cluster) == null) {
+            throw new PersistencyException("No handler found for cluster:'"+cluster+"'");
+        }
 
-            int deletedCount = handler.delete(context, uuid, primaryKeys);
-            log.debug("delete() - DONE uuid:{} cluster:{} primaryKeys:{} deletedCount:{}", uuid, cluster, Arrays.toString(primaryKeys), deletedCount);
+        if (isWriteBehind(transactionKey)) {
+            log.debug("delete() - buffering uuid:{} cluster:{} primaryKeys:{}", uuid, cluster, Arrays.toString(primaryKeys));
+            writeBuffers.computeIfAbsent(transactionKey, k -> new JooqWriteBuffer()).delete(uuid, cluster, path, primaryKeys);
         }
         else {
-            throw new PersistencyException("No handler found for cluster:'"+cluster+"'");
+            delete(retrieveContext(transactionKey), uuid, cluster, primaryKeys, transactionKey);
         }
     }
 }
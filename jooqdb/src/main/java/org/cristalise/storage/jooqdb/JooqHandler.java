@@ -24,6 +24,7 @@ import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_NameType_lengt
 import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_PasswordType_length;
 import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_StringType_length;
 import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_TextType_length;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_upsert;
 import static org.jooq.SQLDialect.MYSQL;
 import static org.jooq.SQLDialect.POSTGRES;
 import static org.jooq.impl.DSL.select;
@@ -34,8 +35,13 @@ import java.util.List;
 import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
+import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.entity.C2KLocalObject;
+import org.cristalise.kernel.persistency.ClusterType;
+import org.cristalise.kernel.persistency.codec.ClusterCodec;
+import org.cristalise.kernel.persistency.codec.ClusterCodecs;
+import org.cristalise.kernel.process.Gateway;
 import org.cristalise.storage.jooqdb.bindings.PostgreSqlXmlBinding;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
@@ -44,10 +50,14 @@ import org.jooq.Field;
 import org.jooq.Record;
 import org.jooq.Result;
 import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DefaultDataType;
 import org.jooq.impl.SQLDataType;
 import org.w3c.dom.Document;
 
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
 public abstract class JooqHandler {
 
     public static final DataType<UUID>           UUID_TYPE       = SQLDataType.UUID;
@@ -65,6 +75,12 @@ public abstract class JooqHandler {
     // Use this declaration when generating MySQL tables: see issue #23
     public static final DataType<String>         XML_TYPE_MYSQL  = new DefaultDataType<String>(MYSQL, SQLDataType.CLOB, "mediumtext", "char");
     public static final DataType<byte[]>         ATTACHMENT_TYPE = SQLDataType.BLOB;
+    public static final DataType<byte[]>         BINARY_TYPE     = SQLDataType.BLOB;
+
+    /**
+     * Placeholder written into the not nullable XML columns when the object is stored in the binary column
+     */
+    public static final String NULL_XML = "<NULL/>";
 
     abstract protected Table<?> getTable();
 
@@ -76,6 +92,10 @@ public abstract class JooqHandler {
         return context.select().from(getTable()).where(getPKConditions(uuid, primaryKeys)).fetchOne();
     }
 
+    protected Result<Record> fetchRecords(DSLContext context, UUID uuid, String...primaryKeys) throws PersistencyException {
+        return context.select().from(getTable()).where(getPKConditions(uuid, primaryKeys)).fetch();
+    }
+
     protected Result<?> fetchDistinctResult(DSLContext context, Field<?> field, UUID uuid, String...primaryKeys) throws PersistencyException {
         return context.selectDistinct(field).from(getTable()).where(getPKConditions(uuid, primaryKeys)).fetch();
     }
@@ -89,7 +109,37 @@ public abstract class JooqHandler {
         return getPKConditions(uuid, getPrimaryKeys(obj.getClusterPath()));
     }
 
+    /**
+     * Writes the object with a single statement when possible. Objects of insert-only clusters are inserted
+     * without checking their existence, other objects are written with {@link #upsert(DSLContext, UUID, C2KLocalObject)}
+     * unless it was disabled by JOOQ.upsert.
+     */
     public int put(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
+        if (isInsertOnly()) return insert(context, uuid, obj);
+
+        // MySQL reports 2 affected rows when ON DUPLICATE KEY UPDATE has updated the row
+        if (JOOQ_upsert.getBoolean()) return Math.min(1, upsert(context, uuid, obj));
+
+        if (exists(context, uuid, obj)) return update(context, uuid, obj);
+        else                            return insert(context, uuid, obj);
+    }
+
+    /**
+     * The objects of insert-only clusters are never updated (e.g. Event, Outcome), therefore put() can 
+     * insert them without checking their existence. A duplicate is reported by the database.
+     * 
+     * @return true if the objects of the cluster are never updated, default is false
+     */
+    protected boolean isInsertOnly() {
+        return false;
+    }
+
+    /**
+     * Inserts or updates the object. The default implementation checks the existence of the object, subclasses
+     * should override it to use a single statement, i.e. insertInto().onConflict().doUpdate(), which is rendered
+     * by jOOQ for the dialect of the context.
+     */
+    protected int upsert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         if (exists(context, uuid, obj)) return update(context, uuid, obj);
         else                            return insert(context, uuid, obj);
     }
@@ -134,6 +184,47 @@ public abstract class JooqHandler {
         else                                               return record.get(field);
     }
 
+    /**
+     * Adds a nullable column to the existing table, e.g. the column was introduced after the table was created.
+     * Failures are only logged, because not all dialects support 'ADD COLUMN IF NOT EXISTS'.
+     */
+    protected static <T> void addColumnIfNotExists(DSLContext context, Table<?> table, Field<T> field, DataType<T> type) {
+        try {
+            context.alterTable(table).addColumnIfNotExists(field, type.nullable(true)).execute();
+        }
+        catch (DataAccessException e) {
+            log.warn("addColumnIfNotExists() - table:{} column:{} - {}", table.getName(), field.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes the object with the {@link ClusterCodec} configured for the ClusterType
+     * 
+     * @return the encoded object or null if the XML codec is configured, i.e. the object shall be stored in the XML column
+     */
+    protected static byte[] encodeBinary(ClusterType type, Object obj) throws InvalidDataException {
+        ClusterCodec codec = ClusterCodecs.getCodec(type);
+
+        if (codec.isXml()) return null;
+        else               return codec.encode(obj);
+    }
+
+    /**
+     * @return the XML of the object or the {@link #NULL_XML} placeholder if the object was stored in the binary column
+     */
+    protected static String marshallXml(Object obj, byte[] binary) throws InvalidDataException {
+        if (binary == null) return Gateway.getMarshaller().marshall(obj);
+        else                return NULL_XML;
+    }
+
+    /**
+     * Decodes the object from the binary column if it is not null, otherwise unmarshalls it from the XML column
+     */
+    protected static Object decode(ClusterType type, String xml, byte[] binary) throws InvalidDataException {
+        if (binary != null) return ClusterCodecs.getBinaryCodec(type).decode(binary);
+        else                return Gateway.getMarshaller().unmarshall(xml);
+    }
+
     abstract public void createTables(DSLContext context) throws PersistencyException;
 
     abstract public void dropTables(DSLContext context) throws PersistencyException;
@@ -143,4 +234,18 @@ public abstract class JooqHandler {
     abstract public int insert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException;
 
     abstract public C2KLocalObject fetch(DSLContext context, UUID uuid, String...primaryKeys) throws PersistencyException;
+
+    /**
+     * Fetches all objects matching the (partial) primary keys in a single query. Handlers which cannot
+     * create the objects from the records of the query return null, which is the default implementation.
+     * 
+     * @param context the DSLContext of the transaction
+     * @param uuid the UUID of the Item
+     * @param primaryKeys the partial primary keys identifying the subtree of the cluster, can be empty
+     * @return the list of objects or null if the handler does not support bulk fetch
+     * @throws PersistencyException the objects could not be created
+     */
+    public List<C2KLocalObject> fetchAll(DSLContext context, UUID uuid, String...primaryKeys) throws PersistencyException {
+        return null;
+    }
 }
@@ -0,0 +1,67 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.storage.jooqdb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.cristalise.kernel.common.PersistencyException;
+
+import lombok.Getter;
+
+/**
+ * Available as 'bind' in the MVEL template of SQL Queries to use the Parameters as JDBC bind variables, 
+ * e.g. <code>WHERE "UUID" = @{bind.param('itemUUID')}</code>. The expression is rendered as '?' and the
+ * value of the Parameter is added to the list of bind values in the order of the rendering, so the
+ * generated SQL is the same for all values and the prepared statement can be reused by the driver.
+ * The name 'bind' is reserved, Queries cannot have a Parameter with that name.
+ */
+public class JooqQueryBindings {
+
+    /**
+     * The name of the variable in the MVEL template
+     */
+    public static final String VARIABLE_NAME = "bind";
+
+    private final Map<Object, Object> params;
+
+    @Getter
+    private final List<Object> values = new ArrayList<>();
+
+    public JooqQueryBindings(Map<Object, Object> params) {
+        this.params = params;
+    }
+
+    /**
+     * Adds the value of the Parameter to the bind values
+     * 
+     * @param name the name of the Parameter
+     * @return the placeholder of the bind variable, i.e. '?'
+     * @throws PersistencyException the Parameter has no value
+     */
+    public String param(String name) throws PersistencyException {
+        if (!params.containsKey(name)) throw new PersistencyException("Query parameter '"+name+"' has no value");
+
+        values.add(params.get(name));
+        return "?";
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.storage.jooqdb;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+
+import org.apache.commons.lang3.StringUtils;
+import org.cristalise.kernel.common.PersistencyException;
+import org.jooq.Cursor;
+import org.jooq.Field;
+import org.jooq.Record;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes the result of an SQL Query record by record to an OutputStream, so the complete result is never 
+ * kept in memory. The XML has the same format as the result of 
+ * {@link JooqClusterStorage#executeQuery(org.cristalise.kernel.querying.Query, org.cristalise.kernel.persistency.TransactionKey)}
+ * and the JSON follows the structure of that XML, with all values written as strings. The content of XML columns
+ * is also written as a string in JSON, it is not converted to nested objects.
+ */
+@Slf4j
+public class JooqQueryResultWriter {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final String rootElement;
+    private final String recordElement;
+
+    public JooqQueryResultWriter(String rootElement, String recordElement) {
+        this.rootElement   = rootElement;
+        this.recordElement = recordElement;
+    }
+
+    /**
+     * Writes the records of the cursor as XML. The OutputStream is flushed but not closed.
+     */
+    public void writeXml(Cursor<Record> cursor, OutputStream out) throws IOException, PersistencyException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        if (!cursor.hasNext()) {
+            writer.write("<NULL/>");
+        }
+        else {
+            Record first = cursor.fetchNext();
+
+            if (!cursor.hasNext()) {
+                writer.write(convertRecord2Xml(first, recordElement));
+            }
+            else {
+                writer.write("<"+rootElement+">");
+                writer.write(convertRecord2Xml(first, recordElement));
+
+                while (cursor.hasNext()) writer.write(convertRecord2Xml(cursor.fetchNext(), recordElement));
+
+                writer.write("</"+rootElement+">");
+            }
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Writes the records of the cursor as JSON. The OutputStream is flushed but not closed.
+     */
+    public void writeJson(Cursor<Record> cursor, OutputStream out) throws IOException, PersistencyException {
+        JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        json.writeStartObject();
+
+        if (!cursor.hasNext()) {
+            json.writeStringField("NULL", "");
+        }
+        else {
+            Record first = cursor.fetchNext();
+
+            if (!cursor.hasNext()) {
+                writeRecordField(json, first);
+            }
+            else {
+                json.writeObjectFieldStart(rootElement);
+                json.writeArrayFieldStart(recordElement);
+
+                writeRecordValue(json, first);
+                while (cursor.hasNext()) writeRecordValue(json, cursor.fetchNext());
+
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        }
+
+        json.writeEndObject();
+        json.flush();
+    }
+
+    /**
+     * Writes the single record of the result as field(s) of the enclosing object
+     */
+    private void writeRecordField(JsonGenerator json, Record rec) throws IOException, PersistencyException {
+        if (rec.fields().length == 0) {
+            json.writeStringField(recordElement, "");
+        }
+        else if (rec.fields().length == 1) {
+            writeField(json, rec.fields()[0], rec.get(rec.fields()[0]));
+        }
+        else {
+            json.writeFieldName(recordElement);
+            writeRecordValue(json, rec);
+        }
+    }
+
+    private void writeRecordValue(JsonGenerator json, Record rec) throws IOException, PersistencyException {
+        json.writeStartObject();
+        for (Field<?> field: rec.fields()) writeField(json, field, rec.get(field));
+        json.writeEndObject();
+    }
+
+    private void writeField(JsonGenerator json, Field<?> field, Object value) throws IOException, PersistencyException {
+        if (value == null) return;
+
+        if (value instanceof SQLXML) {
+            try {
+                json.writeStringField(field.getName(), ((SQLXML)value).getString());
+            }
+            catch (SQLException e) {
+                log.error("Could not process SQLXML type of jdbc", e);
+                throw new PersistencyException(e.getMessage());
+            }
+        }
+        else {
+            json.writeStringField(field.getName(), value.toString());
+        }
+    }
+
+    static String convertRecord2Xml(Record rec, String recordElement) throws PersistencyException {
+        if (rec.fields().length == 0) {
+            return "<"+recordElement+"/>";
+        }
+        else if (rec.fields().length == 1) {
+            Field<?> field = rec.fields()[0];
+            return convertField2Xml(field, rec.get(field));
+        }
+        else {
+            StringBuffer b = new StringBuffer("<"+recordElement+">");
+
+            for (Field<?> field: rec.fields()) {
+                b.append(convertField2Xml(field, rec.get(field)));
+            }
+
+            b.append("</"+recordElement+">");
+
+            return b.toString();
+        }
+    }
+
+    static String convertField2Xml(Field<?> field, Object value) throws PersistencyException {
+        StringBuffer b = new StringBuffer();
+
+        if (value == null) {
+            
+            //b.append("</"+field.getName()+">");
+        }
+        else if (value instanceof SQLXML) {
+            try {
+                b.append(((SQLXML)value).getString());
+            }
+            catch (SQLException e) {
+                log.error("Could not process SQLXML type of jdbc", e);
+                throw new PersistencyException(e.getMessage());
+            }
+        }
+        else if("XML".equals(field.getName().toUpperCase())) { //cristal-ise tables use field name 'XML'
+            b.append(value.toString());
+        }
+        else {
+            String stringValue = value.toString();
+
+            if (StringUtils.isEmpty(stringValue)) {
+                b.append("<"+field.getName()+"/>");
+            }
+            else {
+                b.append("<"+field.getName()+">")
+                .append(stringValue)
+                .append("</"+field.getName()+">");
+            }
+        }
+
+        return b.toString();
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.storage.jooqdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.cristalise.kernel.entity.C2KLocalObject;
+import org.cristalise.kernel.persistency.ClusterType;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Buffers the puts and deletes of a transaction until they are flushed by the {@link JooqClusterStorage}.
+ * It also keeps the objects written and the paths deleted in the transaction to serve the reads of
+ * the same transaction. Repeated puts of the same object are coalesced, i.e. only the last one is written.
+ */
+public class JooqWriteBuffer {
+
+    @Getter @AllArgsConstructor
+    public static class Write {
+        private final UUID           uuid;
+        private final ClusterType    cluster;
+        /** null for delete */
+        private final C2KLocalObject object;
+        /** primary keys of delete */
+        private final String[]       primaryKeys;
+
+        public boolean isDelete() {
+            return object == null;
+        }
+    }
+
+    private final List<Write> writes = new ArrayList<>();
+
+    /** index of the puts in the list of writes which can be replaced by the next put of the same object */
+    private final Map<String, Integer> putIndex = new HashMap<>();
+
+    /** objects written in the transaction */
+    private final Map<String, C2KLocalObject> written = new HashMap<>();
+
+    /** paths deleted in the transaction */
+    private final Set<String> deleted = new HashSet<>();
+
+    private static String getKey(UUID uuid, String path) {
+        return uuid + "/" + StringUtils.removeStart(path, "/");
+    }
+
+    public void put(UUID uuid, C2KLocalObject obj) {
+        String key = getKey(uuid, obj.getClusterPath());
+        Write write = new Write(uuid, obj.getClusterType(), obj, null);
+
+        Integer index = putIndex.get(key);
+
+        if (index != null) {
+            writes.set(index, write);
+        }
+        else {
+            putIndex.put(key, writes.size());
+            writes.add(write);
+        }
+
+        written.put(key, obj);
+    }
+
+    public void delete(UUID uuid, ClusterType cluster, String path, String[] primaryKeys) {
+        String key = getKey(uuid, path);
+        String prefix = key + "/";
+
+        writes.add(new Write(uuid, cluster, null, primaryKeys));
+
+        written.keySet().removeIf(k -> k.equals(key) || k.startsWith(prefix));
+        putIndex.keySet().removeIf(k -> k.equals(key) || k.startsWith(prefix));
+        deleted.add(key);
+    }
+
+    /**
+     * Returns the object written in the transaction
+     * 
+     * @return the object or null if it was not written in the transaction
+     */
+    public C2KLocalObject get(UUID uuid, String path) {
+        return written.get(getKey(uuid, path));
+    }
+
+    /**
+     * Checks if the path or one of its parents was deleted in the transaction and the object was not written since.
+     */
+    public boolean isDeleted(UUID uuid, String path) {
+        String key = getKey(uuid, path);
+
+        if (written.containsKey(key)) return false;
+
+        for (int i = key.indexOf('/'); i != -1; i = key.indexOf('/', i + 1)) {
+            if (deleted.contains(key.substring(0, i))) return true;
+        }
+        return deleted.contains(key);
+    }
+
+    public boolean isEmpty() {
+        return writes.isEmpty();
+    }
+
+    public int size() {
+        return writes.size();
+    }
+
+    /**
+     * @return the writes in the order they were requested
+     */
+    public List<Write> getWrites() {
+        return writes;
+    }
+
+    /**
+     * Groups the writes by ClusterType to maximise the size of the JDBC batches. The order of the writes 
+     * within the same ClusterType is kept, which is enough as each ClusterType is stored in its own table.
+     * 
+     * @return the writes grouped by ClusterType
+     */
+    public List<Write> getWritesByCluster() {
+        Map<ClusterType, List<Write>> groups = new LinkedHashMap<>();
+
+        for (Write write : writes) groups.computeIfAbsent(write.getCluster(), k -> new ArrayList<>()).add(write);
+
+        List<Write> result = new ArrayList<>();
+        for (List<Write> group : groups.values()) result.addAll(group);
+
+        return result;
+    }
+}
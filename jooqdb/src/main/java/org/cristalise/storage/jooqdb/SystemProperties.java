@@ -41,22 +41,32 @@ import lombok.Getter;
  * @see #JOOQ_disableDomainCreateTables
  * @see #JOOQ_domainHandlers
  * @see #JOOQ_idleTimeout
+ * @see #JOOQ_ItemProperty_valueIndex
+ * @see #JOOQ_Lifecycle_compactionThreshold
+ * @see #JOOQ_Lifecycle_incremental
+ * @see #JOOQ_Lifecycle_stateCacheSize
  * @see #JOOQ_maximumPoolSize
  * @see #JOOQ_maxLifetime
  * @see #JOOQ_minimumIdle
  * @see #JOOQ_NameType_length
  * @see #JOOQ_password
  * @see #JOOQ_PasswordType_length
+ * @see #JOOQ_Query_fetchSize
+ * @see #JOOQ_Query_templateCacheSize
  * @see #JOOQ_readOnlyDataSource
  * @see #JOOQ_StringType_length
  * @see #JOOQ_TextType_length
+ * @see #JOOQ_upsert
  * @see #JOOQ_URI
  * @see #JOOQ_user
+ * @see #JOOQ_writeBehind
  * @see #JooqAuth_Argon2_iterations
  * @see #JooqAuth_Argon2_memory
  * @see #JooqAuth_Argon2_parallelism
  * @see #JooqAuth_Argon2_type
  * @see #JooqLookupManager_getChildrenPattern_specialCharsToEscape
+ * @see #JooqLookupManager_roleIndex_enable
+ * @see #JooqLookupManager_search_estimateCount
  */
 public enum SystemProperties implements SystemPropertyOperations {
 
@@ -85,6 +95,33 @@ public enum SystemProperties implements SystemPropertyOperations {
      * Value to configure Hikari ConnectionPool idleTimeout. Default value is 30000 ms.
      */
     JOOQ_idleTimeout("JOOQ.idleTimeout", 30000),
+    /**
+     * Enables the creation of the function based index on NAME and lower(VALUE) of the ITEM_PROPERTY table, which 
+     * is used by the property search of JooqLookupManager when the value has no leading wildcard. The index is only 
+     * created for POSTGRES, other dialects do not support function based indexes with the same syntax. 
+     * Default is 'true'
+     */
+    JOOQ_ItemProperty_valueIndex("JOOQ.ItemProperty.valueIndex", true),
+    /**
+     * Number of LIFECYCLE_DELTA rows of an Item after which the next write of the Workflow stores a full
+     * snapshot into the LIFECYCLE table and deletes the deltas. Only used when {@link #JOOQ_Lifecycle_incremental}
+     * is enabled. Default value is 50.
+     */
+    JOOQ_Lifecycle_compactionThreshold("JOOQ.Lifecycle.compactionThreshold", 50),
+    /**
+     * Enables the incremental persistence of the Workflow. Only the state, active flag, state date and properties 
+     * of the changed vertices are written into the LIFECYCLE_DELTA table, and they are applied on the snapshot
+     * when the Workflow is read. Structural changes and compaction store the full Workflow. The XML column of the
+     * LIFECYCLE table does not contain the deltas, therefore SQL Queries reading that table are rejected while it 
+     * is enabled. Deltas written before disabling it are still applied, and deleted by the next write of the Workflow. 
+     * Default is 'false'
+     */
+    JOOQ_Lifecycle_incremental("JOOQ.Lifecycle.incremental", false),
+    /**
+     * Maximum number of Items for which the persisted state of the Workflow vertices is kept in memory to compute
+     * the deltas. Only used when {@link #JOOQ_Lifecycle_incremental} is enabled. Default value is 10000.
+     */
+    JOOQ_Lifecycle_stateCacheSize("JOOQ.Lifecycle.stateCacheSize", 10000),
     /**
      * Value to configure Hikari ConnectionPool maximumPoolSize. Default value is 50.
      */
@@ -135,6 +172,16 @@ public enum SystemProperties implements SystemPropertyOperations {
      * </pre>
      */
     JOOQ_PasswordType_length("JOOQ.PasswordType.length", 800),
+    /**
+     * Number of rows fetched from the database in one round trip when the result of an SQL Query is streamed.
+     * PostgreSQL only uses it when autoCommit is disabled. Default value is 500.
+     */
+    JOOQ_Query_fetchSize("JOOQ.Query.fetchSize", 500),
+    /**
+     * Maximum number of compiled MVEL templates of SQL Queries kept in memory by the JooqClusterStorage.
+     * 0 disables the cache. Default value is 500.
+     */
+    JOOQ_Query_templateCacheSize("JOOQ.Query.templateCacheSize", 500),
     /**
      * Value to configure Hikari ConnectionPool to readOnly. Default is 'false'
      */
@@ -164,6 +211,13 @@ public enum SystemProperties implements SystemPropertyOperations {
      * </pre>
      */
     JOOQ_TextType_length("JOOQ.TextType.length", 800),
+    /**
+     * Enables writing the objects of the mutable clusters (e.g. Property, Viewpoint) with a single upsert statement
+     * instead of checking their existence before the update or insert. jOOQ renders the statement for the configured
+     * dialect, i.e. ON CONFLICT DO UPDATE for PostgreSQL, ON DUPLICATE KEY UPDATE for MySQL and MERGE for H2. 
+     * Default is 'true'
+     */
+    JOOQ_upsert("JOOQ.upsert", true),
     /**
      * Value to configure Hikari CP jdbcUrl
      */
@@ -172,6 +226,11 @@ public enum SystemProperties implements SystemPropertyOperations {
      * Value to configure Hikari CP userName
      */
     JOOQ_user("JOOQ.user"),
+    /**
+     * Enables buffering the writes (put and delete) of a transaction in memory. The buffered writes are executed 
+     * as JDBC batches at commit, or before a read which cannot be served from the buffer. Default is 'false'
+     */
+    JOOQ_writeBehind("JOOQ.writeBehind", false),
     /**
      * Argon2 number of iteration when creating password hash. Default value is 2.
      */
@@ -192,7 +251,17 @@ public enum SystemProperties implements SystemPropertyOperations {
      * Escape these special characters for searches in DomainTree when using POSTGRES. 
      * Default value is regex '[^a-zA-Z0-9 ]'.
      */
-    JooqLookupManager_domainTreeSearches_specialCharsToEscape("JooqLookupManager.domainTreeSearches.specialCharsToEscape", "[^a-zA-Z0-9 ]");
+    JooqLookupManager_domainTreeSearches_specialCharsToEscape("JooqLookupManager.domainTreeSearches.specialCharsToEscape", "[^a-zA-Z0-9 ]"),
+    /**
+     * Enables the in-memory index of the agent-role-permission relations in JooqLookupManager. The index
+     * is loaded on startup and it is invalidated by the ProxyMessages of Role changes. Default value is false.
+     */
+    JooqLookupManager_roleIndex_enable("JooqLookupManager.roleIndex.enable", false),
+    /**
+     * Use the row estimate of the query planner (EXPLAIN) instead of count(*) to compute the maxRows of the paged
+     * property search. It falls back to count(*) if the dialect does not provide the estimate. Default is 'false'
+     */
+    JooqLookupManager_search_estimateCount("JooqLookupManager.search.estimateCount", false);
 
     @Getter
     private final Object defaultValue;
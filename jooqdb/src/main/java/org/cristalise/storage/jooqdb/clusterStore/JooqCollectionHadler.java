@@ -20,6 +20,7 @@
  */
 package org.cristalise.storage.jooqdb.clusterStore;
 
+import static org.cristalise.kernel.persistency.ClusterType.COLLECTION;
 import static org.jooq.impl.DSL.constraint;
 import static org.jooq.impl.DSL.field;
 import static org.jooq.impl.DSL.name;
@@ -33,7 +34,6 @@ import java.util.UUID;
 import org.cristalise.kernel.collection.Collection;
 import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.entity.C2KLocalObject;
-import org.cristalise.kernel.process.Gateway;
 import org.cristalise.storage.jooqdb.JooqDataSourceHandler;
 import org.cristalise.storage.jooqdb.JooqHandler;
 import org.jooq.Condition;
@@ -53,6 +53,7 @@ public class JooqCollectionHadler extends JooqHandler {
     static final Field<String> NAME    = field(name("NAME"),    String.class);
     static final Field<String> VERSION = field(name("VERSION"), String.class);
     static final Field<String> XML     = field(name("XML"),     String.class);
+    static final Field<byte[]> DATA    = field(name("DATA"),    byte[].class);
 
     @Override
     protected Table<?> getTable() {
@@ -96,9 +97,11 @@ public class JooqCollectionHadler extends JooqHandler {
     @Override
     public int update(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         try {
+            byte[] data = encodeBinary(COLLECTION, obj);
             return context
                     .update(COLLECTION_TABLE)
-                    .set(XML, Gateway.getMarshaller().marshall(obj))
+                    .set(XML,  marshallXml(obj, data))
+                    .set(DATA, data)
                     .where(getPKConditions(uuid, obj))
                     .execute();
         }
@@ -108,16 +111,43 @@ public class JooqCollectionHadler extends JooqHandler {
         }
     }
 
+    @Override
+    protected int upsert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
+        Collection<?> collection = ((Collection<?>)obj);
+        try {
+            byte[] data = encodeBinary(COLLECTION, obj);
+            String xml  = marshallXml(obj, data);
+            return context
+                    .insertInto(COLLECTION_TABLE)
+                    .set(UUID,    uuid)
+                    .set(NAME,    collection.getName())
+                    .set(VERSION, collection.getVersionName())
+                    .set(XML,     xml)
+                    .set(DATA,    data)
+                    .onConflict(UUID, NAME, VERSION)
+                    .doUpdate()
+                    .set(XML,     xml)
+                    .set(DATA,    data)
+                    .execute();
+        }
+        catch (Exception e) {
+            log.error("", e);
+            throw new PersistencyException(e);
+        }
+    }
+
     @Override
     public int insert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         Collection<?> collection = ((Collection<?>)obj);
         try {
+            byte[] data = encodeBinary(COLLECTION, obj);
             return context
                     .insertInto(COLLECTION_TABLE)
                     .set(UUID,    uuid)
                     .set(NAME,    collection.getName())
                     .set(VERSION, collection.getVersionName())
-                    .set(XML,     Gateway.getMarshaller().marshall(obj))
+                    .set(XML,     marshallXml(obj, data))
+                    .set(DATA,    data)
                     .execute();
         }
         catch (Exception e) {
@@ -132,8 +162,7 @@ public class JooqCollectionHadler extends JooqHandler {
 
         if(result != null) {
             try {
-                String xml = result.get(XML);
-                return (C2KLocalObject)Gateway.getMarshaller().unmarshall(xml);
+                return (C2KLocalObject)decode(COLLECTION, result.get(XML), result.get(DATA));
             }
             catch (Exception e) {
                 log.error("", e);
@@ -152,9 +181,12 @@ public class JooqCollectionHadler extends JooqHandler {
         .column(NAME,    NAME_TYPE.nullable(false))
         .column(VERSION, NAME_TYPE.nullable(false))
         .column(XML,     xmlType  .nullable(false))
+        .column(DATA,    BINARY_TYPE.nullable(true))
         .constraints(
                 constraint("PK_"+COLLECTION_TABLE.getName()).primaryKey(UUID, NAME, VERSION))
         .execute();
+
+        addColumnIfNotExists(context, COLLECTION_TABLE, DATA, BINARY_TYPE);
     }
 
     @Override
@@ -106,6 +106,11 @@ public class JooqHistoryHandler extends JooqHandler {
         return conditions;
     }
 
+    @Override
+    protected boolean isInsertOnly() {
+        return true;
+    }
+
     @Override
     public int update(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         throw new PersistencyException("Event must not be updated - uuid:"+uuid+" id:"+obj.getName());
@@ -142,39 +147,67 @@ public class JooqHistoryHandler extends JooqHandler {
     public C2KLocalObject fetch(DSLContext context, UUID uuid, String... primaryKeys) throws PersistencyException {
         Record result = fetchRecord(context, uuid, primaryKeys);
 
-        if (result != null) {
-            UUID agent = getUUID(result, AGENT_UUID);
-
-            GTimeStamp ts = DateUtility.fromSqlTimestamp( result.get(TIMESTAMP));
-            //GTimeStamp ts = DateUtility.fromOffsetDateTime( result.get(TIMESTAMP", OffsetDateTime.class)));
-
-            try {
-                return new Event(
-                        result.get(ID),
-                        new ItemPath(uuid),
-                        new AgentPath(agent),
-                        result.get(AGENT_ROLE),
-                        result.get(STEP_NAME),
-                        result.get(STEP_PATH),
-                        result.get(STEP_TYPE),
-                        result.get(STATEMACHINE_NAME),
-                        result.get(STATEMACHINE_VERSION),
-                        result.get(TRANSITION_ID),
-                        result.get(ORIGIN_STATE_ID),
-                        result.get(TARGET_STATE_ID),
-                        result.get(SCHEMA_NAME),
-                        result.get(SCHEMA_VERSION),
-                        result.get(VIEW_NAME),
-                        result.get(HAS_ATTACHMENT.getName(), Boolean.class),
-                        ts);
-            }
-            catch (Exception ex) {
-                log.error("", ex);
-                throw new PersistencyException(ex.getMessage());
-            }
+        if (result != null) return createEvent(uuid, result);
+        else                return null;
+    }
+
+    /**
+     * Reads the Events of the Item with id between from (inclusive) and to (exclusive) using a single query
+     * 
+     * @param context the DSLContext of the transaction
+     * @param uuid the UUID of the Item
+     * @param from the id of the first Event (inclusive)
+     * @param to the id after the last Event (exclusive)
+     * @return the list of Events ordered by their id
+     * @throws PersistencyException Event could not be created from the record
+     */
+    public List<C2KLocalObject> fetchRange(DSLContext context, UUID uuid, int from, int to) throws PersistencyException {
+        List<C2KLocalObject> events = new ArrayList<>();
+
+        for (Record result : context
+                .selectFrom(EVENT_TABLE)
+                .where(UUID.equal(uuid))
+                .and(ID.greaterOrEqual(from))
+                .and(ID.lessThan(to))
+                .orderBy(ID)
+                .fetch())
+        {
+            events.add(createEvent(uuid, result));
+        }
+
+        return events;
+    }
+
+    private Event createEvent(UUID uuid, Record result) throws PersistencyException {
+        UUID agent = getUUID(result, AGENT_UUID);
+
+        GTimeStamp ts = DateUtility.fromSqlTimestamp( result.get(TIMESTAMP));
+        //GTimeStamp ts = DateUtility.fromOffsetDateTime( result.get(TIMESTAMP", OffsetDateTime.class)));
+
+        try {
+            return new Event(
+                    result.get(ID),
+                    new ItemPath(uuid),
+                    new AgentPath(agent),
+                    result.get(AGENT_ROLE),
+                    result.get(STEP_NAME),
+                    result.get(STEP_PATH),
+                    result.get(STEP_TYPE),
+                    result.get(STATEMACHINE_NAME),
+                    result.get(STATEMACHINE_VERSION),
+                    result.get(TRANSITION_ID),
+                    result.get(ORIGIN_STATE_ID),
+                    result.get(TARGET_STATE_ID),
+                    result.get(SCHEMA_NAME),
+                    result.get(SCHEMA_VERSION),
+                    result.get(VIEW_NAME),
+                    result.get(HAS_ATTACHMENT.getName(), Boolean.class),
+                    ts);
+        }
+        catch (Exception ex) {
+            log.error("", ex);
+            throw new PersistencyException(ex.getMessage());
         }
-        else
-            return null;
     }
 
     @Override
@@ -20,6 +20,7 @@
  */
 package org.cristalise.storage.jooqdb.clusterStore;
 
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_ItemProperty_valueIndex;
 import static org.jooq.impl.DSL.constraint;
 import static org.jooq.impl.DSL.field;
 import static org.jooq.impl.DSL.name;
@@ -43,6 +44,7 @@ import org.jooq.JoinType;
 import org.jooq.Operator;
 import org.jooq.Record;
 import org.jooq.Result;
+import org.jooq.SQLDialect;
 import org.jooq.SelectQuery;
 import org.jooq.Table;
 import org.jooq.impl.SQLDataType;
@@ -97,6 +99,22 @@ public class JooqItemPropertyHandler extends JooqHandler {
                 .execute();
     }
 
+    @Override
+    protected int upsert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
+        Property property = (Property)obj;
+        return context
+                .insertInto(ITEM_PROPERTY_TABLE)
+                .set(UUID,    uuid)
+                .set(NAME,    property.getName())
+                .set(VALUE,   property.getValue())
+                .set(MUTABLE, property.isMutable())
+                .onConflict(UUID, NAME)
+                .doUpdate()
+                .set(VALUE,   property.getValue())
+                .set(MUTABLE, property.isMutable())
+                .execute();
+    }
+
     @Override
     public int insert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         return insert(context, uuid, new C2KLocalObject[] {obj});
@@ -123,11 +141,22 @@ public class JooqItemPropertyHandler extends JooqHandler {
     public C2KLocalObject fetch(DSLContext context, UUID uuid, String...primaryKeys) throws PersistencyException {
         Record result = fetchRecord(context, uuid, primaryKeys);
 
-        //Reading MUTABLE boolean flag is done this way because of a bug in jooq supporting MySQL: check issue #23
-        if(result != null) return new Property(result.get(NAME), result.get(VALUE), result.get(MUTABLE.getName(), Boolean.class));
+        if(result != null) return createProperty(result);
         else               return null;
     }
 
+    @Override
+    public List<C2KLocalObject> fetchAll(DSLContext context, UUID uuid, String...primaryKeys) throws PersistencyException {
+        List<C2KLocalObject> properties = new ArrayList<>();
+        for (Record result : fetchRecords(context, uuid, primaryKeys)) properties.add(createProperty(result));
+        return properties;
+    }
+
+    private Property createProperty(Record result) {
+        //Reading MUTABLE boolean flag is done this way because of a bug in jooq supporting MySQL: check issue #23
+        return new Property(result.get(NAME), result.get(VALUE), result.get(MUTABLE.getName(), Boolean.class));
+    }
+
     public List<UUID> findItemsByName(DSLContext context, String name) {
         return findItems(context, new Property(BuiltInItemProperties.NAME, name));
     }
@@ -187,6 +216,13 @@ public class JooqItemPropertyHandler extends JooqHandler {
         .constraints(
                 constraint("PK_"+ITEM_PROPERTY_TABLE.getName()).primaryKey(UUID, NAME))
         .execute();
+
+        // text_pattern_ops makes the index usable for LIKE 'prefix%' independently of the collation of the database
+        if (context.dialect().family() == SQLDialect.POSTGRES && JOOQ_ItemProperty_valueIndex.getBoolean()) {
+            context.createIndexIfNotExists("IDX_"+ITEM_PROPERTY_TABLE.getName()+"_LOWER_VALUE")
+            .on(ITEM_PROPERTY_TABLE, NAME, field("lower({0}) text_pattern_ops", String.class, VALUE))
+            .execute();
+        }
     }
 
     @Override
@@ -20,6 +20,7 @@
  */
 package org.cristalise.storage.jooqdb.clusterStore;
 
+import static org.cristalise.kernel.persistency.ClusterType.JOB;
 import static org.jooq.impl.DSL.constraint;
 import static org.jooq.impl.DSL.field;
 import static org.jooq.impl.DSL.name;
@@ -32,7 +33,6 @@ import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.entity.C2KLocalObject;
 import org.cristalise.kernel.entity.Job;
 import org.cristalise.kernel.lookup.ItemPath;
-import org.cristalise.kernel.process.Gateway;
 import org.cristalise.kernel.utils.CastorHashMap;
 import org.cristalise.storage.jooqdb.JooqDataSourceHandler;
 import org.cristalise.storage.jooqdb.JooqHandler;
@@ -55,6 +55,7 @@ public class JooqJobHandler extends JooqHandler {
     static final Field<String>    TRANSITION        = field(name("TRANSITION"),        String.class);
     static final Field<String>    ROLE_OVERRIDE     = field(name("ROLE_OVERRIDE"),     String.class);
     static final Field<String>    ACT_PROPERTIES    = field(name("ACT_PROPERTIES"),    String.class);
+    static final Field<byte[]>    ACT_PROPERTIES_DATA = field(name("ACT_PROPERTIES_DATA"), byte[].class);
 
     //static final Field<OffsetDateTime> CREATION_TS = field(name("CREATION_TS"), OffsetDateTime.class);
 
@@ -97,6 +98,11 @@ public class JooqJobHandler extends JooqHandler {
         return conditions;
     }
 
+    @Override
+    protected boolean isInsertOnly() {
+        return true;
+    }
+
     @Override
     public int update(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         throw new PersistencyException("Job must not be updated - uuid:"+uuid+" id:"+obj.getName());
@@ -107,8 +113,10 @@ public class JooqJobHandler extends JooqHandler {
         Job job = (Job)obj;
 
         String actPropsXML;
+        byte[] actPropsData;
         try {
-            actPropsXML = Gateway.getMarshaller().marshall(job.getActProps());
+            actPropsData = encodeBinary(JOB, job.getActProps());
+            actPropsXML  = marshallXml(job.getActProps(), actPropsData);
         }
         catch (Exception ex) {
             log.error("insert()", ex);
@@ -124,6 +132,7 @@ public class JooqJobHandler extends JooqHandler {
                 .set(TRANSITION,        job.getTransitionName())
                 .set(ROLE_OVERRIDE,     job.getRoleOverride())
                 .set(ACT_PROPERTIES,    actPropsXML)
+                .set(ACT_PROPERTIES_DATA, actPropsData)
                 .execute();
     }
 
@@ -131,26 +140,34 @@ public class JooqJobHandler extends JooqHandler {
     public C2KLocalObject fetch(DSLContext context, UUID uuid, String... primaryKeys) throws PersistencyException {
         Record result = fetchRecord(context, uuid, primaryKeys);
 
-        if (result != null) {
-            try {
-                CastorHashMap actProps = (CastorHashMap)Gateway.getMarshaller().unmarshall(result.get(ACT_PROPERTIES));
-
-                return new Job(
-                        new ItemPath(uuid),
-                        result.get(STEP_NAME),
-                        result.get(STEP_PATH),
-                        result.get(STEP_TYPE),
-                        result.get(TRANSITION),
-                        result.get(ROLE_OVERRIDE),
-                        actProps);
-            }
-            catch (Exception ex) {
-                log.error("fetch()", ex);
-                throw new PersistencyException(ex);
-            }
+        if (result != null) return createJob(uuid, result);
+        else                return null;
+    }
+
+    @Override
+    public List<C2KLocalObject> fetchAll(DSLContext context, UUID uuid, String... primaryKeys) throws PersistencyException {
+        List<C2KLocalObject> jobs = new ArrayList<>();
+        for (Record result : fetchRecords(context, uuid, primaryKeys)) jobs.add(createJob(uuid, result));
+        return jobs;
+    }
+
+    private Job createJob(UUID uuid, Record result) throws PersistencyException {
+        try {
+            CastorHashMap actProps = (CastorHashMap)decode(JOB, result.get(ACT_PROPERTIES), result.get(ACT_PROPERTIES_DATA));
+
+            return new Job(
+                    new ItemPath(uuid),
+                    result.get(STEP_NAME),
+                    result.get(STEP_PATH),
+                    result.get(STEP_TYPE),
+                    result.get(TRANSITION),
+                    result.get(ROLE_OVERRIDE),
+                    actProps);
+        }
+        catch (Exception ex) {
+            log.error("fetch()", ex);
+            throw new PersistencyException(ex);
         }
-        else
-            return null;
     }
 
     @Override
@@ -165,9 +182,12 @@ public class JooqJobHandler extends JooqHandler {
         .column(TRANSITION,         STRING_TYPE   .nullable(false))
         .column(ROLE_OVERRIDE,      NAME_TYPE     .nullable(true))
         .column(ACT_PROPERTIES,     xmlType       .nullable(false))
+        .column(ACT_PROPERTIES_DATA, BINARY_TYPE  .nullable(true))
         .constraints(
                 constraint("PK_"+JOB_TABLE.getName()).primaryKey(UUID, STEP_NAME, TRANSITION))
         .execute();
+
+        addColumnIfNotExists(context, JOB_TABLE, ACT_PROPERTIES_DATA, BINARY_TYPE);
     }
 
     @Override
@@ -20,37 +20,109 @@
  */
 package org.cristalise.storage.jooqdb.clusterStore;
 
+import static org.cristalise.kernel.persistency.ClusterType.LIFECYCLE;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_Lifecycle_compactionThreshold;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_Lifecycle_incremental;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_Lifecycle_stateCacheSize;
+import static org.jooq.impl.DSL.coalesce;
 import static org.jooq.impl.DSL.constraint;
 import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.inline;
 import static org.jooq.impl.DSL.name;
 import static org.jooq.impl.DSL.table;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 
+import org.cristalise.kernel.common.GTimeStamp;
+import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.entity.C2KLocalObject;
+import org.cristalise.kernel.graph.model.DirectedEdge;
+import org.cristalise.kernel.graph.model.GraphableEdge;
+import org.cristalise.kernel.graph.model.GraphableVertex;
+import org.cristalise.kernel.lifecycle.instance.Activity;
+import org.cristalise.kernel.lifecycle.instance.Join;
+import org.cristalise.kernel.lifecycle.instance.Workflow;
 import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.utils.CastorHashMap;
+import org.cristalise.kernel.utils.DateUtility;
 import org.cristalise.storage.jooqdb.JooqDataSourceHandler;
 import org.cristalise.storage.jooqdb.JooqHandler;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.DataType;
 import org.jooq.Field;
+import org.jooq.InsertValuesStep8;
 import org.jooq.Record;
+import org.jooq.Result;
 import org.jooq.Table;
+import org.jooq.impl.SQLDataType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Stores the Workflow of the Item as a marshalled XML snapshot. When {@link org.cristalise.storage.jooqdb.SystemProperties#JOOQ_Lifecycle_incremental}
+ * is enabled only the state of the changed vertices is written into the LIFECYCLE_DELTA table, which is applied
+ * on the snapshot during fetch. The snapshot is rewritten when the structure (vertices and edges) of the Workflow
+ * has changed, the persisted state of the Item is not known or the number of deltas reached the compaction threshold.
+ * <p>
+ * The persisted state is cached in the JVM, therefore its version is compared with the LAST_SEQ column of the
+ * snapshot within the transaction before writing the deltas, so the changes written by other nodes are not lost.
+ * LAST_SEQ is the SEQ of the last delta or snapshot written for the Item, it only grows. Once it was set, every
+ * write of the Workflow increases it, even if the incremental persistence is disabled.
+ * <p>
+ * The deltas are applied and deleted even if the incremental persistence is disabled, because they could have been
+ * written before it was disabled. The XML column of the snapshot does not contain the deltas, therefore
+ * JooqClusterStorage rejects the SQL Queries reading the LIFECYCLE table while the incremental persistence is enabled.
+ */
 @Slf4j
 public class JooqLifecycleHandler extends JooqHandler {
-    static final Table<?> LIFECYCLE_TABLE = table(name("LIFECYCLE"));
+    static final Table<?> LIFECYCLE_TABLE       = table(name("LIFECYCLE"));
+    static final Table<?> LIFECYCLE_DELTA_TABLE = table(name("LIFECYCLE_DELTA"));
 
     static final Field<UUID>   UUID = field(name("UUID"), UUID.class);
     static final Field<String> NAME = field(name("NAME"), String.class);
     static final Field<String> XML  = field(name("XML"),  String.class);
+    static final Field<byte[]> DATA = field(name("DATA"), byte[].class);
+
+    static final Field<Integer> LAST_SEQ = field(name("LAST_SEQ"), Integer.class);
+
+    static final Field<Integer>   SEQ        = field(name("SEQ"),        Integer.class);
+    static final Field<String>    STEP_PATH  = field(name("STEP_PATH"),  String.class);
+    static final Field<Integer>   STATE      = field(name("STATE"),      Integer.class);
+    static final Field<Boolean>   ACTIVE     = field(name("ACTIVE"),     Boolean.class);
+    static final Field<Timestamp> STATE_DATE = field(name("STATE_DATE"), Timestamp.class);
+    static final Field<Integer>   COUNTER    = field(name("COUNTER"),    Integer.class);
+    static final Field<String>    PROPERTIES = field(name("PROPERTIES"), String.class);
+
+    private final boolean incremental;
+    private final int     compactionThreshold;
+
+    /**
+     * The last persisted state of the Workflow vertices of an Item. It is used to compute the deltas.
+     */
+    private final Cache<UUID, PersistedWorkflow> persistedStates;
+
+    public JooqLifecycleHandler() {
+        incremental         = JOOQ_Lifecycle_incremental.getBoolean();
+        compactionThreshold = JOOQ_Lifecycle_compactionThreshold.getInteger();
+        persistedStates     = CacheBuilder.newBuilder().maximumSize(JOOQ_Lifecycle_stateCacheSize.getInteger()).build();
+
+        log.debug("JooqLifecycleHandler() - incremental:{} compactionThreshold:{}", incremental, compactionThreshold);
+    }
 
     @Override
     protected Table<?> getTable() {
@@ -81,13 +153,176 @@ public class JooqLifecycleHandler extends JooqHandler {
         return conditions;
     }
 
+    /**
+     * @return true if only the state of the changed vertices is written, i.e. the XML column of the snapshot can be stale
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    @Override
+    public int put(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
+        if (!(obj instanceof Workflow)) return super.put(context, uuid, obj);
+
+        if (!incremental) {
+            int rows = super.put(context, uuid, obj);
+
+            // LAST_SEQ is only set if the Workflow was written incrementally before. Increasing it invalidates the 
+            // state cached by other nodes, and the deltas would be applied on the new snapshot, so they are deleted
+            int updated = context
+                    .update(LIFECYCLE_TABLE)
+                    .set(LAST_SEQ, LAST_SEQ.plus(1))
+                    .where(UUID.equal(uuid))
+                    .and(NAME.equal(obj.getName()))
+                    .and(LAST_SEQ.isNotNull())
+                    .execute();
+
+            if (updated > 0) context.delete(LIFECYCLE_DELTA_TABLE).where(UUID.equal(uuid)).execute();
+
+            return rows;
+        }
+
+        Map<String, GraphableVertex> vertices = collectVertices((Workflow)obj);
+        Map<String, VertexState> current = collectVertexStates(vertices);
+        Set<String> structure = collectStructure(vertices);
+        PersistedWorkflow persisted = persistedStates.getIfPresent(uuid);
+
+        if (current == null || persisted == null || !persisted.hasSameStructure(current, structure) 
+                || persisted.deltaCount >= compactionThreshold)
+        {
+            return writeSnapshot(context, uuid, obj, current, structure);
+        }
+
+        List<String> changed = new ArrayList<>();
+
+        for (Map.Entry<String, VertexState> entry : current.entrySet()) {
+            if (!entry.getValue().equals(persisted.vertices.get(entry.getKey()))) changed.add(entry.getKey());
+        }
+
+        if (changed.isEmpty()) {
+            if (isPersistedStateValid(context, uuid, obj, persisted)) return 0;
+            else                                                     return writeSnapshot(context, uuid, obj, current, structure);
+        }
+
+        if (!updateLastSeq(context, uuid, obj, persisted.lastSeq, persisted.lastSeq + changed.size())) {
+            return writeSnapshot(context, uuid, obj, current, structure);
+        }
+
+        InsertValuesStep8<?, UUID, Integer, String, Integer, Boolean, Timestamp, Integer, String> insert = 
+                context.insertInto(LIFECYCLE_DELTA_TABLE, UUID, SEQ, STEP_PATH, STATE, ACTIVE, STATE_DATE, COUNTER, PROPERTIES);
+
+        int seq = persisted.lastSeq;
+
+        for (String path : changed) {
+            VertexState vs = current.get(path);
+            insert = insert.values(uuid, ++seq, path, vs.state, vs.active, vs.stateDate, vs.counter, marshallProperties(vertices.get(path)));
+        }
+
+        int rows = insert.execute();
+
+        log.debug("put() - uuid:{} stored {} delta(s) of {} vertices", uuid, changed.size(), current.size());
+
+        persistedStates.put(uuid, new PersistedWorkflow(current, structure, persisted.deltaCount + changed.size(), seq));
+
+        return rows;
+    }
+
+    /**
+     * Checks that the Workflow of the Item was not written since the state was cached, e.g. by another node 
+     * of the cluster. Only the LAST_SEQ column is read within the transaction.
+     */
+    private boolean isPersistedStateValid(DSLContext context, UUID uuid, C2KLocalObject obj, PersistedWorkflow persisted) {
+        Integer lastSeq = fetchLastSeq(context, uuid, obj);
+        boolean valid = lastSeq != null && persisted.lastSeq == lastSeq;
+
+        if (!valid) log.debug("isPersistedStateValid() - uuid:{} persisted state is stale, writing snapshot", uuid);
+
+        return valid;
+    }
+
+    /**
+     * Sets the LAST_SEQ of the snapshot to newSeq if it is still equal to the cached lastSeq. Comparing and
+     * setting it in one statement also locks the row until the deltas are written.
+     * 
+     * @return false if the persisted state is stale, i.e. another node has written the Workflow
+     */
+    private boolean updateLastSeq(DSLContext context, UUID uuid, C2KLocalObject obj, int lastSeq, int newSeq) {
+        int rows = context
+                .update(LIFECYCLE_TABLE)
+                .set(LAST_SEQ, newSeq)
+                .where(UUID.equal(uuid))
+                .and(NAME.equal(obj.getName()))
+                .and(coalesce(LAST_SEQ, inline(0)).equal(lastSeq))
+                .execute();
+
+        if (rows == 0) log.debug("updateLastSeq() - uuid:{} persisted state is stale, writing snapshot", uuid);
+
+        return rows > 0;
+    }
+
+    /**
+     * @return the LAST_SEQ of the snapshot (0 if it was written before the column existed) or null if there is no snapshot
+     */
+    private Integer fetchLastSeq(DSLContext context, UUID uuid, C2KLocalObject obj) {
+        Record record = context
+                .select(coalesce(LAST_SEQ, inline(0)))
+                .from(LIFECYCLE_TABLE)
+                .where(UUID.equal(uuid))
+                .and(NAME.equal(obj.getName()))
+                .fetchOne();
+
+        return record == null ? null : record.get(0, Integer.class);
+    }
+
+    /**
+     * Writes the complete Workflow into the LIFECYCLE table with the next LAST_SEQ and removes the deltas of the Item
+     */
+    private int writeSnapshot(DSLContext context, UUID uuid, C2KLocalObject obj, Map<String, VertexState> current, Set<String> structure) 
+            throws PersistencyException
+    {
+        persistedStates.invalidate(uuid);
+
+        Integer lastSeq = fetchLastSeq(context, uuid, obj);
+        int newSeq = (lastSeq == null ? 0 : lastSeq) + 1;
+
+        int rows = super.put(context, uuid, obj);
+
+        context.update(LIFECYCLE_TABLE).set(LAST_SEQ, newSeq).where(UUID.equal(uuid)).and(NAME.equal(obj.getName())).execute();
+        int deleted = context.delete(LIFECYCLE_DELTA_TABLE).where(UUID.equal(uuid)).execute();
+
+        log.debug("writeSnapshot() - uuid:{} lastSeq:{} deleted {} delta(s)", uuid, newSeq, deleted);
+
+        if (current != null) persistedStates.put(uuid, new PersistedWorkflow(current, structure, 0, newSeq));
+
+        return rows;
+    }
+
+    @Override
+    public int delete(DSLContext context, UUID uuid, String... primaryKeys) throws PersistencyException {
+        persistedStates.invalidate(uuid);
+
+        context.delete(LIFECYCLE_DELTA_TABLE).where(UUID.equal(uuid)).execute();
+
+        return super.delete(context, uuid, primaryKeys);
+    }
+
+    /**
+     * Forgets the persisted state of all Items, e.g. because a transaction was rolled back. 
+     * The next write of each Workflow will store a full snapshot.
+     */
+    public void clearPersistedStates() {
+        persistedStates.invalidateAll();
+    }
+
     @Override
     public int update(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         try {
+            byte[] data = encodeBinary(LIFECYCLE, obj);
             return context
                     .update(LIFECYCLE_TABLE)
                     .set(NAME, obj.getName())
-                    .set(XML,  Gateway.getMarshaller().marshall(obj))
+                    .set(XML,  marshallXml(obj, data))
+                    .set(DATA, data)
                     .where(UUID.equal(uuid))
                     .execute();
         }
@@ -97,14 +332,39 @@ public class JooqLifecycleHandler extends JooqHandler {
         }
     }
 
+    @Override
+    protected int upsert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
+        try {
+            byte[] data = encodeBinary(LIFECYCLE, obj);
+            String xml  = marshallXml(obj, data);
+            return context
+                    .insertInto(LIFECYCLE_TABLE)
+                    .set(UUID,  uuid)
+                    .set(NAME,  obj.getName())
+                    .set(XML,   xml)
+                    .set(DATA,  data)
+                    .onConflict(UUID, NAME)
+                    .doUpdate()
+                    .set(XML,   xml)
+                    .set(DATA,  data)
+                    .execute();
+        }
+        catch (Exception e) {
+            log.error("", e);
+            throw new PersistencyException(e);
+        }
+    }
+
     @Override
     public int insert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         try {
+            byte[] data = encodeBinary(LIFECYCLE, obj);
             return context
                     .insertInto(LIFECYCLE_TABLE)
                     .set(UUID,  uuid)
                     .set(NAME,  obj.getName())
-                    .set(XML,   Gateway.getMarshaller().marshall(obj))
+                    .set(XML,   marshallXml(obj, data))
+                    .set(DATA,  data)
                     .execute();
         }
         catch (Exception e) {
@@ -118,18 +378,144 @@ public class JooqLifecycleHandler extends JooqHandler {
         Record result = fetchRecord(context, uuid, primaryKeys);
 
         if(result != null) {
+            C2KLocalObject obj;
             try {
-                String xml = result.get(XML);
-                return (C2KLocalObject)Gateway.getMarshaller().unmarshall(xml);
+                obj = (C2KLocalObject)decode(LIFECYCLE, result.get(XML), result.get(DATA));
             }
             catch (Exception e) {
                 log.error("", e);
                 throw new PersistencyException(e);
             }
+
+            // LAST_SEQ is only set by the incremental persistence, without it there are no deltas to apply
+            Integer lastSeq = result.get(LAST_SEQ);
+
+            if (lastSeq != null && obj instanceof Workflow) applyDeltas(context, uuid, (Workflow)obj, lastSeq);
+
+            return obj;
         }
         return null;
     }
 
+    /**
+     * Applies the deltas in the order they were written on the Workflow read from the snapshot, 
+     * and records the resulting state of the vertices to compute the next deltas.
+     */
+    private void applyDeltas(DSLContext context, UUID uuid, Workflow wf, int lastSeq) throws PersistencyException {
+        Result<Record> deltas = context.select().from(LIFECYCLE_DELTA_TABLE).where(UUID.equal(uuid)).orderBy(SEQ).fetch();
+
+        Map<String, GraphableVertex> vertices = collectVertices(wf);
+
+        for (Record delta : deltas) {
+            String path = delta.get(STEP_PATH);
+            GraphableVertex vertex = vertices != null ? vertices.get(path) : null;
+
+            if (vertex == null) throw new PersistencyException("uuid:"+uuid+" - cannot find vertex:"+path+" to apply delta");
+
+            if (vertex instanceof Activity) {
+                Activity act = (Activity)vertex;
+
+                act.setState(delta.get(STATE));
+                act.setActive(delta.get(ACTIVE));
+
+                Timestamp ts = delta.get(STATE_DATE);
+                act.setStateDate(ts == null ? null : DateUtility.fromSqlTimestamp(ts));
+            }
+            else if (vertex instanceof Join) {
+                ((Join)vertex).counter = delta.get(COUNTER);
+            }
+
+            try {
+                CastorHashMap props = (CastorHashMap)Gateway.getMarshaller().unmarshall(delta.get(PROPERTIES));
+                vertex.getProperties().setKeyValuePairs(props.getKeyValuePairs());
+            }
+            catch (Exception e) {
+                log.error("applyDeltas() - uuid:{} path:{}", uuid, path, e);
+                throw new PersistencyException(e);
+            }
+        }
+
+        if (!incremental) return;
+
+        Map<String, VertexState> current = collectVertexStates(vertices);
+
+        if (current != null) persistedStates.put(uuid, new PersistedWorkflow(current, collectStructure(vertices), deltas.size(), lastSeq));
+        else                 persistedStates.invalidate(uuid);
+    }
+
+    private String marshallProperties(GraphableVertex vertex) throws PersistencyException {
+        try {
+            return Gateway.getMarshaller().marshall(vertex.getProperties());
+        }
+        catch (Exception e) {
+            log.error("marshallProperties() - path:{}", vertex.getPath(), e);
+            throw new PersistencyException(e);
+        }
+    }
+
+    /**
+     * @return all vertices of the Workflow keyed by their path, or null if the paths are not unique
+     */
+    private static Map<String, GraphableVertex> collectVertices(Workflow wf) {
+        Map<String, GraphableVertex> vertices = new HashMap<>();
+
+        // duplicated paths cannot be addressed by deltas
+        if (collectVertices(wf, vertices)) return vertices;
+        else                               return null;
+    }
+
+    private static boolean collectVertices(GraphableVertex parent, Map<String, GraphableVertex> vertices) {
+        if (vertices.put(parent.getPath(), parent) != null) return false;
+
+        if (parent.getIsComposite() && parent.getChildren() != null) {
+            for (GraphableVertex child : parent.getChildren()) {
+                if (!collectVertices(child, vertices)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the state of the vertices keyed by their path, or null if vertices is null
+     */
+    private static Map<String, VertexState> collectVertexStates(Map<String, GraphableVertex> vertices) throws PersistencyException {
+        if (vertices == null) return null;
+
+        Map<String, VertexState> states = new HashMap<>();
+
+        for (Map.Entry<String, GraphableVertex> entry : vertices.entrySet()) {
+            states.put(entry.getKey(), new VertexState(entry.getValue()));
+        }
+        return states;
+    }
+
+    /**
+     * Deltas only contain the state of the vertices, therefore any change of the vertices or the edges
+     * (e.g. new Next or retargeted split) requires a new snapshot.
+     * 
+     * @return the description of the vertices and the edges of the Workflow, or null if vertices is null
+     */
+    private static Set<String> collectStructure(Map<String, GraphableVertex> vertices) {
+        if (vertices == null) return null;
+
+        Set<String> structure = new TreeSet<>();
+
+        for (Map.Entry<String, GraphableVertex> entry : vertices.entrySet()) {
+            GraphableVertex v = entry.getValue();
+
+            structure.add("V|" + entry.getKey() + "|" + v.getClass().getName() + "|" + v.getID());
+
+            if (v.getIsComposite() && v.getChildrenGraphModel() != null) {
+                for (DirectedEdge edge : v.getChildrenGraphModel().getEdges()) {
+                    structure.add("E|" + entry.getKey() + "|" + edge.getClass().getName() + "|" + edge.getID() + "|" 
+                            + edge.getOriginVertexId() + "|" + edge.getTerminusVertexId() + "|"
+                            + (edge instanceof GraphableEdge ? new TreeMap<>(((GraphableEdge)edge).getProperties()) : ""));
+                }
+            }
+        }
+        return structure;
+    }
+
     @Override
     public void createTables(DSLContext context) {
         DataType<String> xmlType = JooqDataSourceHandler.getStringXmlType();
@@ -138,13 +524,110 @@ public class JooqLifecycleHandler extends JooqHandler {
         .column(UUID, UUID_TYPE.nullable(false))
         .column(NAME, NAME_TYPE.nullable(false))
         .column(XML,  xmlType  .nullable(false))
+        .column(DATA, BINARY_TYPE.nullable(true))
+        .column(LAST_SEQ, ID_TYPE.nullable(true))
         .constraints(
                 constraint("PK_"+LIFECYCLE_TABLE.getName()).primaryKey(UUID, NAME))
         .execute();
+
+        addColumnIfNotExists(context, LIFECYCLE_TABLE, DATA, BINARY_TYPE);
+        addColumnIfNotExists(context, LIFECYCLE_TABLE, LAST_SEQ, ID_TYPE);
+
+        context.createTableIfNotExists(LIFECYCLE_DELTA_TABLE)
+        .column(UUID,       UUID_TYPE     .nullable(false))
+        .column(SEQ,        ID_TYPE       .nullable(false))
+        .column(STEP_PATH,  STRING_TYPE   .nullable(false))
+        .column(STATE,      ID_TYPE       .nullable(true))
+        .column(ACTIVE,     SQLDataType.BOOLEAN.nullable(true))
+        .column(STATE_DATE, TIMESTAMP_TYPE.nullable(true))
+        .column(COUNTER,    ID_TYPE       .nullable(true))
+        .column(PROPERTIES, xmlType       .nullable(false))
+        .constraints(
+                constraint("PK_"+LIFECYCLE_DELTA_TABLE.getName()).primaryKey(UUID, SEQ))
+        .execute();
     }
 
     @Override
     public void dropTables(DSLContext context) throws PersistencyException {
+        context.dropTableIfExists(LIFECYCLE_DELTA_TABLE).execute();
         context.dropTableIfExists(LIFECYCLE_TABLE).execute();
     }
+
+    /**
+     * The persisted state of all vertices of a Workflow together with its structure, the number of deltas 
+     * written since the last snapshot and the LAST_SEQ it was read or written with
+     */
+    private static class PersistedWorkflow {
+        final Map<String, VertexState> vertices;
+        final Set<String> structure;
+        final int deltaCount;
+        final int lastSeq;
+
+        PersistedWorkflow(Map<String, VertexState> vertices, Set<String> structure, int deltaCount, int lastSeq) {
+            this.vertices   = vertices;
+            this.structure  = structure;
+            this.deltaCount = deltaCount;
+            this.lastSeq    = lastSeq;
+        }
+
+        boolean hasSameStructure(Map<String, VertexState> current, Set<String> currentStructure) {
+            return vertices.keySet().equals(current.keySet()) && structure.equals(currentStructure);
+        }
+    }
+
+    /**
+     * Copy of the mutable fields of a vertex, which are stored as delta
+     */
+    private static class VertexState {
+        final Integer             state;
+        final Boolean             active;
+        final Timestamp           stateDate;
+        final Integer             counter;
+        final Map<String, Object> properties;
+        final List<String>        abstractProps;
+
+        VertexState(GraphableVertex v) throws PersistencyException {
+            if (v instanceof Activity) {
+                Activity act = (Activity)v;
+                try {
+                    state = act.getState();
+                }
+                catch (InvalidDataException e) {
+                    throw new PersistencyException(e);
+                }
+                active = act.getActive();
+                GTimeStamp ts = act.getStateDate();
+                stateDate = ts == null ? null : DateUtility.toSqlTimestamp(ts);
+            }
+            else {
+                state     = null;
+                active    = null;
+                stateDate = null;
+            }
+
+            counter       = v instanceof Join ? ((Join)v).counter : null;
+            properties    = new HashMap<>(v.getProperties());
+            abstractProps = new ArrayList<>(v.getProperties().getAbstract());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof VertexState)) return false;
+
+            VertexState other = (VertexState) obj;
+
+            return Objects.equals(state, other.state)
+                    && Objects.equals(active, other.active)
+                    && Objects.equals(stateDate, other.stateDate)
+                    && Objects.equals(counter, other.counter)
+                    && Objects.equals(properties, other.properties)
+                    && Objects.equals(abstractProps, other.abstractProps);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(state, active, counter);
+        }
+    }
 }
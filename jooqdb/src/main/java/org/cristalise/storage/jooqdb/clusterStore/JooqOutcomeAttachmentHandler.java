@@ -101,6 +101,11 @@ public class JooqOutcomeAttachmentHandler extends JooqHandler {
         return conditions;
     }
 
+    @Override
+    protected boolean isInsertOnly() {
+        return true;
+    }
+
     @Override
     public int update(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         throw new IllegalArgumentException("OutcomeAttachment must not be updated uuid:"+uuid+" name:"+obj.getName());
@@ -103,6 +103,11 @@ public class JooqOutcomeHandler extends JooqHandler {
         return conditions;
     }
 
+    @Override
+    protected boolean isInsertOnly() {
+        return true;
+    }
+
     @Override
     public int update(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         throw new PersistencyException("Outcome must not be updated uuid:"+uuid+" name:"+obj.getName());
@@ -100,6 +100,23 @@ public class JooqViewpointHandler extends JooqHandler {
                 .execute();
     }
 
+    @Override
+    protected int upsert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
+        Viewpoint view = (Viewpoint)obj;
+        return context
+                .insertInto(VIEWPOINT_TABLE)
+                .set(UUID,           uuid)
+                .set(SCHEMA_NAME,    view.getSchemaName())
+                .set(NAME,           view.getName())
+                .set(SCHEMA_VERSION, view.getSchemaVersion())
+                .set(EVENT_ID,       view.getEventId())
+                .onConflict(UUID, SCHEMA_NAME, NAME)
+                .doUpdate()
+                .set(SCHEMA_VERSION, view.getSchemaVersion())
+                .set(EVENT_ID,       view.getEventId())
+                .execute();
+    }
+
     @Override
     public int insert(DSLContext context, UUID uuid, C2KLocalObject obj) throws PersistencyException {
         Viewpoint view = (Viewpoint)obj;
@@ -117,12 +134,23 @@ public class JooqViewpointHandler extends JooqHandler {
     public C2KLocalObject fetch(DSLContext context, UUID uuid, String...primaryKeys) throws PersistencyException {
         Record result = fetchRecord(context, uuid, primaryKeys);
 
-        if(result != null) return new Viewpoint(new ItemPath(uuid),
+        if(result != null) return createViewpoint(uuid, result);
+        else return null;
+    }
+
+    @Override
+    public List<C2KLocalObject> fetchAll(DSLContext context, UUID uuid, String...primaryKeys) throws PersistencyException {
+        List<C2KLocalObject> viewpoints = new ArrayList<>();
+        for (Record result : fetchRecords(context, uuid, primaryKeys)) viewpoints.add(createViewpoint(uuid, result));
+        return viewpoints;
+    }
+
+    private Viewpoint createViewpoint(UUID uuid, Record result) {
+        return new Viewpoint(new ItemPath(uuid),
                 result.get(SCHEMA_NAME),
                 result.get(NAME),
                 result.get(SCHEMA_VERSION),
                 result.get(EVENT_ID));
-        else return null;
     }
 
     @Override
@@ -25,6 +25,8 @@ import static org.cristalise.kernel.entity.proxy.ProxyMessage.Type.DELETE;
 import static org.cristalise.kernel.lookup.Lookup.SearchConstraints.WILDCARD_MATCH;
 import static org.cristalise.storage.jooqdb.JooqDataSourceHandler.retrieveContext;
 import static org.cristalise.storage.jooqdb.SystemProperties.JooqLookupManager_domainTreeSearches_specialCharsToEscape;
+import static org.cristalise.storage.jooqdb.SystemProperties.JooqLookupManager_roleIndex_enable;
+import static org.cristalise.storage.jooqdb.SystemProperties.JooqLookupManager_search_estimateCount;
 import static org.cristalise.storage.jooqdb.clusterStore.JooqItemPropertyHandler.ITEM_PROPERTY_TABLE;
 import static org.cristalise.storage.jooqdb.lookup.JooqDomainPathHandler.DOMAIN_PATH_TABLE;
 import static org.cristalise.storage.jooqdb.lookup.JooqDomainPathHandler.TARGET;
@@ -33,8 +35,8 @@ import static org.cristalise.storage.jooqdb.lookup.JooqRolePathHandler.AGENT;
 import static org.cristalise.storage.jooqdb.lookup.JooqRolePathHandler.ROLE_PATH_TABLE;
 import static org.jooq.SQLDialect.POSTGRES;
 import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.lower;
 import static org.jooq.impl.DSL.name;
-import static org.jooq.impl.DSL.upper;
 
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -44,6 +46,7 @@ import java.util.List;
 import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
+import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.common.ObjectAlreadyExistsException;
 import org.cristalise.kernel.common.ObjectCannotBeUpdated;
 import org.cristalise.kernel.common.ObjectNotFoundException;
@@ -74,6 +77,7 @@ import org.jooq.SelectQuery;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 
+import io.vertx.core.json.JsonArray;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -88,6 +92,11 @@ public class JooqLookupManager implements LookupManager {
     private JooqPermissionHandler   permissions;
     private JooqItemPropertyHandler properties;
 
+    /**
+     * Optional in-memory index of the agent-role-permission relations, null if it is disabled
+     */
+    private JooqRoleIndex roleIndex;
+
     private Argon2Password passwordHasher;
 
     @Override
@@ -112,6 +121,12 @@ public class JooqLookupManager implements LookupManager {
             }
 
             passwordHasher = new Argon2Password();
+
+            if (JooqLookupManager_roleIndex_enable.getBoolean()) {
+                roleIndex = new JooqRoleIndex();
+                roleIndex.load(retrieveContext(null));
+                subscribeRoleChanges();
+            }
         }
         catch (PersistencyException ex) {
             log.error("open()", ex);
@@ -133,6 +148,43 @@ public class JooqLookupManager implements LookupManager {
         roles       = null;
         permissions = null;
         properties  = null;
+
+        if (roleIndex != null) roleIndex.invalidate();
+    }
+
+    /**
+     * Invalidates the role index when a ProxyMessage of a Role change is received from any process of the cluster
+     */
+    private void subscribeRoleChanges() {
+        if (Gateway.getVertx() == null) {
+            log.warn("subscribeRoleChanges() - vertx was not initialised, role index is only invalidated by local changes");
+            return;
+        }
+
+        Gateway.getVertx().eventBus().consumer(ProxyMessage.ebAddress, message -> {
+            for (Object element: (JsonArray) message.body()) {
+                try {
+                    if (new ProxyMessage((String)element).isRoleMessage()) {
+                        roleIndex.invalidate();
+                        return;
+                    }
+                }
+                catch (InvalidDataException e) {
+                    log.warn("subscribeRoleChanges() - invalid message:{}", element, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * The role index can only be used outside of transactions, because it does not contain uncommitted changes
+     */
+    private boolean useRoleIndex(TransactionKey transactionKey) {
+        return roleIndex != null && transactionKey == null;
+    }
+
+    private void invalidateRoleIndex() {
+        if (roleIndex != null) roleIndex.invalidate();
     }
 
     @Override
@@ -235,6 +287,12 @@ public class JooqLookupManager implements LookupManager {
             if (path instanceof DomainPath) {
                 Gateway.sendProxyEvent(new ProxyMessage(null, path.toString(), DELETE));
             }
+            else if (path instanceof AgentPath) {
+                invalidateRoleIndex();
+            }
+            else if (path instanceof RolePath) {
+                sendRoleProxyEvent((RolePath)path, DELETE, transactionKey);
+            }
         }
         catch (PersistencyException e) {
             log.error("delete()", e);
@@ -321,7 +379,9 @@ public class JooqLookupManager implements LookupManager {
             else if (result.size() > 1)                    throw new ObjectNotFoundException("Unbiguos roleName:'"+roleName+"'");
 
             RolePath role = (RolePath)result.get(0);
-            role.setPermissions(permissions.fetch(context, role.getStringPath()));
+
+            if (useRoleIndex(transactionKey)) role.setPermissions(roleIndex.getPermissions(context, role.getStringPath()));
+            else                              role.setPermissions(permissions.fetch(context, role.getStringPath()));
 
             return role;
         }
@@ -490,7 +550,9 @@ public class JooqLookupManager implements LookupManager {
             select.addJoin(ITEM_PROPERTY_TABLE.as(p.getName()), JoinType.LEFT_OUTER_JOIN, TARGET.equal(joinField));
 
             select.addConditions(Operator.AND, field(name(p.getName(), "NAME"),  String.class).equal(p.getName()));
-            select.addConditions(Operator.AND, upper(field(name(p.getName(), "VALUE"), String.class)).like(upper(p.getValue())));
+            // lower() matches the function based index created by JooqItemPropertyHandler.createTables(). The pattern
+            // is lower-cased in java, lower(?) would not be a constant pattern, so PostgreSQL could not use the index
+            select.addConditions(Operator.AND, lower(field(name(p.getName(), "VALUE"), String.class)).like(StringUtils.lowerCase(p.getValue())));
         }
 
         select.addConditions(Operator.AND, JooqDomainPathHandler.PATH.like(domains.getFindPattern(start, "", WILDCARD_MATCH)));
@@ -505,6 +567,20 @@ public class JooqLookupManager implements LookupManager {
 
     @Override
     public PagedResult search(Path start, List<Property> props, int offset, int limit, TransactionKey transactionKey) {
+        return search(start, props, null, offset, limit, transactionKey);
+    }
+
+    /**
+     * Keyset pagination: the page is selected by the condition PATH > after instead of OFFSET, so it uses the 
+     * primary key of DOMAIN_PATH and deep pages are as fast as the first one. The rows are counted only for the 
+     * first page (after is null), maxRows is -1 for the subsequent pages.
+     */
+    @Override
+    public PagedResult search(Path start, List<Property> props, Path after, int limit, TransactionKey transactionKey) {
+        return search(start, props, after, 0, limit, transactionKey);
+    }
+
+    private PagedResult search(Path start, List<Property> props, Path after, int offset, int limit, TransactionKey transactionKey) {
         if (!exists(start, transactionKey)) return new PagedResult(0, new ArrayList<Path>());
 
         DSLContext context;
@@ -518,21 +594,28 @@ public class JooqLookupManager implements LookupManager {
 
         int maxRows = -1;
 
-        // without limit no need to count the number of rows
-        if (limit > 0) {
-            SelectQuery<?> selectCount = getSearchSelect(context, start, props);
-            selectCount.addSelect(DSL.count());
+        // without limit no need to count the number of rows, keyset pagination counts only for the first page
+        if (limit > 0 && after == null) {
+            if (JooqLookupManager_search_estimateCount.getBoolean()) {
+                maxRows = estimateSearchCount(context, start, props);
+            }
 
-            log.trace("search(props) - SQL(count):\n{}", selectCount);
+            if (maxRows == -1) {
+                SelectQuery<?> selectCount = getSearchSelect(context, start, props);
+                selectCount.addSelect(DSL.count());
 
-            maxRows = selectCount.fetchOne(0, int.class);
+                log.trace("search(props) - SQL(count):\n{}", selectCount);
 
-            if (maxRows == 0) return new PagedResult(0, new ArrayList<Path>());
+                maxRows = selectCount.fetchOne(0, int.class);
+
+                if (maxRows == 0) return new PagedResult(0, new ArrayList<Path>());
+            }
         }
 
         SelectQuery<?> select = getSearchSelect(context, start, props);
 
         select.addSelect(JooqDomainPathHandler.PATH, TARGET);
+        if (after != null) select.addConditions(Operator.AND, JooqDomainPathHandler.PATH.greaterThan(after.getStringPath()));
         select.addOrderBy(JooqDomainPathHandler.PATH);
 
         if (limit  > 0) select.addLimit(limit);
@@ -543,6 +626,28 @@ public class JooqLookupManager implements LookupManager {
         return new PagedResult(maxRows, domains.getListOfPath(select.fetch()));
     }
 
+    /**
+     * Uses the row estimate of the query planner instead of executing the count(*) of the search query.
+     * 
+     * @return the estimated number of rows or -1 if the dialect does not provide the estimate
+     */
+    private int estimateSearchCount(DSLContext context, Path start, List<Property> props) {
+        SelectQuery<?> select = getSearchSelect(context, start, props);
+        select.addSelect(JooqDomainPathHandler.PATH);
+
+        try {
+            double rows = context.explain(select).rows();
+
+            log.trace("estimateSearchCount() - rows:{} SQL:\n{}", rows, select);
+
+            if (!Double.isNaN(rows)) return (int) Math.min(Integer.MAX_VALUE, Math.round(rows));
+        }
+        catch (DataAccessException e) {
+            log.warn("estimateSearchCount() - dialect:{} falling back to count(*) - {}", context.dialect(), e.getMessage());
+        }
+        return -1;
+    }
+
     @Override
     public Iterator<Path> search(Path start, PropertyDescriptionList props, TransactionKey transactionKey) {
         return search(start, props, 0, 0, transactionKey).rows.iterator();
@@ -566,6 +671,8 @@ public class JooqLookupManager implements LookupManager {
             roles.insert(context, role, null);
             permissions.insert(context, role.getStringPath(), role.getPermissionsList());
 
+            invalidateRoleIndex();
+
             return role;
         }
         catch (Exception e) {
@@ -584,6 +691,8 @@ public class JooqLookupManager implements LookupManager {
             RolePath finalRole = roles.fetch(context, role);
             int rows = roles.insert(context, finalRole, agent);
             if (rows != 1) throw new ObjectCannotBeUpdated("Updated rows must be 1 but it was '"+rows+"'");
+
+            sendRoleProxyEvent(role, ADD, transactionKey);
        }
         catch (Exception e) {
             log.error("addRole()", e);
@@ -623,6 +732,17 @@ public class JooqLookupManager implements LookupManager {
             return new PagedResult();
         }
 
+        if (useRoleIndex(transactionKey)) {
+            try {
+                List<AgentPath> roleAgents = roleIndex.getAgents(context, role);
+                return new PagedResult(limit > 0 ? roleAgents.size() : -1, subList(roleAgents, offset, limit));
+            }
+            catch (PersistencyException e) {
+                log.error("getAgents()", e);
+                throw new ObjectNotFoundException(e.getMessage());
+            }
+        }
+
         if (limit > 0) {
             SelectQuery<?> selectCount = getGetAgentsSelect(context, role);
             selectCount.addSelect(DSL.count());
@@ -673,6 +793,9 @@ public class JooqLookupManager implements LookupManager {
     public RolePath[] getRoles(AgentPath agent, TransactionKey transactionKey) {
         try {
             DSLContext context = retrieveContext(transactionKey);
+
+            if (useRoleIndex(transactionKey)) return roleIndex.getRoles(context, agent).toArray(new RolePath[0]);
+
             return roles.findRolesOfAgent(context, agent, permissions).toArray(new RolePath[0]);
         }
         catch (PersistencyException e) {
@@ -685,6 +808,12 @@ public class JooqLookupManager implements LookupManager {
     public PagedResult getRoles(AgentPath agent, int offset, int limit, TransactionKey transactionKey) {
         try {
             DSLContext context = retrieveContext(transactionKey);
+
+            if (useRoleIndex(transactionKey)) {
+                List<Path> agentRoles = roleIndex.getRoles(context, agent);
+                return new PagedResult(agentRoles.size(), subList(agentRoles, offset, limit));
+            }
+
             return new PagedResult(
                     roles.countRolesOfAgent(context, agent),
                     roles.findRolesOfAgent(context, agent, offset, limit, permissions));
@@ -699,6 +828,9 @@ public class JooqLookupManager implements LookupManager {
     public boolean hasRole(AgentPath agent, RolePath role, TransactionKey transactionKey) {
         try {
             DSLContext context = retrieveContext(transactionKey);
+
+            if (useRoleIndex(transactionKey)) return roleIndex.hasRole(context, role, agent);
+
             return roles.exists(context, role, agent);
         }
         catch (PersistencyException e) {
@@ -718,6 +850,8 @@ public class JooqLookupManager implements LookupManager {
             if (rows == 0)
                 throw new ObjectCannotBeUpdated("Role:"+role+" Agent:"+agent + " are not related.");
 
+            sendRoleProxyEvent(role, DELETE, transactionKey);
+
         }
         catch (Exception e) {
             throw new ObjectCannotBeUpdated("Role:"+role+" Agent:"+agent + " error:" + e.getMessage());
@@ -732,6 +866,9 @@ public class JooqLookupManager implements LookupManager {
             DSLContext context = retrieveContext(transactionKey);
             int rows = items.updatePassword(context, agent, passwordHasher.hashPassword(newPassword.toCharArray()), temporary);
             if (rows != 1) throw new ObjectCannotBeUpdated("Agent:"+agent);
+
+            //the index contains the temporary password flag of the Agents
+            invalidateRoleIndex();
         }
         catch (Exception e) {
             log.error("setAgentPassword()", e);
@@ -748,6 +885,8 @@ public class JooqLookupManager implements LookupManager {
         try {
             DSLContext context = retrieveContext(transactionKey);
             roles.update(context, role);
+
+            invalidateRoleIndex();
         }
         catch (Exception e) {
             log.error("setHasJobList()", e);
@@ -804,6 +943,8 @@ public class JooqLookupManager implements LookupManager {
                 this.permissions.delete(context, role.getStringPath());
             }
             this.permissions.insert(context, role.getStringPath(), role.getPermissionsList());
+
+            sendRoleProxyEvent(role, ADD, transactionKey);
         }
         catch (Exception e) {
             log.error("setPermissions()", e);
@@ -811,6 +952,27 @@ public class JooqLookupManager implements LookupManager {
         }
     }
 
+    /**
+     * Notifies the subscribers (e.g. the permission cache of SecurityManager) that the Agents or the permissions
+     * of the Role were changed. The message is sent when the transaction is committed.
+     */
+    private void sendRoleProxyEvent(RolePath role, ProxyMessage.Type type, TransactionKey transactionKey) {
+        invalidateRoleIndex();
+
+        ProxyMessage message = new ProxyMessage(null, role.toString(), type);
+
+        // ClusterStorageManager is not initialised when the Lookup is used on its own
+        if (Gateway.getStorage() != null) Gateway.getStorage().sendProxyEvent(message, transactionKey);
+        else                              Gateway.sendProxyEvent(message);
+    }
+
+    private static List<Path> subList(List<? extends Path> list, int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), list.size());
+        int to   = limit > 0 ? Math.min(from + limit, list.size()) : list.size();
+
+        return new ArrayList<Path>(list.subList(from, to));
+    }
+
     @Override
     public void postStartServer() {
     }
@@ -0,0 +1,238 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.storage.jooqdb.lookup;
+
+import static org.cristalise.storage.jooqdb.clusterStore.JooqItemPropertyHandler.ITEM_PROPERTY_TABLE;
+import static org.cristalise.storage.jooqdb.lookup.JooqItemHandler.ITEM_TABLE;
+import static org.cristalise.storage.jooqdb.lookup.JooqPermissionHandler.PERMISSION;
+import static org.cristalise.storage.jooqdb.lookup.JooqPermissionHandler.ROLE_PATH;
+import static org.cristalise.storage.jooqdb.lookup.JooqPermissionHandler.ROLE_PERMISSION_TABLE;
+import static org.cristalise.storage.jooqdb.lookup.JooqRolePathHandler.AGENT;
+import static org.cristalise.storage.jooqdb.lookup.JooqRolePathHandler.NO_AGENT;
+import static org.cristalise.storage.jooqdb.lookup.JooqRolePathHandler.PATH;
+import static org.cristalise.storage.jooqdb.lookup.JooqRolePathHandler.ROLE_PATH_TABLE;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.name;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cristalise.kernel.common.PersistencyException;
+import org.cristalise.kernel.lookup.AgentPath;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.lookup.Path;
+import org.cristalise.kernel.lookup.RolePath;
+import org.cristalise.storage.jooqdb.clusterStore.JooqItemPropertyHandler;
+import org.jooq.DSLContext;
+import org.jooq.JoinType;
+import org.jooq.Record;
+import org.jooq.SelectQuery;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of the agent-role-permission relations stored in the ROLE_PATH and ROLE_PERMISSION tables.
+ * The whole content is loaded with 3 queries and it is replaced as a whole. When the index is invalidated
+ * (e.g. a ProxyMessage of a Role change was received) it is reloaded lazily by the next read.
+ * 
+ * The Name of the Agents is indexed as well, because it is returned by getAgents(). Agents are not
+ * expected to be renamed.
+ */
+@Slf4j
+public class JooqRoleIndex {
+
+    /**
+     * Immutable content of the index
+     */
+    private static class Snapshot {
+        /** Role memberships of the Agents including the NO_AGENT entries of the Roles, sorted by path */
+        final Map<UUID, List<RolePath>> rolesOfAgents = new HashMap<>();
+        /** The Agents of the Roles sorted by name */
+        final Map<String, List<AgentPath>> agentsOfRoles = new HashMap<>();
+        /** The permissions of the Roles */
+        final Map<String, List<String>> permissionsOfRoles = new HashMap<>();
+    }
+
+    private volatile Snapshot snapshot = null;
+
+    /** Incremented by each invalidation, so a reload running in parallel does not store the outdated content */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Drops the content of the index, it is reloaded by the next read
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * Loads the content of the index from the database
+     * 
+     * @param context the context to use
+     * @throws PersistencyException database error
+     */
+    public void load(DSLContext context) throws PersistencyException {
+        getSnapshot(context);
+    }
+
+    private Snapshot getSnapshot(DSLContext context) throws PersistencyException {
+        Snapshot current = snapshot;
+        if (current != null) return current;
+
+        synchronized (this) {
+            current = snapshot;
+            if (current != null) return current;
+
+            long startVersion = version.get();
+            current = loadSnapshot(context);
+
+            if (version.get() == startVersion) snapshot = current;
+
+            return current;
+        }
+    }
+
+    private Snapshot loadSnapshot(DSLContext context) throws PersistencyException {
+        Snapshot newSnapshot = new Snapshot();
+
+        for (Record record: context.select().from(ROLE_PATH_TABLE).fetch()) {
+            newSnapshot.rolesOfAgents
+                .computeIfAbsent(record.get(AGENT), k -> new ArrayList<>())
+                .add(JooqRolePathHandler.getRolePath(record, null));
+        }
+
+        for (Record record: context.select().from(ROLE_PERMISSION_TABLE).fetch()) {
+            newSnapshot.permissionsOfRoles
+                .computeIfAbsent(record.get(ROLE_PATH), k -> new ArrayList<>())
+                .add(record.get(PERMISSION));
+        }
+
+        for (Record record: getAgentsSelect(context).fetch()) {
+            ItemPath agent = JooqItemHandler.getItemPath(context, null, record);
+
+            if (agent instanceof AgentPath) {
+                newSnapshot.agentsOfRoles
+                    .computeIfAbsent(record.get(PATH), k -> new ArrayList<>())
+                    .add((AgentPath) agent);
+            }
+        }
+
+        for (List<RolePath> roles: newSnapshot.rolesOfAgents.values()) {
+            roles.sort(Comparator.comparing(RolePath::getStringPath));
+        }
+
+        log.debug("loadSnapshot() - #agents:{} #roles:{}", newSnapshot.rolesOfAgents.size(), newSnapshot.permissionsOfRoles.size());
+
+        return newSnapshot;
+    }
+
+    /**
+     * Same as the select used in JooqLookupManager.getAgents() but for all Roles, ordered by the Name of the Agents
+     */
+    private SelectQuery<?> getAgentsSelect(DSLContext context) {
+        SelectQuery<?> select = context.selectQuery();
+
+        select.addFrom(ROLE_PATH_TABLE.as("role"));
+
+        select.addJoin(ITEM_TABLE.as("item"),          JoinType.JOIN, AGENT.equal(field(name("item", "UUID"), UUID.class)));
+        select.addJoin(ITEM_PROPERTY_TABLE.as("prop"), JoinType.JOIN, AGENT.equal(field(name("prop", "UUID"), UUID.class)));
+
+        select.addConditions(JooqItemPropertyHandler.NAME.equal("Name"));
+
+        select.addSelect(
+                PATH,
+                field(name("item", "UUID"), UUID.class),
+                JooqItemHandler.IS_AGENT,
+                JooqItemPropertyHandler.VALUE.as("Name"),
+                JooqItemHandler.IS_PASSWORD_TEMPORARY);
+
+        select.addOrderBy(field(name("Name")));
+
+        return select;
+    }
+
+    /**
+     * Returns the Roles of the Agent with their permissions, same as JooqRolePathHandler.findRolesOfAgent()
+     */
+    public List<Path> getRoles(DSLContext context, AgentPath agent) throws PersistencyException {
+        Snapshot current = getSnapshot(context);
+        List<Path> result = new ArrayList<>();
+
+        for (RolePath role: current.rolesOfAgents.getOrDefault(agent.getUUID(), Collections.emptyList())) {
+            result.add(copy(current, role));
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks if the Agent has the Role. If agent is null it checks if the Role exists.
+     */
+    public boolean hasRole(DSLContext context, RolePath role, AgentPath agent) throws PersistencyException {
+        UUID uuid = agent == null ? NO_AGENT : agent.getUUID();
+        String path = role.getStringPath();
+
+        for (RolePath r: getSnapshot(context).rolesOfAgents.getOrDefault(uuid, Collections.emptyList())) {
+            if (r.getStringPath().equals(path)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the Agents of the Role ordered by their Name
+     */
+    public List<AgentPath> getAgents(DSLContext context, RolePath role) throws PersistencyException {
+        List<AgentPath> result = new ArrayList<>();
+
+        for (AgentPath agent: getSnapshot(context).agentsOfRoles.getOrDefault(role.getStringPath(), Collections.emptyList())) {
+            result.add(copy(agent));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the permissions of the Role
+     */
+    public List<String> getPermissions(DSLContext context, String role) throws PersistencyException {
+        return new ArrayList<>(getSnapshot(context).permissionsOfRoles.getOrDefault(role, Collections.emptyList()));
+    }
+
+    /**
+     * AgentPath and RolePath are mutable, so the indexed instances are never returned
+     */
+    private AgentPath copy(AgentPath agent) {
+        return new AgentPath(agent.getUUID(), agent.getAgentName(), agent.isPasswordTemporary());
+    }
+
+    private RolePath copy(Snapshot current, RolePath role) {
+        List<String> permissions = new ArrayList<>(current.permissionsOfRoles.getOrDefault(role.getStringPath(), Collections.emptyList()));
+        return new RolePath(role.getStringPath(), role.hasJobList(), permissions);
+    }
+}
@@ -20,7 +20,13 @@
  */
 package org.cristalise.lookup;
 
+import static org.cristalise.storage.jooqdb.clusterStore.JooqItemPropertyHandler.ITEM_PROPERTY_TABLE;
+import static org.cristalise.storage.jooqdb.clusterStore.JooqItemPropertyHandler.NAME;
+import static org.cristalise.storage.jooqdb.clusterStore.JooqItemPropertyHandler.VALUE;
+import static org.jooq.impl.DSL.lower;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 import static org.unitils.reflectionassert.ReflectionAssert.assertReflectionEquals;
 import static org.unitils.reflectionassert.ReflectionComparatorMode.LENIENT_ORDER;
 
@@ -122,4 +128,58 @@ public class LookupPropertySearchTest extends LookupTestBase {
         assertEquals(35, actuals.maxRows);
         assertReflectionEquals(expecteds.subList(0, 10), actuals.rows, LENIENT_ORDER);
     }
+
+    @Test
+    public void searchByProperty_caseInsensitive() {
+        compare( Arrays.asList(new DomainPath("toto/item1", itemPath1)),
+                lookup.search(new DomainPath("toto"), propType, new Property("Style", "FLUF%", false)));
+    }
+
+    /**
+     * Only runs with PostgreSQL, the function based index is not created for other databases
+     */
+    @Test
+    public void searchByProperty_usesLowerValueIndex() throws Exception {
+        assumeTrue(dbType == DBModes.PostgreSQL);
+
+        // the table is too small, the planner would choose a sequential scan anyway
+        lookupContextField.execute("SET enable_seqscan = off");
+
+        String plan = lookupContextField.explain(
+                lookupContextField.select(JooqItemPropertyHandler.UUID).from(ITEM_PROPERTY_TABLE)
+                    .where(NAME.equal("Style")).and(lower(VALUE).like("fluf%"))
+            ).plan();
+
+        assertTrue(plan, plan.toUpperCase().contains("IDX_ITEM_PROPERTY_LOWER_VALUE"));
+    }
+
+    @Test
+    public void searchByProperty_keysetPaged() throws Exception {
+        List<DomainPath> expecteds = new ArrayList<>();
+
+        for (int i = 0; i < 25; i++) {
+            ItemPath ip = new ItemPath(UUID.randomUUID());
+            DomainPath dp = new DomainPath("keyset/item" + StringUtils.leftPad(""+i, 2, "0"), ip);
+
+            lookup.add(ip);
+            lookup.add(dp);
+            lookupPropertiesField.put(lookupContextField, ip.getUUID(), propType);
+
+            expecteds.add(dp);
+        }
+
+        PagedResult actuals = lookup.search(new DomainPath("keyset"), Arrays.asList(propType), null, 10, null);
+
+        assertEquals(25, actuals.maxRows);
+        assertReflectionEquals(expecteds.subList(0, 10), actuals.rows);
+
+        actuals = lookup.search(new DomainPath("keyset"), Arrays.asList(propType), actuals.rows.get(9), 10, null);
+
+        assertEquals(-1, actuals.maxRows);
+        assertReflectionEquals(expecteds.subList(10, 20), actuals.rows);
+
+        actuals = lookup.search(new DomainPath("keyset"), Arrays.asList(propType), actuals.rows.get(9), 10, null);
+
+        assertReflectionEquals(expecteds.subList(20, 25), actuals.rows);
+    }
 }
@@ -0,0 +1,43 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.lookup;
+
+import static org.cristalise.storage.jooqdb.SystemProperties.JooqLookupManager_roleIndex_enable;
+
+import org.cristalise.kernel.process.Gateway;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/**
+ * Executes all tests of LookupRoleTest using the in-memory role index of JooqLookupManager
+ */
+public class LookupRoleIndexTest extends LookupRoleTest {
+
+    @BeforeClass
+    public static void enableRoleIndex() {
+        Gateway.getProperties().put(JooqLookupManager_roleIndex_enable.getSystemPropertyName(), true);
+    }
+
+    @AfterClass
+    public static void disableRoleIndex() {
+        Gateway.getProperties().remove(JooqLookupManager_roleIndex_enable.getSystemPropertyName());
+    }
+}
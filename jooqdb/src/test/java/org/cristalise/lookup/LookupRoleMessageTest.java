@@ -0,0 +1,116 @@
+/**
+ * This file is part of the CRISTAL-iSE jOOQ Cluster Storage Module.
+ * Copyright (c) 2001-2017 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.lookup;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.cristalise.kernel.entity.proxy.ProxyMessage;
+import org.cristalise.kernel.lookup.AgentPath;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.lookup.RolePath;
+import org.cristalise.kernel.process.Gateway;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+
+/**
+ * Checks the role ProxyMessages used to invalidate the permission cache of the SecurityManager
+ */
+public class LookupRoleMessageTest extends LookupTestBase {
+
+    static BlockingQueue<ProxyMessage> roleMessages = new LinkedBlockingQueue<>();
+
+    RolePath  user = new RolePath(new RolePath(), "UserRole", Arrays.asList("itemType1:enable,disable"));
+    AgentPath jim  = new AgentPath(new ItemPath(), "Jim");
+
+    @BeforeClass
+    public static void setUpVertx() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        FieldUtils.writeDeclaredStaticField(Gateway.class, "mVertx", vertx, true);
+
+        vertx.eventBus().consumer(ProxyMessage.ebAddress, message -> {
+            for (Object element: (JsonArray) message.body()) {
+                try {
+                    ProxyMessage proxyMessage = new ProxyMessage((String)element);
+                    if (proxyMessage.isRoleMessage()) roleMessages.add(proxyMessage);
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    @Override @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        lookup.add(user);
+        lookup.add(jim);
+
+        roleMessages.clear();
+    }
+
+    private void checkRoleMessage(RolePath role, ProxyMessage.Type type) throws Exception {
+        ProxyMessage message = roleMessages.poll(5, SECONDS);
+
+        assertNotNull("Role message was not received", message);
+        assertTrue(message.isRoleMessage());
+        assertEquals(role.getStringPath(), message.getPath());
+        assertEquals(type, message.getMessageType());
+    }
+
+    @Test
+    public void addRole_SendsRoleMessage() throws Exception {
+        lookup.addRole(jim, user);
+        checkRoleMessage(user, ProxyMessage.Type.ADD);
+    }
+
+    @Test
+    public void removeRole_SendsRoleMessage() throws Exception {
+        lookup.addRole(jim, user);
+        checkRoleMessage(user, ProxyMessage.Type.ADD);
+
+        lookup.removeRole(jim, user);
+        checkRoleMessage(user, ProxyMessage.Type.DELETE);
+    }
+
+    @Test
+    public void setPermissions_SendsRoleMessage() throws Exception {
+        lookup.setPermissions(user, Arrays.asList("itemType1:update"));
+        checkRoleMessage(user, ProxyMessage.Type.ADD);
+
+        assertNull(roleMessages.poll(100, MILLISECONDS));
+    }
+}
@@ -108,6 +108,17 @@ public class LookupRoleTest extends LookupTestBase {
         catch (ObjectCannotBeUpdated e) {}
     }
 
+    @Test
+    public void getAgents_ReturnsCopies() throws Exception {
+        lookup.addRole(jim, user);
+
+        AgentPath[] agents = lookup.getAgents(user);
+        assertEquals(1, agents.length);
+        agents[0].setAgentName("Modified");
+
+        assertEquals("Jim", lookup.getAgents(user)[0].getAgentName());
+    }
+
     @Test
     public void removeRole_ObjectCannotBeUpdated() throws Exception {
         RolePath internist = createUserRole("Internist", false);
@@ -20,11 +20,18 @@
  */
 package org.cristalise.storage;
 
+import static org.cristalise.kernel.persistency.ClusterType.PROPERTY;
 import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_autoCommit;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_writeBehind;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.UUID;
 
 import org.cristalise.JooqTestConfigurationBase;
 import org.cristalise.kernel.lifecycle.instance.predefined.server.BulkImport;
@@ -33,6 +40,11 @@ import org.cristalise.kernel.persistency.TransactionKey;
 import org.cristalise.kernel.process.AbstractMain;
 import org.cristalise.kernel.process.Gateway;
 import org.cristalise.kernel.process.StandardServer;
+import org.cristalise.kernel.property.Property;
+import org.cristalise.storage.jooqdb.JooqClusterStorage;
+import org.cristalise.storage.jooqdb.JooqDataSourceHandler;
+import org.cristalise.storage.jooqdb.clusterStore.JooqItemPropertyHandler;
+import org.hamcrest.collection.IsIterableContainingInAnyOrder;
 import org.junit.After;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -41,6 +53,7 @@ public class JooqTransactionTest extends JooqTestConfigurationBase {
 
     TransactionKey transactionKey = new TransactionKey("JooqTransactionTest");
     static ItemPath itemPath;
+    static JooqClusterStorage storage;
 
     @BeforeClass
     public static void beforeClass() throws Exception {
@@ -57,10 +70,15 @@ public class JooqTransactionTest extends JooqTestConfigurationBase {
         props.remove(JOOQ_autoCommit.getSystemPropertyName());
 
         StandardServer.standardInitialisation(props, null);
+
+        storage = new JooqClusterStorage();
+        storage.open();
     }
 
     @After
     public void tearDown() throws Exception {
+        Gateway.getProperties().remove(JOOQ_writeBehind.getSystemPropertyName());
+
         if (itemPath.exists()) {
             TransactionKey transactionKey = new TransactionKey("JooqTransactionTest");
 
@@ -110,4 +128,83 @@ public class JooqTransactionTest extends JooqTestConfigurationBase {
 
         assertFalse(itemPath.exists());
     }
+
+    /**
+     * Reads the Property using the connection of the transaction, bypassing the write buffer of the storage
+     */
+    private Property fetchFromDatabase(ItemPath item, String name, TransactionKey key) throws Exception {
+        return (Property) new JooqItemPropertyHandler().fetch(JooqDataSourceHandler.retrieveContext(key), item.getUUID(), name);
+    }
+
+    @Test
+    public void writeBehind_FlushAtCommit() throws Exception {
+        Gateway.getProperties().put(JOOQ_writeBehind.getSystemPropertyName(), true);
+
+        ItemPath item = new ItemPath(UUID.randomUUID());
+        TransactionKey key = new TransactionKey(item);
+
+        storage.begin(key);
+        storage.put(item, new Property("Name", "first", true), key);
+        storage.put(item, new Property("Type", "writeBehind", false), key);
+        storage.put(item, new Property("Name", "second", true), key);
+
+        // served from the buffer, nothing was sent to the database yet
+        assertEquals("second", ((Property) storage.get(item, PROPERTY + "/Name", key)).getValue());
+        assertNull(fetchFromDatabase(item, "Name", key));
+        assertNull(fetchFromDatabase(item, "Type", key));
+
+        storage.commit(key);
+
+        assertEquals("second",      ((Property) storage.get(item, PROPERTY + "/Name", null)).getValue());
+        assertEquals("writeBehind", ((Property) storage.get(item, PROPERTY + "/Type", null)).getValue());
+
+        storage.begin(key);
+        storage.delete(item, key);
+        storage.commit(key);
+    }
+
+    @Test
+    public void writeBehind_FlushBeforeClusterContents() throws Exception {
+        Gateway.getProperties().put(JOOQ_writeBehind.getSystemPropertyName(), true);
+
+        ItemPath item = new ItemPath(UUID.randomUUID());
+        TransactionKey key = new TransactionKey(item);
+
+        storage.begin(key);
+        storage.put(item, new Property("Name", "name", true), key);
+        storage.put(item, new Property("Type", "type", false), key);
+
+        assertNull(fetchFromDatabase(item, "Name", key));
+
+        // the contents are read from the database, so the buffer is flushed first
+        String[] contents = storage.getClusterContents(item, PROPERTY.getName(), key);
+        assertThat(Arrays.asList(contents), IsIterableContainingInAnyOrder.containsInAnyOrder("Name", "Type"));
+
+        assertEquals("name", fetchFromDatabase(item, "Name", key).getValue());
+
+        storage.abort(key);
+
+        assertNull(storage.get(item, PROPERTY + "/Name", null));
+    }
+
+    @Test
+    public void writeBehind_AbortDiscardsBuffer() throws Exception {
+        Gateway.getProperties().put(JOOQ_writeBehind.getSystemPropertyName(), true);
+
+        ItemPath item = new ItemPath(UUID.randomUUID());
+        TransactionKey key = new TransactionKey(item);
+
+        storage.begin(key);
+        storage.put(item, new Property("Name", "name", true), key);
+        storage.abort(key);
+
+        assertNull(storage.get(item, PROPERTY + "/Name", null));
+
+        // the buffer of the aborted transaction is not flushed by the next transaction using the same key
+        storage.begin(key);
+        assertEquals(0, storage.getClusterContents(item, PROPERTY.getName(), key).length);
+        storage.commit(key);
+
+        assertNull(storage.get(item, PROPERTY + "/Name", null));
+    }
 }
@@ -26,15 +26,22 @@ import static org.cristalise.kernel.persistency.ClusterType.LIFECYCLE;
 import static org.cristalise.kernel.persistency.ClusterType.OUTCOME;
 import static org.cristalise.kernel.persistency.ClusterType.PROPERTY;
 import static org.cristalise.kernel.persistency.ClusterType.VIEWPOINT;
+import static org.cristalise.kernel.SystemProperties.ClusterStorage_Codec_$clusterType;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_Lifecycle_incremental;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Properties;
 import org.cristalise.JooqTestConfigurationBase;
+import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.lifecycle.instance.predefined.server.BulkImport;
 import org.cristalise.kernel.lookup.ItemPath;
 import org.cristalise.kernel.process.Gateway;
@@ -50,6 +57,8 @@ import org.xmlunit.diff.DefaultNodeMatcher;
 import org.xmlunit.diff.Diff;
 import org.xmlunit.diff.Difference;
 import org.xmlunit.diff.ElementSelectors;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -213,6 +222,136 @@ public class JooqClusterStorageTest extends JooqTestConfigurationBase {
         assertTrue(compareXML(expectedResultXml, resultXml));
     }
 
+    @Test
+    public void queryHistoryStreamTest() throws Exception {
+        String queryXml          = new String(Files.readAllBytes(Paths.get("src/test/data/TestQueryHistory.xml")));
+        String expectedResultXml = new String(Files.readAllBytes(Paths.get("src/test/data/TestQueryHistoryResult.xml")));
+
+        Query q = new Query(queryXml);
+        q.setStringParameter("schemaName", "PredefinedStepOutcome");
+        q.setStringParameter("itemUUID", uuid);
+
+        assertTrue(Gateway.getStorage().checkQueryStreamingSupport(q));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Gateway.getStorage().executeQuery(q, out, false, null);
+        assertTrue(compareXML(expectedResultXml, out.toString(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void queryHistoryStreamJsonTest() throws Exception {
+        String queryXml = new String(Files.readAllBytes(Paths.get("src/test/data/TestQueryHistory.xml")));
+
+        Query q = new Query(queryXml);
+        q.setStringParameter("schemaName", "PredefinedStepOutcome");
+        q.setStringParameter("itemUUID", uuid);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Gateway.getStorage().executeQuery(q, out, true, null);
+
+        JsonArray events = new JsonObject(out.toString(StandardCharsets.UTF_8)).getJsonObject("HISTORY").getJsonArray("EVENT");
+
+        assertEquals(10, events.size());
+
+        for (int i = 0; i < events.size(); i++) {
+            JsonObject event = events.getJsonObject(i);
+
+            assertEquals(uuid,                    event.getString("UUID"));
+            assertEquals("PredefinedStepOutcome", event.getString("SCHEMA_NAME"));
+            assertEquals("last",                  event.getString("VIEW_NAME"));
+            assertEquals("",                      event.getString("AGENT_ROLE"));
+            assertNotNull(event.getString("ID"));
+        }
+    }
+
+    @Test
+    public void queryBinaryCluster_ThrowsException() throws Exception {
+        String queryXml = 
+                "<cristalquery name='TestQueryLifecycle' version='0' rootElement='LIFECYCLES' recordElement='LIFECYCLE'>"
+              +   "<parameter name='itemUUID' type='java.lang.String'/>"
+              +   "<query language='sql'><![CDATA[select * from \"LIFECYCLE\" where \"UUID\" = '@{itemUUID}']]></query>"
+              + "</cristalquery>";
+
+        Query q = new Query(queryXml);
+        q.setStringParameter("itemUUID", uuid);
+
+        assertTrue(Gateway.getStorage().executeQuery(q).contains("workflow"));
+
+        Gateway.getProperties().put(ClusterStorage_Codec_$clusterType.getActualName(LIFECYCLE.name()), "binary");
+        try {
+            Gateway.getStorage().executeQuery(q);
+            fail("Query on binary cluster shall fail");
+        }
+        catch (PersistencyException e) {
+            assertTrue(e.getMessage().contains("LIFECYCLE"));
+        }
+        finally {
+            Gateway.getProperties().remove(ClusterStorage_Codec_$clusterType.getActualName(LIFECYCLE.name()));
+        }
+    }
+
+    @Test
+    public void queryIncrementalLifecycle_ThrowsException() throws Exception {
+        String queryXml = 
+                "<cristalquery name='TestQueryLifecycle' version='0' rootElement='LIFECYCLES' recordElement='LIFECYCLE'>"
+              +   "<parameter name='itemUUID' type='java.lang.String'/>"
+              +   "<query language='sql'><![CDATA[select * from \"LIFECYCLE\" where \"UUID\" = '@{itemUUID}']]></query>"
+              + "</cristalquery>";
+
+        Query q = new Query(queryXml);
+        q.setStringParameter("itemUUID", uuid);
+
+        Gateway.getProperties().put(JOOQ_Lifecycle_incremental.getSystemPropertyName(), true);
+        try {
+            // the handlers read the property when they are created
+            JooqClusterStorage storage = new JooqClusterStorage();
+            storage.open();
+
+            storage.executeQuery(q, null);
+            fail("Query on the LIFECYCLE table shall fail when the incremental persistence is enabled");
+        }
+        catch (PersistencyException e) {
+            assertTrue(e.getMessage().contains("LIFECYCLE"));
+        }
+        finally {
+            Gateway.getProperties().remove(JOOQ_Lifecycle_incremental.getSystemPropertyName());
+        }
+    }
+
+    @Test
+    public void queryHistoryBindTest() throws Exception {
+        String queryXml          = new String(Files.readAllBytes(Paths.get("src/test/data/TestQueryHistoryBind.xml")));
+        String expectedResultXml = new String(Files.readAllBytes(Paths.get("src/test/data/TestQueryHistoryResult.xml")));
+
+        Query q = new Query(queryXml);
+        q.setStringParameter("schemaName", "PredefinedStepOutcome");
+        q.setStringParameter("itemUUID", uuid);
+
+        //second execution uses the cached template
+        for (int i = 0; i < 2; i++) {
+            String resultXml = Gateway.getStorage().executeQuery(q);
+            assertTrue(compareXML(expectedResultXml, resultXml));
+        }
+    }
+
+    @Test
+    public void queryReservedBindParameter_ThrowsException() throws Exception {
+        String queryXml = new String(Files.readAllBytes(Paths.get("src/test/data/TestQueryHistoryBind.xml")));
+
+        Query q = new Query(queryXml);
+        q.setStringParameter("schemaName", "PredefinedStepOutcome");
+        q.setStringParameter("itemUUID", uuid);
+        q.setStringParameter("bind", "value");
+
+        try {
+            Gateway.getStorage().executeQuery(q);
+            fail("Parameter 'bind' shall be rejected");
+        }
+        catch (PersistencyException e) {
+            assertTrue(e.getMessage().contains("reserved"));
+        }
+    }
+
     @Test
     public void queryEventTest() throws Exception {
         String queryXml          = new String(Files.readAllBytes(Paths.get("src/test/data/TestQueryEvent.xml")));
@@ -22,14 +22,25 @@ package org.cristalise.storage.jooqdb;
 
 import static org.cristalise.JooqTestConfigurationBase.DBModes.MYSQL;
 import static org.cristalise.JooqTestConfigurationBase.DBModes.PostgreSQL;
+import static org.cristalise.kernel.SystemProperties.ClusterStorage_Codec_$clusterType;
+import static org.cristalise.kernel.persistency.ClusterType.COLLECTION;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_upsert;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.table;
 
 import java.util.Arrays;
+import java.util.UUID;
 
 import org.cristalise.kernel.collection.Collection;
 import org.cristalise.kernel.collection.Dependency;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.utils.CastorHashMap;
 import org.cristalise.storage.jooqdb.clusterStore.JooqCollectionHadler;
 import org.hamcrest.collection.IsIterableContainingInAnyOrder;
+import org.jooq.Record;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -49,6 +60,9 @@ public class JooqCollectionTest extends StorageTestBase {
 
     @After
     public void after() throws Exception {
+        Gateway.getProperties().remove(ClusterStorage_Codec_$clusterType.getActualName(COLLECTION.name()));
+        Gateway.getProperties().remove(JOOQ_upsert.getSystemPropertyName());
+
         if (dbType == MYSQL || dbType == PostgreSQL) jooq.dropTables(context);
     }
 
@@ -82,6 +96,27 @@ public class JooqCollectionTest extends StorageTestBase {
         compareCollections(d, d1);
     }
 
+    @Test
+    public void putTwice_UpdatesSingleRow() throws Exception {
+        Dependency d = putDependency("TestDependency", null);
+
+        for (boolean upsert : new boolean[] {true, false}) {
+            Gateway.getProperties().put(JOOQ_upsert.getSystemPropertyName(), upsert);
+
+            CastorHashMap memberProps = new CastorHashMap();
+            memberProps.put("Name", "member-" + upsert);
+            d.addMember(new ItemPath(), memberProps, "", null);
+
+            assert jooq.put(context, uuid, d) == 1;
+
+            Assert.assertEquals(1, context.fetchCount(table(name("COLLECTION")), field(name("UUID"), UUID.class).equal(uuid)));
+
+            Dependency d1 = (Dependency) jooq.fetch(context, uuid, "TestDependency", "last");
+            compareCollections(d, d1);
+            Assert.assertEquals(d.getMembers().list.size(), d1.getMembers().list.size());
+        }
+    }
+
     @Test
     public void delete() throws Exception {
         putDependency("Test1", 1);
@@ -118,4 +153,48 @@ public class JooqCollectionTest extends StorageTestBase {
 
         Assert.assertEquals(0, keys.length);
     }
+
+    private Record fetchRow(String name) {
+        return context.select(field(name("XML")), field(name("DATA")))
+                .from(table(name("COLLECTION")))
+                .where(field(name("UUID"), UUID.class).equal(uuid))
+                .and(field(name("NAME"), String.class).equal(name))
+                .fetchOne();
+    }
+
+    @Test
+    public void binaryCodec() throws Exception {
+        Gateway.getProperties().put(ClusterStorage_Codec_$clusterType.getActualName(COLLECTION.name()), "binary");
+
+        Dependency d = new Dependency("TestBinary");
+        CastorHashMap memberProps = new CastorHashMap();
+        memberProps.put("Name", "myName");
+        d.addMember(new ItemPath(), memberProps, "", null);
+
+        assert jooq.put(context, uuid, d) == 1;
+
+        Record row = fetchRow("TestBinary");
+        Assert.assertEquals(JooqHandler.NULL_XML, row.get(0));
+        Assert.assertNotNull(row.get(1));
+
+        Dependency d1 = (Dependency) jooq.fetch(context, uuid, "TestBinary", "last");
+        compareCollections(d, d1);
+        Assert.assertEquals(1, d1.getMembers().list.size());
+        Assert.assertEquals("myName", d1.getMembers().list.get(0).getProperties().get("Name"));
+
+        //data written by the binary codec is still decoded after switching back to xml
+        Gateway.getProperties().put(ClusterStorage_Codec_$clusterType.getActualName(COLLECTION.name()), "xml");
+
+        d1 = (Dependency) jooq.fetch(context, uuid, "TestBinary", "last");
+        compareCollections(d, d1);
+        Assert.assertEquals("myName", d1.getMembers().list.get(0).getProperties().get("Name"));
+
+        jooq.put(context, uuid, d1);
+
+        row = fetchRow("TestBinary");
+        Assert.assertNotEquals(JooqHandler.NULL_XML, row.get(0));
+        Assert.assertNull(row.get(1));
+
+        compareCollections(d, (Dependency) jooq.fetch(context, uuid, "TestBinary", "last"));
+    }
 }
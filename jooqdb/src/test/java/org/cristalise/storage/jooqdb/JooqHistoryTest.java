@@ -26,9 +26,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import org.cristalise.kernel.common.PersistencyException;
+import org.cristalise.kernel.entity.C2KLocalObject;
 import org.cristalise.kernel.events.Event;
 import org.cristalise.kernel.lookup.AgentPath;
 import org.cristalise.kernel.lookup.InvalidItemPathException;
@@ -184,4 +186,32 @@ public class JooqHistoryTest extends StorageTestBase {
         assert jooq.put(context, uuid2, createEvent(uuid2, 2)) == 1;
         assertEquals(2, jooq.getLastEventId(context, uuid2));
     }
+
+    @Test
+    public void fetchRange() throws Exception {
+        Event[] events = new Event[6];
+        events[0] = event;
+        for (int i = 1; i < events.length; i++) {
+            events[i] = createEvent(uuid, i);
+            assert jooq.put(context, uuid, events[i]) == 1;
+        }
+
+        UUID uuid2 = UUID.randomUUID();
+        assert jooq.put(context, uuid2, createEvent(uuid2, 0)) == 1;
+        assert jooq.put(context, uuid2, createEvent(uuid2, 1)) == 1;
+        assert jooq.put(context, uuid2, createEvent(uuid2, 2)) == 1;
+
+        List<C2KLocalObject> range = jooq.fetchRange(context, uuid, 1, 4);
+
+        assertEquals(3, range.size());
+        for (int i = 0; i < range.size(); i++) compareEvents((Event)range.get(i), events[1 + i]);
+
+        range = jooq.fetchRange(context, uuid, 0, 100);
+        assertEquals(6, range.size());
+        for (int i = 0; i < range.size(); i++) compareEvents((Event)range.get(i), events[i]);
+
+        assertEquals(0, jooq.fetchRange(context, uuid, 3, 3).size());
+        assertEquals(0, jooq.fetchRange(context, uuid, 6, 10).size());
+        assertEquals(0, jooq.fetchRange(context, UUID.randomUUID(), 0, 10).size());
+    }
 }
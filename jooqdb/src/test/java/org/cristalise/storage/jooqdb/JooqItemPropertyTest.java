@@ -22,10 +22,16 @@ package org.cristalise.storage.jooqdb;
 
 import static org.cristalise.JooqTestConfigurationBase.DBModes.MYSQL;
 import static org.cristalise.JooqTestConfigurationBase.DBModes.PostgreSQL;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_upsert;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.table;
 
 import java.util.List;
 import java.util.UUID;
 
+import org.cristalise.kernel.entity.C2KLocalObject;
+import org.cristalise.kernel.process.Gateway;
 import org.cristalise.kernel.property.Property;
 import org.cristalise.storage.jooqdb.clusterStore.JooqItemPropertyHandler;
 import org.junit.After;
@@ -84,6 +90,24 @@ public class JooqItemPropertyTest extends StorageTestBase {
         compareProperties((Property)jooq.fetch(context, uuid, "toto"), propertyPrime);
     }
 
+    @Test
+    public void putTwice_UpdatesSingleRow() throws Exception {
+        try {
+            for (boolean upsert : new boolean[] {true, false}) {
+                Gateway.getProperties().put(JOOQ_upsert.getSystemPropertyName(), upsert);
+
+                Property propertyPrime = new Property("toto", "value-" + upsert, true);
+                assert jooq.put(context, uuid, propertyPrime) == 1;
+
+                Assert.assertEquals(1, context.fetchCount(table(name("ITEM_PROPERTY")), field(name("UUID"), UUID.class).equal(uuid)));
+                compareProperties((Property)jooq.fetch(context, uuid, "toto"), propertyPrime);
+            }
+        }
+        finally {
+            Gateway.getProperties().remove(JOOQ_upsert.getSystemPropertyName());
+        }
+    }
+
     @Test
     public void twoProperties() throws Exception {
         Property property2 = new Property("zaza", "value", false);
@@ -93,6 +117,22 @@ public class JooqItemPropertyTest extends StorageTestBase {
         compareProperties((Property)jooq.fetch(context, uuid, "zaza"), property2);
     }
 
+    @Test
+    public void fetchAllProperties() throws Exception {
+        Property property2 = new Property("zaza", "value", false);
+        assert jooq.put(context, uuid,              property2) == 1;
+        assert jooq.put(context, UUID.randomUUID(), new Property("mimi", "value", false)) == 1;
+
+        List<C2KLocalObject> properties = jooq.fetchAll(context, uuid);
+
+        Assert.assertEquals(2, properties.size());
+
+        for (C2KLocalObject p : properties) {
+            if (p.getName().equals("toto")) compareProperties((Property)p, property);
+            else                            compareProperties((Property)p, property2);
+        }
+    }
+
     @Test
     public void getPropertyNames() throws Exception {
         assert jooq.put(context, uuid,              new Property("zaza", "value", false)) == 1;
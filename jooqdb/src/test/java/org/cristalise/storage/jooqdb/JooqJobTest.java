@@ -22,7 +22,12 @@ package org.cristalise.storage.jooqdb;
 
 import static org.cristalise.JooqTestConfigurationBase.DBModes.MYSQL;
 import static org.cristalise.JooqTestConfigurationBase.DBModes.PostgreSQL;
+import static org.cristalise.kernel.SystemProperties.ClusterStorage_Codec_$clusterType;
+import static org.cristalise.kernel.persistency.ClusterType.JOB;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.table;
 import java.util.Arrays;
 import java.util.UUID;
 import org.cristalise.kernel.common.PersistencyException;
@@ -30,9 +35,11 @@ import org.cristalise.kernel.entity.Job;
 import org.cristalise.kernel.graph.model.BuiltInVertexProperties;
 import org.cristalise.kernel.lookup.InvalidItemPathException;
 import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.process.Gateway;
 import org.cristalise.kernel.utils.CastorHashMap;
 import org.cristalise.storage.jooqdb.clusterStore.JooqJobHandler;
 import org.hamcrest.collection.IsIterableContainingInAnyOrder;
+import org.jooq.Record;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -60,6 +67,8 @@ public class JooqJobTest extends StorageTestBase {
 
     @After
     public void after() throws Exception {
+        Gateway.getProperties().remove(ClusterStorage_Codec_$clusterType.getActualName(JOB.name()));
+
         jooq.delete(context, uuid);
 
         if (dbType == MYSQL || dbType == PostgreSQL) jooq.dropTables(context);
@@ -145,4 +154,41 @@ public class JooqJobTest extends StorageTestBase {
         keys = jooq.getNextPrimaryKeys(context, uuid, "stepName1");
         assertThat(Arrays.asList(keys), IsIterableContainingInAnyOrder.containsInAnyOrder("Done", "Start"));
     }
+
+    private Record fetchActProps(String stepName) {
+        return context.select(field(name("ACT_PROPERTIES")), field(name("ACT_PROPERTIES_DATA")))
+                .from(table(name("JOB")))
+                .where(field(name("UUID"), UUID.class).equal(uuid))
+                .and(field(name("STEP_NAME"), String.class).equal(stepName))
+                .fetchOne();
+    }
+
+    @Test
+    public void binaryCodec() throws Exception {
+        Gateway.getProperties().put(ClusterStorage_Codec_$clusterType.getActualName(JOB.name()), "binary");
+
+        actProps.put("Description", "binary & <escaped>", true);
+        Job binaryJob = createJob(uuid, 1);
+        assert jooq.put(context, uuid, binaryJob) == 1;
+
+        Record row = fetchActProps("stepName1");
+        Assert.assertEquals(JooqHandler.NULL_XML, row.get(0));
+        Assert.assertNotNull(row.get(1));
+
+        Job fetched = (Job)jooq.fetch(context, uuid, "stepName1", "Done");
+        compareJobs(fetched, binaryJob);
+        Assert.assertEquals(binaryJob.getActProps(), fetched.getActProps());
+        Assert.assertEquals(binaryJob.getActProps().getAbstract(), fetched.getActProps().getAbstract());
+
+        //data written by the binary codec is still decoded after switching back to xml
+        Gateway.getProperties().put(ClusterStorage_Codec_$clusterType.getActualName(JOB.name()), "xml");
+
+        fetched = (Job)jooq.fetch(context, uuid, "stepName1", "Done");
+        compareJobs(fetched, binaryJob);
+        Assert.assertEquals(binaryJob.getActProps(), fetched.getActProps());
+
+        //Job written earlier with the xml codec is still readable
+        compareJobs((Job)jooq.fetch(context, uuid, "stepName0", "Done"), job);
+        Assert.assertNull(fetchActProps("stepName0").get(1));
+    }
 }
@@ -22,15 +22,34 @@ package org.cristalise.storage.jooqdb;
 
 import static org.cristalise.JooqTestConfigurationBase.DBModes.MYSQL;
 import static org.cristalise.JooqTestConfigurationBase.DBModes.PostgreSQL;
+import static org.cristalise.kernel.SystemProperties.ClusterStorage_Codec_$clusterType;
+import static org.cristalise.kernel.persistency.ClusterType.LIFECYCLE;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_Lifecycle_compactionThreshold;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_Lifecycle_incremental;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_upsert;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.table;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.UUID;
 
+import org.cristalise.kernel.graph.model.DirectedEdge;
+import org.cristalise.kernel.lifecycle.instance.Activity;
 import org.cristalise.kernel.lifecycle.instance.CompositeActivity;
 import org.cristalise.kernel.lifecycle.instance.Workflow;
 import org.cristalise.kernel.lifecycle.instance.predefined.server.ServerPredefinedStepContainer;
 import org.cristalise.kernel.lookup.AgentPath;
 import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.process.Gateway;
 import org.cristalise.storage.jooqdb.clusterStore.JooqLifecycleHandler;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -38,9 +57,15 @@ import org.junit.Test;
 
 public class JooqLifecycleTest extends StorageTestBase {
 
+    static final String WORKFLOW_FILE = "src/test/data/fcecd4ad-40eb-421c-a648-edc1d74f339b/LifeCycle.workflow";
+    static final String DISPENSING    = "workflow/domain/Dispensing";
+    static final String IRRADIATION   = "workflow/domain/Irradiation";
+
     Workflow wf;
     JooqLifecycleHandler jooq;
 
+    UUID incUuid = UUID.randomUUID();
+
     @Before
     public void before() throws Exception {
         context = initJooqContext();
@@ -55,6 +80,13 @@ public class JooqLifecycleTest extends StorageTestBase {
 
     @After
     public void after() throws Exception {
+        Gateway.getProperties().remove(JOOQ_Lifecycle_incremental.getSystemPropertyName());
+        Gateway.getProperties().remove(JOOQ_Lifecycle_compactionThreshold.getSystemPropertyName());
+        Gateway.getProperties().remove(ClusterStorage_Codec_$clusterType.getActualName(LIFECYCLE.name()));
+        Gateway.getProperties().remove(JOOQ_upsert.getSystemPropertyName());
+
+        context.delete(table(name("LIFECYCLE_DELTA"))).where(field(name("UUID"), UUID.class).equal(incUuid)).execute();
+        jooq.delete(context, incUuid);
         jooq.delete(context, uuid);
 
         if (dbType == MYSQL || dbType == PostgreSQL) jooq.dropTables(context);
@@ -66,4 +98,283 @@ public class JooqLifecycleTest extends StorageTestBase {
         assert wfPrime != null;
         //assert "<xml/>".equals(outcomePrime.getData());
     }
+
+    @Test
+    public void putTwice_UpdatesSingleRow() throws Exception {
+        for (boolean upsert : new boolean[] {true, false}) {
+            Gateway.getProperties().put(JOOQ_upsert.getSystemPropertyName(), upsert);
+
+            // replace the empty Workflow with the loaded one, then put the empty one back
+            assertEquals(1, jooq.put(context, uuid, loadWorkflow()));
+            assertEquals(1, context.fetchCount(table(name("LIFECYCLE")), field(name("UUID"), UUID.class).equal(uuid)));
+            assertNotNull(activity((Workflow)jooq.fetch(context, uuid), DISPENSING));
+
+            assertEquals(1, jooq.put(context, uuid, wf));
+            assertEquals(1, context.fetchCount(table(name("LIFECYCLE")), field(name("UUID"), UUID.class).equal(uuid)));
+            assertNull(((Workflow)jooq.fetch(context, uuid)).search(DISPENSING));
+        }
+    }
+
+    private JooqLifecycleHandler incrementalHandler(int compactionThreshold) {
+        Gateway.getProperties().put(JOOQ_Lifecycle_incremental.getSystemPropertyName(), true);
+        Gateway.getProperties().put(JOOQ_Lifecycle_compactionThreshold.getSystemPropertyName(), compactionThreshold);
+
+        return new JooqLifecycleHandler();
+    }
+
+    private Workflow loadWorkflow() throws Exception {
+        return (Workflow)Gateway.getMarshaller().unmarshall(new String(Files.readAllBytes(Paths.get(WORKFLOW_FILE))));
+    }
+
+    private int countDeltas() {
+        return context.fetchCount(table(name("LIFECYCLE_DELTA")), field(name("UUID"), UUID.class).equal(incUuid));
+    }
+
+    private static Activity activity(Workflow workflow, String path) {
+        return (Activity)workflow.search(path);
+    }
+
+    private Record fetchSnapshot() {
+        return context.select(field(name("XML")), field(name("DATA")))
+                .from(table(name("LIFECYCLE")))
+                .where(field(name("UUID"), UUID.class).equal(incUuid))
+                .fetchOne();
+    }
+
+    @Test
+    public void binaryCodec() throws Exception {
+        Gateway.getProperties().put(ClusterStorage_Codec_$clusterType.getActualName(LIFECYCLE.name()), "binary");
+
+        Workflow workflow = loadWorkflow();
+        activity(workflow, DISPENSING).setState(3);
+
+        assertEquals(1, jooq.put(context, incUuid, workflow));
+
+        Record row = fetchSnapshot();
+        assertEquals(JooqHandler.NULL_XML, row.get(0));
+        assertNotNull(row.get(1));
+
+        Workflow fetched = (Workflow)jooq.fetch(context, incUuid, "workflow");
+        assertEquals(3, activity(fetched, DISPENSING).getState());
+
+        //data written by the binary codec is still decoded after switching back to xml
+        Gateway.getProperties().put(ClusterStorage_Codec_$clusterType.getActualName(LIFECYCLE.name()), "xml");
+
+        fetched = (Workflow)jooq.fetch(context, incUuid, "workflow");
+        assertEquals(3, activity(fetched, DISPENSING).getState());
+
+        jooq.put(context, incUuid, fetched);
+
+        row = fetchSnapshot();
+        assertNull(row.get(1));
+        assertEquals(3, activity((Workflow)jooq.fetch(context, incUuid, "workflow"), DISPENSING).getState());
+    }
+
+    @Test
+    public void incremental_WritesDeltasAndReplaysThemOnFetch() throws Exception {
+        JooqLifecycleHandler handler = incrementalHandler(50);
+        Workflow workflow = loadWorkflow();
+
+        assertEquals(1, handler.put(context, incUuid, workflow));
+        assertEquals(0, countDeltas());
+
+        activity(workflow, DISPENSING).setState(3);
+        assertEquals(1, handler.put(context, incUuid, workflow));
+        assertEquals(1, countDeltas());
+
+        activity(workflow, IRRADIATION).setState(4);
+        activity(workflow, DISPENSING).setState(1);
+        assertEquals(2, handler.put(context, incUuid, workflow));
+        assertEquals(3, countDeltas());
+
+        //nothing was changed, no delta is written
+        assertEquals(0, handler.put(context, incUuid, workflow));
+        assertEquals(3, countDeltas());
+
+        //a new handler has empty cache, so the snapshot is read and the deltas are replayed
+        Workflow fetched = (Workflow)incrementalHandler(50).fetch(context, incUuid, "workflow");
+
+        assertNotNull(fetched);
+        assertEquals(1, activity(fetched, DISPENSING).getState());
+        assertEquals(4, activity(fetched, IRRADIATION).getState());
+    }
+
+    @Test
+    public void incremental_CompactionWritesSnapshot() throws Exception {
+        JooqLifecycleHandler handler = incrementalHandler(2);
+        Workflow workflow = loadWorkflow();
+
+        handler.put(context, incUuid, workflow);
+
+        activity(workflow, DISPENSING).setState(3);
+        handler.put(context, incUuid, workflow);
+        activity(workflow, IRRADIATION).setState(4);
+        handler.put(context, incUuid, workflow);
+        assertEquals(2, countDeltas());
+
+        //the compaction threshold is reached, the snapshot is rewritten and the deltas are deleted
+        activity(workflow, DISPENSING).setState(1);
+        handler.put(context, incUuid, workflow);
+        assertEquals(0, countDeltas());
+
+        Workflow fetched = (Workflow)incrementalHandler(2).fetch(context, incUuid, "workflow");
+
+        assertEquals(1, activity(fetched, DISPENSING).getState());
+        assertEquals(4, activity(fetched, IRRADIATION).getState());
+    }
+
+    @Test
+    public void incremental_EdgeChangeWritesSnapshot() throws Exception {
+        JooqLifecycleHandler handler = incrementalHandler(50);
+        Workflow workflow = loadWorkflow();
+
+        handler.put(context, incUuid, workflow);
+
+        activity(workflow, DISPENSING).setState(3);
+        handler.put(context, incUuid, workflow);
+        assertEquals(1, countDeltas());
+
+        CompositeActivity domain = (CompositeActivity)workflow.search("workflow/domain");
+        int edgeCount = domain.getChildrenGraphModel().getEdges().length;
+        DirectedEdge edge = domain.getChildrenGraphModel().getEdges()[0];
+        domain.getChildrenGraphModel().removeEdge(edge);
+
+        //only the edges were changed, which is not stored in deltas
+        handler.put(context, incUuid, workflow);
+        assertEquals(0, countDeltas());
+
+        Workflow fetched = (Workflow)incrementalHandler(50).fetch(context, incUuid, "workflow");
+        CompositeActivity fetchedDomain = (CompositeActivity)fetched.search("workflow/domain");
+
+        assertEquals(edgeCount - 1, fetchedDomain.getChildrenGraphModel().getEdges().length);
+        assertEquals(3, activity(fetched, DISPENSING).getState());
+    }
+
+    private Integer fetchLastSeq() {
+        return context.select(field(name("LAST_SEQ"), Integer.class))
+                .from(table(name("LIFECYCLE")))
+                .where(field(name("UUID"), UUID.class).equal(incUuid))
+                .fetchOne(0, Integer.class);
+    }
+
+    @Test
+    public void incremental_LastSeqGrowsWithEveryWrite() throws Exception {
+        JooqLifecycleHandler handler = incrementalHandler(2);
+        Workflow workflow = loadWorkflow();
+
+        handler.put(context, incUuid, workflow);
+        assertEquals(Integer.valueOf(1), fetchLastSeq());
+
+        activity(workflow, DISPENSING).setState(3);
+        activity(workflow, IRRADIATION).setState(4);
+        handler.put(context, incUuid, workflow);
+        assertEquals(2, countDeltas());
+        assertEquals(Integer.valueOf(3), fetchLastSeq());
+
+        //compaction continues the sequence, so no cached state of the previous snapshot can match it
+        activity(workflow, DISPENSING).setState(1);
+        handler.put(context, incUuid, workflow);
+        assertEquals(0, countDeltas());
+        assertEquals(Integer.valueOf(4), fetchLastSeq());
+    }
+
+    @Test
+    public void incrementalDisabled_AppliesAndDeletesExistingDeltas() throws Exception {
+        JooqLifecycleHandler handler = incrementalHandler(50);
+        Workflow workflow = loadWorkflow();
+
+        handler.put(context, incUuid, workflow);
+        activity(workflow, DISPENSING).setState(3);
+        handler.put(context, incUuid, workflow);
+        assertEquals(1, countDeltas());
+
+        //jooq was created before the incremental persistence was enabled
+        Workflow fetched = (Workflow)jooq.fetch(context, incUuid, "workflow");
+        assertEquals(3, activity(fetched, DISPENSING).getState());
+
+        activity(fetched, IRRADIATION).setState(4);
+        jooq.put(context, incUuid, fetched);
+        assertEquals(0, countDeltas());
+
+        fetched = (Workflow)jooq.fetch(context, incUuid, "workflow");
+        assertEquals(3, activity(fetched, DISPENSING).getState());
+        assertEquals(4, activity(fetched, IRRADIATION).getState());
+
+        activity(workflow, IRRADIATION).setState(1);
+        handler.put(context, incUuid, workflow);
+        handler.put(context, incUuid, workflow);
+        assertEquals(0, countDeltas());
+
+        activity(workflow, DISPENSING).setState(1);
+        handler.put(context, incUuid, workflow);
+        assertEquals(1, countDeltas());
+
+        jooq.delete(context, incUuid);
+        assertEquals(0, countDeltas());
+    }
+
+    @Test
+    public void incremental_StaleStateOfOtherNodeWritesSnapshot() throws Exception {
+        JooqLifecycleHandler node1 = incrementalHandler(50);
+        JooqLifecycleHandler node2 = incrementalHandler(50);
+
+        node1.put(context, incUuid, loadWorkflow());
+
+        Workflow wf1 = (Workflow)node1.fetch(context, incUuid, "workflow");
+        Workflow wf2 = (Workflow)node2.fetch(context, incUuid, "workflow");
+
+        activity(wf1, DISPENSING).setState(3);
+        node1.put(context, incUuid, wf1);
+        assertEquals(1, countDeltas());
+
+        //the cached state of node2 is behind, reusing its SEQ would fail or apply the delta on the wrong base
+        activity(wf2, IRRADIATION).setState(4);
+        node2.put(context, incUuid, wf2);
+        assertEquals(0, countDeltas());
+
+        Workflow fetched = (Workflow)incrementalHandler(50).fetch(context, incUuid, "workflow");
+        assertEquals(4, activity(fetched, IRRADIATION).getState());
+
+        //the snapshot written by node2 makes the cached state of node1 stale as well
+        activity(wf1, IRRADIATION).setState(1);
+        node1.put(context, incUuid, wf1);
+        assertEquals(0, countDeltas());
+
+        fetched = (Workflow)incrementalHandler(50).fetch(context, incUuid, "workflow");
+        assertEquals(3, activity(fetched, DISPENSING).getState());
+        assertEquals(1, activity(fetched, IRRADIATION).getState());
+    }
+
+    @Test
+    public void incremental_AbortInvalidatesPersistedState() throws Exception {
+        JooqLifecycleHandler handler = incrementalHandler(50);
+        Workflow workflow = loadWorkflow();
+
+        handler.put(context, incUuid, workflow);
+
+        try {
+            context.transaction(config -> {
+                activity(workflow, DISPENSING).setState(3);
+                handler.put(DSL.using(config), incUuid, workflow);
+                throw new IllegalStateException("rollback");
+            });
+            fail("transaction shall be rolled back");
+        }
+        catch (IllegalStateException e) {
+            handler.clearPersistedStates();
+        }
+
+        assertEquals(0, countDeltas());
+
+        activity(workflow, IRRADIATION).setState(4);
+        handler.put(context, incUuid, workflow);
+
+        //persisted state was cleared, so the rolled back change is stored in the snapshot
+        assertEquals(0, countDeltas());
+
+        Workflow fetched = (Workflow)incrementalHandler(50).fetch(context, incUuid, "workflow");
+
+        assertEquals(3, activity(fetched, DISPENSING).getState());
+        assertEquals(4, activity(fetched, IRRADIATION).getState());
+    }
 }
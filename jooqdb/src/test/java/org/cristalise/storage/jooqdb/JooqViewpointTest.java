@@ -22,11 +22,16 @@ package org.cristalise.storage.jooqdb;
 
 import static org.cristalise.JooqTestConfigurationBase.DBModes.MYSQL;
 import static org.cristalise.JooqTestConfigurationBase.DBModes.PostgreSQL;
+import static org.cristalise.storage.jooqdb.SystemProperties.JOOQ_upsert;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.table;
 
 import java.util.UUID;
 
 import org.cristalise.kernel.lookup.ItemPath;
 import org.cristalise.kernel.persistency.outcome.Viewpoint;
+import org.cristalise.kernel.process.Gateway;
 import org.cristalise.storage.jooqdb.clusterStore.JooqViewpointHandler;
 import org.junit.After;
 import org.junit.Assert;
@@ -76,6 +81,26 @@ public class JooqViewpointTest extends StorageTestBase {
         compareViewpoints((Viewpoint)jooq.fetch(context, uuid, "SchemaName", "Name"), updatedViewpoint);
     }
 
+    @Test
+    public void putTwice_UpdatesSingleRow() throws Exception {
+        try {
+            int eventId = 10;
+
+            for (boolean upsert : new boolean[] {true, false}) {
+                Gateway.getProperties().put(JOOQ_upsert.getSystemPropertyName(), upsert);
+
+                Viewpoint updatedViewpoint = new Viewpoint(new ItemPath(uuid), "SchemaName", "Name", 0, eventId++);
+                assert jooq.put(context, uuid, updatedViewpoint) == 1;
+
+                Assert.assertEquals(1, context.fetchCount(table(name("VIEWPOINT")), field(name("UUID"), UUID.class).equal(uuid)));
+                compareViewpoints((Viewpoint)jooq.fetch(context, uuid, "SchemaName", "Name"), updatedViewpoint);
+            }
+        }
+        finally {
+            Gateway.getProperties().remove(JOOQ_upsert.getSystemPropertyName());
+        }
+    }
+
     @Test
     public void getNextSchemaNames() throws Exception {
         assert jooq.put(context, uuid, new Viewpoint(new ItemPath(uuid), "SchemaName",  "Name2", 0, 1)) == 1;
@@ -0,0 +1,74 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.storage.jooqdb;
+
+import static org.cristalise.kernel.persistency.ClusterType.PROPERTY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.cristalise.kernel.property.Property;
+import org.junit.Test;
+
+public class JooqWriteBufferTest {
+
+    UUID uuid = UUID.randomUUID();
+
+    @Test
+    public void coalesceRepeatedPuts() {
+        JooqWriteBuffer buffer = new JooqWriteBuffer();
+
+        Property p1 = new Property("Name", "first", true);
+        Property p2 = new Property("Name", "second", true);
+
+        buffer.put(uuid, p1);
+        buffer.put(uuid, new Property("Type", "type", false));
+        buffer.put(uuid, p2);
+
+        assertEquals(2, buffer.size());
+        assertSame(p2, buffer.getWrites().get(0).getObject());
+        assertSame(p2, buffer.get(uuid, PROPERTY + "/Name"));
+    }
+
+    @Test
+    public void readDeletedPath() {
+        JooqWriteBuffer buffer = new JooqWriteBuffer();
+
+        buffer.put(uuid, new Property("Name", "name", true));
+        buffer.delete(uuid, PROPERTY, PROPERTY.getName(), new String[0]);
+
+        assertNull(buffer.get(uuid, PROPERTY + "/Name"));
+        assertTrue(buffer.isDeleted(uuid, PROPERTY + "/Name"));
+        assertTrue(buffer.isDeleted(uuid, PROPERTY + "/Type"));
+
+        Property p = new Property("Name", "new", true);
+        buffer.put(uuid, p);
+
+        assertFalse(buffer.isDeleted(uuid, PROPERTY + "/Name"));
+        assertSame(p, buffer.get(uuid, PROPERTY + "/Name"));
+        // the put after the delete must not be coalesced with the put before it
+        assertEquals(3, buffer.size());
+    }
+}
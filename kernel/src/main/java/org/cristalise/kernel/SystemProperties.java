@@ -57,6 +57,8 @@ import lombok.Getter;
  * @see #BulkImport_useDirectories
  * @see #ClusterStorage
  * @see #ClusterStorage_cacheSpec
+ * @see #ClusterStorage_Codec_$clusterType
+ * @see #ClusterStorage_lockTimeout
  * @see #CreateItemFromDescription_Cache_enable
  * @see #DataHelper_$name
  * @see #Dependency_addStateMachineURN
@@ -72,6 +74,8 @@ import lombok.Getter;
  * @see #ItemVerticle_includeDebugInfo
  * @see #ItemVerticle_instances
  * @see #ItemVerticle_requestTimeoutSeconds
+ * @see #ItemVerticle_shardClaimPeriodSeconds
+ * @see #ItemVerticle_shards
  * @see #Lifecycle_Sign_agentNameField
  * @see #Lifecycle_Sign_passwordField
  * @see #Lifecycle_Sign_signedFlagField
@@ -82,7 +86,9 @@ import lombok.Getter;
  * @see #Module_reset
  * @see #Module_$Namespace_reset
  * @see #Module_Versioning_strict
+ * @see #Outcome_parserPoolSize
  * @see #Outcome_Validation_useDOM
+ * @see #Outcome_xpathCacheSize
  * @see #OutcomeInit_$name
  * @see #OutcomeInit_jobUseViewpoint
  * @see #Resource_moduleUseFileNameWithVersion
@@ -90,6 +96,7 @@ import lombok.Getter;
  * @see #ResourceImportHandler_$typeCode
  * @see #RoutingScript_enforceStringReturnValue
  * @see #Script_EngineOverride_$lang
+ * @see #SecurityManager_permissionCacheSpec
  * @see #Shiro_iniFile
  * @see #StateMachine_Composite_default
  * @see #StateMachine_Elementary_default
@@ -109,6 +116,7 @@ import lombok.Getter;
  * @see #$UserCodeRole_StateMachine_name
  * @see #$UserCodeRole_StateMachine_namespace
  * @see #$UserCodeRole_StateMachine_version
+ * @see #Workflow_calculateJobs_useActiveIndex
  * @see #XMLStorage_root
  */
 public enum SystemProperties implements SystemPropertyOperations {
@@ -153,6 +161,24 @@ public enum SystemProperties implements SystemPropertyOperations {
      * Default is value is 'expireAfterAccess = 600s, recordStats'
      */
     ClusterStorage_cacheSpec("ClusterStorage.cacheSpec", "expireAfterAccess = 600s, recordStats"),
+    /**
+     * Selects the {@link org.cristalise.kernel.persistency.codec.ClusterCodec} used by the ClusterStorages supporting 
+     * binary data to store the objects of the given ClusterType, e.g. 'ClusterStorage.Codec.LIFECYCLE = binary'. 
+     * The value is 'xml', 'binary' or the class name of a ClusterCodec implementation. Default value is 'xml'.
+     * <p>
+     * When a binary codec is used the XML column of the object contains the '&lt;NULL/&gt;' placeholder, i.e. the same
+     * string used for the null object, therefore SQL Queries and xpath expressions cannot read these objects. 
+     * JooqClusterStorage rejects the Queries reading the tables of such clusters.
+     * 
+     * @apiNote $clusterType means that it will be replaced with the name of the ClusterType enum when 
+     * {@link #getString(Object...)} is used.
+     */
+    ClusterStorage_Codec_$clusterType("ClusterStorage.Codec.%s"),
+    /**
+     * Maximum time in milliseconds a transaction waits for the write lock of an Item held by another transaction
+     * in ClusterStorageManager. 0 means the transaction fails immediately. Default value is 0.
+     */
+    ClusterStorage_lockTimeout("ClusterStorage.lockTimeout", 0),
     /**
      * Enable the experimental cache in CreateItemFromDescription predefined step to speed up item creation.
      * Default is false.
@@ -222,6 +248,18 @@ public enum SystemProperties implements SystemPropertyOperations {
      * The number of seconds before a request to an Item times out. Default value is 10
      */
     ItemVerticle_requestTimeoutSeconds("ItemVerticle.requestTimeoutSeconds", 10),
+    /**
+     * The number of seconds between two attempts of the server to claim the unowned shards of Items. 
+     * Default value is 5
+     */
+    ItemVerticle_shardClaimPeriodSeconds("ItemVerticle.shardClaimPeriodSeconds", 5),
+    /**
+     * The number of shards the Items are distributed to by their UUID. Each shard is owned by one server
+     * of the cluster, which executes the requests of its Items. 0 disables the sharding and every request
+     * is serialized using a cluster-wide lock of the Item. The value must be the same for all servers of the
+     * cluster. Default value is 0
+     */
+    ItemVerticle_shards("ItemVerticle.shards", 0),
     /**
      * Defines the name of the field in the Outcome containing the name of the Agent. It is used in
      * the Sign predefined step. Default is 'AgentName'
@@ -274,12 +312,22 @@ public enum SystemProperties implements SystemPropertyOperations {
      * version 0. Default value is false.
      */
     Module_Versioning_strict("Module.Versioning.strict", false),
+    /**
+     * The maximum number of XML parsers used concurrently by {@link Outcome#parse(String)}. Threads wait
+     * for a free parser when all of them are in use. Default value is 16.
+     */
+    Outcome_parserPoolSize("Outcome.parserPoolSize", 16),
     /**
      * Enable to use DOM instead of string during {@link Outcome#validate()}. Default value is 'false'.
      * It was added to investigate strange Apache Xerces xml corruption issue. Default value 'false' is 
      * required since the migration to java 17 and the xerces dependency update on pom.xml
      */
     Outcome_Validation_useDOM("Outcome.Validation.useDOM", false),
+    /**
+     * The maximum number of compiled XPath expressions cached per thread by {@link Outcome#evaluateXpath(String, javax.xml.namespace.QName)}.
+     * Value 0 disables the cache. Default value is 256.
+     */
+    Outcome_xpathCacheSize("Outcome.xpathCacheSize", 256),
     /**
      * Specifies an {@link OutcomeInitiator} implementation to use to create new empty Outcomes. 
      * Will be invoked from Job.getOutcome() for Activities with an 'OutcomeInit' property set to the given name.
@@ -318,6 +366,13 @@ public enum SystemProperties implements SystemPropertyOperations {
      * Override the javax.script engine for the given scripting language. Used to override Javascript in Java8+ with Rhino
      */
     Script_EngineOverride_$lang("Script.EngineOverride.%s"),
+    /**
+     * Specifies the Google Guava cache behavior of the permission cache used in SecurityManager.checkPermissions().
+     * It caches the authorization decisions of Agents and the SecurityDomain and Name of Items. Entries are
+     * invalidated by the ProxyMessages of role, permission and property changes. Blank value disables the cache.
+     * Default value is 'maximumSize = 10000, expireAfterWrite = 600s'
+     */
+    SecurityManager_permissionCacheSpec("SecurityManager.permissionCacheSpec", "maximumSize = 10000, expireAfterWrite = 600s"),
     /**
      * Configuration of the shiro.ini file, normally it is in the config directory. No default value.
      */
@@ -439,6 +494,12 @@ public enum SystemProperties implements SystemPropertyOperations {
      * so the StateMachine is loaded from the jar directly.
      */
     $UserCodeRole_StateMachine_bootfile("%s.StateMachine.bootfile"),
+    /**
+     * If true, the Jobs of a Workflow are calculated by visiting only its active Activities, which are
+     * tracked as the Activities are activated and deactivated. Otherwise the whole tree of Activities is
+     * walked recursively. Default value is true.
+     */
+    Workflow_calculateJobs_useActiveIndex("Workflow.calculateJobs.useActiveIndex", true),
     /**
      * If using {@link XMLClusterStorage}, this defined the root directory of XML file storage No default value.
      */
@@ -51,7 +51,11 @@ public interface Item {
      * @param attachment binary data associated with the Outcome (can be empty)
      *
      * @return a Future that will be completed with the result.
+     *
+     * @deprecated every byte of the attachment is boxed and sent as a json number,
+     *             use {@link #requestBinaryAction(String, String, String, int, String, String, String)} instead
      **/
+    @Deprecated
     public Future<String> requestAction(
             String     itemUuid, 
             String     agentUuid, 
@@ -61,6 +65,30 @@ public interface Item {
             String     fileName, 
             List<Byte> attachment);
 
+    /**
+     * Same as {@link #requestAction(String, String, String, int, String, String, List)} but the attachment
+     * is transported as a single Base64 encoded String, because service proxies cannot carry byte arrays.
+     * It avoids boxing every byte of the attachment on the event bus.
+     *
+     * @param itemUuid The UUID of the Item to be requested.
+     * @param agentUuid The UUID of the Agent.
+     * @param stepPath The path in the Workflow to the desired Activity
+     * @param transitionID The transition to be performed
+     * @param requestData The XML Outcome of the work defined by the Activity.
+     * @param fileName the name of the file associated with attachment
+     * @param attachment Base64 encoded binary data associated with the Outcome (can be null or empty)
+     *
+     * @return a Future that will be completed with the result.
+     **/
+    public Future<String> requestBinaryAction(
+            String itemUuid,
+            String agentUuid,
+            String stepPath,
+            int    transitionID,
+            String requestData,
+            String fileName,
+            String attachment);
+
     /**
      * Returns a set of Jobs for this Agent on this Item. Each Job represents a possible transition of a particular 
      * Activity in the Item's lifecycle. The list may be filtered to only refer to currently active activities.
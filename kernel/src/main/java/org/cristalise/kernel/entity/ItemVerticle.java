@@ -24,12 +24,39 @@ import static org.cristalise.kernel.SystemProperties.ItemVerticle_ebAddress;
 import static org.cristalise.kernel.SystemProperties.ItemVerticle_includeDebugInfo;
 import static org.cristalise.kernel.SystemProperties.ItemVerticle_instances;
 import static org.cristalise.kernel.SystemProperties.ItemVerticle_requestTimeoutSeconds;
+import static org.cristalise.kernel.SystemProperties.ItemVerticle_shardClaimPeriodSeconds;
+import static org.cristalise.kernel.SystemProperties.ItemVerticle_shards;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Lock;
+import io.vertx.core.shareddata.SharedData;
+import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.serviceproxy.ServiceBinder;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Registers the {@link Item} service on the event bus. When {@link org.cristalise.kernel.SystemProperties#ItemVerticle_shards}
+ * is set, the Items are distributed to shards by the hash code of their UUID modulo the number of shards, and each
+ * shard is owned by a single server in the cluster. The owner holds a cluster-wide lock of the shard and registers
+ * the service on the address of the shard, so the requests of an Item are executed by its owner and they only need
+ * a local lock. Servers try to claim unowned shards periodically, e.g. when the owner of the shard has left the cluster.
+ * Requests of an unowned shard are executed by the service registered on the common address using the cluster-wide
+ * lock of the shard, so they cannot run concurrently with the requests of an owner. A server releases its shards
+ * when it is no longer a member of the cluster, because the cluster manager has released its locks.
+ * Changing the number of shards remaps most of the Items, therefore it must be the same on all servers of the cluster.
+ */
 @Slf4j
 public class ItemVerticle extends AbstractVerticle {
 
@@ -37,6 +64,155 @@ public class ItemVerticle extends AbstractVerticle {
     public static final int     instances      = ItemVerticle_instances.getInteger();
     public static final boolean includeDebug   = ItemVerticle_includeDebugInfo.getBoolean();
     public static final int     requestTimeout = ItemVerticle_requestTimeoutSeconds.getInteger();
+    public static final int     shards         = ItemVerticle_shards.getInteger();
+
+    /**
+     * Only one of the deployed instances claims the shards
+     */
+    private static final AtomicBoolean shardClaimer = new AtomicBoolean(false);
+    /**
+     * The cluster-wide locks of the shards owned by this server
+     */
+    private static final AtomicReferenceArray<Lock> ownedShards = new AtomicReferenceArray<>(Math.max(0, shards));
+    /**
+     * The services registered on the address of the owned shards
+     */
+    private static final AtomicReferenceArray<MessageConsumer<JsonObject>> shardConsumers = new AtomicReferenceArray<>(Math.max(0, shards));
+    /**
+     * The number of requests executed by the owner of each shard, which are waited for before the shard is released
+     */
+    private static final AtomicIntegerArray ownerRequests = new AtomicIntegerArray(Math.max(0, shards));
+
+    /**
+     * 
+     * @param shard the index of the shard
+     * @return the event bus address of the shard
+     */
+    public static String getShardAddress(int shard) {
+        return ebAddress + ".shard." + shard;
+    }
+
+    /**
+     * Computes the shard of the Item, which is the hash code of its UUID modulo the number of shards.
+     * 
+     * @param itemUuid the UUID of the Item
+     * @param shardCount the number of shards, must be greater than zero
+     * @return the index of the shard
+     */
+    public static int getShard(String itemUuid, int shardCount) {
+        return Math.floorMod(itemUuid.hashCode(), shardCount);
+    }
+
+    /**
+     * Computes the event bus address to be used to send the requests of the Item
+     * 
+     * @param itemUuid the UUID of the Item
+     * @return the address of the shard of the Item, or the common address if sharding is disabled
+     */
+    public static String getAddress(String itemUuid) {
+        if (shards > 0) return getShardAddress(getShard(itemUuid, shards));
+        else            return ebAddress;
+    }
+
+    /**
+     * Checks if the request failed because no service was registered on the address, e.g. the shard 
+     * of the Item is not owned by any server temporarily.
+     * 
+     * @param t the failure of the request
+     * @return true if there was no handler registered on the address
+     */
+    public static boolean isNoHandlers(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ReplyException && ((ReplyException) cause).failureType() == ReplyFailure.NO_HANDLERS) return true;
+            if (cause.getCause() == cause) break;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the lock serializing the requests of the Item. Without sharding, the cluster-wide lock of the Item is
+     * used if vertx is clustered. The owner of the shard only needs the local lock of the Item, because it holds the 
+     * cluster-wide lock of the shard. Other requests of the shard, e.g. the fallback of an unowned shard or the requests 
+     * arriving after the owner has released the shard, use the cluster-wide lock of the shard.
+     * 
+     * @param vertx the vertx instance
+     * @param itemUuid the UUID of the Item
+     * @param shardOwner true if the request was received on the address of the shard
+     * @param timeout the timeout of acquiring the lock in milliseconds
+     * @return the future of the lock
+     */
+    public static Future<Lock> getItemLock(Vertx vertx, String itemUuid, boolean shardOwner, long timeout) {
+        SharedData sharedData = vertx.sharedData();
+
+        if (shards <= 0) {
+            if (vertx.isClustered()) return sharedData.getLockWithTimeout(itemUuid, timeout);
+            else                     return sharedData.getLocalLockWithTimeout(itemUuid, timeout);
+        }
+
+        int shard = getShard(itemUuid, shards);
+
+        if (shardOwner && enterOwnedShard(shard)) {
+            return sharedData.getLocalLockWithTimeout(itemUuid, timeout)
+                    .<Lock>map(lock -> () -> {
+                        lock.release();
+                        ownerRequests.decrementAndGet(shard);
+                    })
+                    .onFailure(e -> ownerRequests.decrementAndGet(shard));
+        }
+        else {
+            return sharedData.getLockWithTimeout(getShardAddress(shard), timeout);
+        }
+    }
+
+    /**
+     * Counts the request of the owner if the shard is still owned. The counter is incremented before the ownership
+     * is checked, so {@link #releaseShard(Vertx, int)} either sees the request or the request sees the release.
+     */
+    private static boolean enterOwnedShard(int shard) {
+        ownerRequests.incrementAndGet(shard);
+
+        if (ownedShards.get(shard) != null) return true;
+
+        ownerRequests.decrementAndGet(shard);
+        return false;
+    }
+
+    /**
+     * Gives up the ownership of the shard. The service of the shard is unregistered, and the cluster-wide lock of the
+     * shard is released after the running requests of the owner are finished. The new requests of the shard wait for
+     * the cluster-wide lock of the shard meanwhile.
+     * 
+     * @param vertx the vertx instance
+     * @param shard the index of the shard
+     * @return the future completed when the lock of the shard was released
+     */
+    public static Future<Void> releaseShard(Vertx vertx, int shard) {
+        Lock lock = ownedShards.getAndSet(shard, null);
+
+        if (lock == null) return Future.succeededFuture();
+
+        MessageConsumer<JsonObject> consumer = shardConsumers.getAndSet(shard, null);
+        Future<Void> unregistered = consumer == null ? Future.succeededFuture() : consumer.unregister();
+
+        return unregistered
+                .otherwiseEmpty()
+                .compose(v -> awaitOwnerRequests(vertx, shard))
+                .onComplete(ar -> {
+                    lock.release();
+                    log.warn("releaseShard() - released shard:{}", shard);
+                });
+    }
+
+    /**
+     * Polls the number of running requests of the owner until it is zero
+     */
+    private static Future<Void> awaitOwnerRequests(Vertx vertx, int shard) {
+        if (ownerRequests.get(shard) == 0) return Future.succeededFuture();
+
+        Promise<Void> timer = Promise.promise();
+        vertx.setTimer(10, id -> timer.complete());
+        return timer.future().compose(v -> awaitOwnerRequests(vertx, shard));
+    }
 
     @Override
     public void start(Promise<Void> startPromise) throws Exception {
@@ -48,7 +224,60 @@ public class ItemVerticle extends AbstractVerticle {
                 .setIncludeDebugInfo(includeDebug)
                 .register(Item.class, service);
 
+        if (shards > 0 && shardClaimer.compareAndSet(false, true)) {
+            claimShards();
+            vertx.setPeriodic(ItemVerticle_shardClaimPeriodSeconds.getInteger() * 1000L, id -> claimShards());
+        }
+
         startPromise.complete();
         log.info("start() - service register done");
     }
+
+    /**
+     * Tries to acquire the cluster-wide lock of each shard not owned yet. The lock is kept as long as this 
+     * server is running, and it is released by the cluster manager when the server leaves the cluster.
+     * In that case the owned shards are released, so they can be claimed again when the server rejoins the cluster.
+     */
+    private void claimShards() {
+        if (!isClusterMember()) {
+            log.warn("claimShards() - server is not a member of the cluster, releasing owned shards");
+
+            for (int shard = 0; shard < shards; shard++) releaseShard(vertx, shard);
+            return;
+        }
+
+        int claimed = 0;
+
+        for (int shard = 0; shard < shards; shard++) {
+            if (ownedShards.get(shard) != null) continue;
+
+            try {
+                Lock lock = Future.await(vertx.sharedData().getLockWithTimeout(getShardAddress(shard), 10));
+                ownedShards.set(shard, lock);
+
+                shardConsumers.set(shard, new ServiceBinder(vertx)
+                        .setAddress(getShardAddress(shard))
+                        .setIncludeDebugInfo(includeDebug)
+                        .register(Item.class, new TraceableEntity(true)));
+
+                claimed++;
+            }
+            catch (Exception e) {
+                // shard is owned by other server
+                log.trace("claimShards() - could not claim shard:{}", shard);
+            }
+        }
+
+        if (claimed > 0) log.info("claimShards() - claimed #{} shards of #{}", claimed, shards);
+    }
+
+    /**
+     * @return false if the cluster manager is not active or this server is not in the list of its nodes
+     */
+    private boolean isClusterMember() {
+        ClusterManager clusterManager = ((VertxInternal) vertx).getClusterManager();
+
+        if (clusterManager == null) return true;
+        else                        return clusterManager.isActive() && clusterManager.getNodes().contains(clusterManager.getNodeId());
+    }
 }
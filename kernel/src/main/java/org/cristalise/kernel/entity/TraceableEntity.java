@@ -20,11 +20,17 @@
  */
 package org.cristalise.kernel.entity;
 
+import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.apache.commons.lang3.StringUtils.removeStart;
 import static org.cristalise.kernel.SystemProperties.StateMachine_enableErrorHandling;
 
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.cristalise.kernel.common.AccessRightsException;
@@ -39,6 +45,7 @@ import org.cristalise.kernel.lifecycle.instance.Workflow;
 import org.cristalise.kernel.lifecycle.instance.predefined.ItemPredefinedStepContainer;
 import org.cristalise.kernel.lifecycle.instance.predefined.PredefinedStepContainer;
 import org.cristalise.kernel.lookup.AgentPath;
+import org.cristalise.kernel.lookup.ItemPath;
 import org.cristalise.kernel.lookup.RolePath;
 import org.cristalise.kernel.persistency.C2KLocalObjectMap;
 import org.cristalise.kernel.persistency.ClusterStorageManager;
@@ -50,7 +57,6 @@ import org.cristalise.kernel.security.SecurityManager;
 
 import io.vertx.core.Future;
 import io.vertx.core.shareddata.Lock;
-import io.vertx.core.shareddata.SharedData;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -86,8 +92,19 @@ public class TraceableEntity implements Item {
 
     protected final ClusterStorageManager mStorage;
 
+    /**
+     * True if this instance was registered on the address of an owned shard, i.e. it is the only one
+     * executing the requests of its Items in the cluster
+     */
+    private final boolean shardOwner;
+
     public TraceableEntity() {
+        this(false);
+    }
+
+    public TraceableEntity(boolean shardOwner) {
         this.mStorage = Gateway.getStorage();
+        this.shardOwner = shardOwner;
     }
 
     protected PredefinedStepContainer getNewPredefStepContainer() {
@@ -95,6 +112,7 @@ public class TraceableEntity implements Item {
     }
 
     @Override
+    @Deprecated
     public Future<String> requestAction(
             String itemUuid,
             String agentUuid,
@@ -104,6 +122,57 @@ public class TraceableEntity implements Item {
             String fileName,
             List<Byte> attachment)
     {
+        byte[] bytes = attachment == null ? new byte[0] : ArrayUtils.toPrimitive(attachment.toArray(new Byte[0]));
+        return requestAction(itemUuid, agentUuid, stepPath, transitionID, requestData, fileName, bytes);
+    }
+
+    @Override
+    public Future<String> requestBinaryAction(
+            String itemUuid,
+            String agentUuid,
+            String stepPath,
+            int transitionID,
+            String requestData,
+            String fileName,
+            String attachment)
+    {
+        byte[] bytes;
+
+        try {
+            bytes = isEmpty(attachment) ? new byte[0] : Base64.getDecoder().decode(attachment);
+        }
+        catch (IllegalArgumentException e) {
+            log.error("requestBinaryAction() - invalid Base64 attachment item:{} stepPath:{}", itemUuid, stepPath, e);
+            return Future.failedFuture(CriseVertxException.toServiceException(new InvalidDataException("Attachment is not valid Base64 data")));
+        }
+
+        return requestAction(itemUuid, agentUuid, stepPath, transitionID, requestData, fileName, bytes);
+    }
+
+    private Future<String> requestAction(
+            String itemUuid,
+            String agentUuid,
+            String stepPath,
+            int transitionID,
+            String requestData,
+            String fileName,
+            byte[] attachment)
+    {
+        if (!shardOwner && ItemVerticle.shards > 0) {
+            // the request arrived on the common address, so send it to the owner of the Item
+            String encodedAttachment = attachment.length == 0 ? "" : Base64.getEncoder().encodeToString(attachment);
+            try {
+                return Future.succeededFuture(Future.await(new ItemVertxEBProxy(Gateway.getVertx(), ItemVerticle.getAddress(itemUuid))
+                        .requestBinaryAction(itemUuid, agentUuid, stepPath, transitionID, requestData, fileName, encodedAttachment)));
+            }
+            catch (Throwable t) {
+                if (!ItemVerticle.isNoHandlers(t)) return Future.failedFuture(t);
+
+                // the shard is not owned at the moment, execute the request here using the cluster-wide lock of the shard
+                log.warn("requestAction() - shard of item:{} is not owned, executing request locally", itemUuid);
+            }
+        }
+
         ItemProxy item;
         AgentProxy agent;
         TransactionKey transactionKey;
@@ -119,8 +188,7 @@ public class TraceableEntity implements Item {
         }
 
         try {
-            SharedData sharedData = Gateway.getVertx().sharedData();
-            Lock lock = Future.await(sharedData.getLockWithTimeout(itemUuid, 5000));
+            Lock lock = Future.await(getItemLock(itemUuid));
 
             try {
                 mStorage.begin(transactionKey);
@@ -154,6 +222,71 @@ public class TraceableEntity implements Item {
         }
     }
 
+    /**
+     * Returns the lock serializing the requests of the Item, see {@link ItemVerticle#getItemLock(io.vertx.core.Vertx, String, boolean, long)}
+     * 
+     * @param itemUuid the UUID of the Item
+     * @return the future of the lock
+     */
+    private Future<Lock> getItemLock(String itemUuid) {
+        return ItemVerticle.getItemLock(Gateway.getVertx(), itemUuid, shardOwner, 5000);
+    }
+
+    /**
+     * Updates the JOB cluster of the Item with the newly calculated Jobs. Jobs which are not available anymore 
+     * are removed, new or modified Jobs are stored and the unchanged Jobs are left untouched.
+     * 
+     * @param itemPath the Item
+     * @param newJobs the newly calculated Jobs
+     * @param transactionKey the key of the transaction
+     */
+    private void updateJobs(ItemPath itemPath, List<Job> newJobs, TransactionKey transactionKey) throws Exception {
+        @SuppressWarnings("unchecked")
+        C2KLocalObjectMap<Job> currentJobs = (C2KLocalObjectMap<Job>)mStorage.get(itemPath, ClusterType.JOB.getName(), transactionKey);
+
+        Map<String, Job> newJobMap = new LinkedHashMap<>();
+        for (Job newJob: newJobs) newJobMap.put(removeStart(newJob.getClusterPath(), ClusterType.JOB + "/"), newJob);
+
+        int removed = 0, unchanged = 0, stored = 0;
+
+        // values() reads the whole JOB cluster in one go if the ClusterStorage supports it
+        for (Job currentJob: currentJobs.values()) {
+            if (currentJob == null) continue;
+
+            String key = removeStart(currentJob.getClusterPath(), ClusterType.JOB + "/");
+            Job newJob = newJobMap.get(key);
+
+            if (newJob != null && isSameJob(currentJob, newJob)) {
+                newJobMap.remove(key);
+                unchanged++;
+            }
+            else {
+                // JOB cannot be updated, so the modified Job is removed and stored again
+                mStorage.remove(itemPath, ClusterType.JOB + "/" + key, transactionKey);
+                removed++;
+            }
+        }
+
+        for (Job newJob: newJobMap.values()) {
+            mStorage.put(itemPath, newJob, transactionKey);
+            if (isNotBlank(newJob.getRoleOverride())) newJob.sendToRoleChannel();
+            stored++;
+        }
+
+        log.debug("updateJobs() - item:{} removed:{} stored:{} unchanged:{}", itemPath, removed, stored, unchanged);
+    }
+
+    /**
+     * Compares the persistent fields of the Jobs
+     */
+    private static boolean isSameJob(Job current, Job newJob) {
+        return current != null
+                && Objects.equals(current.getStepPath(),     newJob.getStepPath())
+                && Objects.equals(current.getStepType(),     newJob.getStepType())
+                && Objects.equals(current.getRoleOverride(), newJob.getRoleOverride())
+                && Objects.equals(current.getActProps(),     newJob.getActProps());
+    }
+
     /**
      * 
      * @param item
@@ -168,7 +301,7 @@ public class TraceableEntity implements Item {
      * @throws Exception
      */
     private String requestAction(ItemProxy item, AgentProxy agent, String stepPath, int transitionID, String requestData, String fileName,
-            List<Byte> attachment, TransactionKey transactionKey) throws Exception
+            byte[] attachment, TransactionKey transactionKey) throws Exception
     {
         log.info("=======================================================================================");
         log.info("requestAction({}) Transition {} on {} by agent {}", item, transitionID, stepPath, agent);
@@ -193,20 +326,14 @@ public class TraceableEntity implements Item {
             throw new InvalidDataException("Step '" + stepPath + "' is not available for item:" + item);
         }
 
-        byte[] bytes = ArrayUtils.toPrimitive(attachment.toArray(new Byte[0]));
-        String finalOutcome = lifeCycle.requestAction(agent.getPath(), stepPath, item.getPath(), transitionID, requestData, fileName, bytes, transactionKey);
+        String finalOutcome = lifeCycle.requestAction(agent.getPath(), stepPath, item.getPath(), transitionID, requestData, fileName, attachment, transactionKey);
 
         // store the workflow and the Jobs if we've changed the state of the domain workflow
         if ( ! stepPath.startsWith("workflow/predefined")) {
             mStorage.put(item.getPath(), lifeCycle, transactionKey);
 
-            mStorage.removeCluster(item.getPath(), ClusterType.JOB, transactionKey);
-
             ArrayList<Job> newJobs = ((CompositeActivity)lifeCycle.search("workflow/domain")).calculateJobs(agent.getPath(), item.getPath(), true);
-            for (Job newJob: newJobs) {
-                mStorage.put(item.getPath(), newJob, transactionKey);
-                if (isNotBlank(newJob.getRoleOverride())) newJob.sendToRoleChannel();
-            }
+            updateJobs(item.getPath(), newJobs, transactionKey);
         }
 
         // remove entity path if transaction was successful
@@ -337,7 +337,7 @@ public class AgentProxy extends ItemProxy {
                 PredefinedStep.DONE, 
                 param,
                 "",
-                new ArrayList<Byte>());
+                new byte[0]);
 
         String[] clearCacheSteps = {
                 ChangeName.class.getSimpleName(), 
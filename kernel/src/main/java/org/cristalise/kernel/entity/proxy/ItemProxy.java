@@ -34,8 +34,9 @@ import static org.cristalise.kernel.property.BuiltInItemProperties.SCRIPT_URN;
 import static org.cristalise.kernel.property.BuiltInItemProperties.TYPE;
 import static org.cristalise.kernel.property.BuiltInItemProperties.UPDATE_SCHEMA;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -121,7 +122,7 @@ public class ItemProxy {
     }
 
     public Item getItem() {
-        if (mItem == null) mItem = new ItemVertxEBProxy(Gateway.getVertx(), ItemVerticle.ebAddress);
+        if (mItem == null) mItem = new ItemVertxEBProxy(Gateway.getVertx(), ItemVerticle.getAddress(mItemPath.getUUID().toString()));
         return mItem;
     }
 
@@ -178,7 +179,10 @@ public class ItemProxy {
      * @param attachment
      * @return
      * @throws CriseVertxException
+     * 
+     * @deprecated use {@link #requestAction(String, String, String, int, String, String, byte[])} instead
      */
+    @Deprecated
     public String requestAction(
             String     itemUuid,
             String     agentUuid,
@@ -188,11 +192,51 @@ public class ItemProxy {
             String     fileName,
             List<Byte> attachment
         ) throws CriseVertxException
+    {
+        byte[] bytes = attachment == null ? new byte[0] : ArrayUtils.toPrimitive(attachment.toArray(new Byte[0]));
+        return requestAction(itemUuid, agentUuid, stepPath, transitionID, requestData, fileName, bytes);
+    }
+
+    /**
+     * Sends the request to the Item service. The attachment is sent as a single Base64 encoded String.
+     *
+     * @param itemUuid
+     * @param agentUuid
+     * @param stepPath
+     * @param transitionID
+     * @param requestData
+     * @param fileName
+     * @param attachment binary data, can be null or empty
+     * @return
+     * @throws CriseVertxException
+     */
+    public String requestAction(
+            String itemUuid,
+            String agentUuid,
+            String stepPath,
+            int    transitionID,
+            String requestData,
+            String fileName,
+            byte[] attachment
+        ) throws CriseVertxException
     {
         log.debug("requestAction() - item:{} agent:{} stepPath:{}", this, agentUuid, stepPath);
 
+        String encodedAttachment = (attachment == null || attachment.length == 0) ? "" : Base64.getEncoder().encodeToString(attachment);
+
         try {
-            Future<String> future = getItem().requestAction(itemUuid, agentUuid, stepPath, transitionID, requestData, fileName, attachment);
+            Future<String> future = getItem().requestBinaryAction(itemUuid, agentUuid, stepPath, transitionID, requestData, fileName, encodedAttachment);
+
+            if (ItemVerticle.shards > 0) {
+                // the shard of the Item might not be owned temporarily, the service on the common address executes the request
+                future = future.recover(t -> {
+                    if (!ItemVerticle.isNoHandlers(t)) return Future.failedFuture(t);
+
+                    log.warn("requestAction() - shard of item:{} is not owned, sending request to the common address", this);
+                    return new ItemVertxEBProxy(Gateway.getVertx(), ItemVerticle.ebAddress)
+                            .requestBinaryAction(itemUuid, agentUuid, stepPath, transitionID, requestData, fileName, encodedAttachment);
+                });
+            }
             return await(future);
         }
         catch (ExecutionException e) {
@@ -269,7 +313,7 @@ public class ItemProxy {
                 thisJob.getTransition().getId(),
                 outcome,
                 attachmentFileName,
-                Arrays.asList(ArrayUtils.toObject(attachmentBinary)));
+                attachmentBinary);
     }
 
     /**
@@ -1111,6 +1155,19 @@ public class ItemProxy {
         return Gateway.getStorage().executeQuery(query);
     }
 
+    /**
+     * Executes the Query in the target database and writes the result to the OutputStream without 
+     * building the complete result in memory when the storage supports it.
+     *
+     * @param query the query to be executed
+     * @param out the stream to write the result to, it is not closed
+     * @param jsonFlag write the result as JSON instead of XML
+     * @throws PersistencyException there was a fundamental DB issue
+     */
+    public void executeQuery(Query query, OutputStream out, boolean jsonFlag) throws PersistencyException {
+        Gateway.getStorage().executeQuery(query, out, jsonFlag, transactionKey);
+    }
+
     /**
      * Retrieve the C2KLocalObject for the ClusterType
      *
@@ -140,14 +140,24 @@ public class ProxyMessage {
         }
     }
 
+    /**
+     * Checks if the message was sent about the change of a Role, e.g. its permissions or its Agents were updated
+     * 
+     * @return true if the message is a Lookup change of a RolePath
+     */
+    public boolean isRoleMessage() {
+        return !clusterStoreMesssage && path.startsWith("/role");
+    }
+
     /**
      * Constructs the UUID/ClusterType local address to be used to send or publish the change notification messages
      * 
-     * @return returns concatenated string of UUID/ClusterType
+     * @return returns concatenated string of UUID/ClusterType, or 'role' or 'tree' for Lookup changes
      */
     public String getLocalEventBusAddress() {
-        if (clusterStoreMesssage) return itemPath.getName() + "/" + getClusterType();
-        else                      return "tree";
+        if      (clusterStoreMesssage) return itemPath.getName() + "/" + getClusterType();
+        else if (isRoleMessage())      return "role";
+        else                           return "tree";
     }
 
     /**
@@ -23,14 +23,17 @@ package org.cristalise.kernel.events;
 
 import static org.cristalise.kernel.persistency.ClusterType.HISTORY;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.common.PersistencyException;
+import org.cristalise.kernel.entity.C2KLocalObject;
 import org.cristalise.kernel.lifecycle.instance.stateMachine.StateMachine;
 import org.cristalise.kernel.lookup.AgentPath;
 import org.cristalise.kernel.lookup.ItemPath;
@@ -69,7 +72,13 @@ public class History extends C2KLocalObjectMap<Event> {
     }
 
     private synchronized Event storeNewEvent(Event newEvent) {
-        newEvent.setID( getLastId()+1);
+        try {
+            newEvent.setID(getStorage().getLastStoredIntegerId(itemPath, HISTORY.getName(), transactionKey) + 1);
+        }
+        catch (PersistencyException e) {
+            log.error("storeNewEvent() - {}", itemPath, e);
+            throw new IllegalArgumentException(e);
+        }
         put(newEvent.getName(), newEvent);
         return newEvent;
     }
@@ -128,12 +137,39 @@ public class History extends C2KLocalObjectMap<Event> {
     @Override
     protected Set<String> loadKeys(String path) throws PersistencyException {
         Set<String> keys = new HashSet<>();
+        int last = getLastId();
 
-        for (int i = 0; i <= getLastId(); i++) keys.add(String.valueOf(i));
+        for (int i = 0; i <= last; i++) keys.add(String.valueOf(i));
 
         return keys;
     }
 
+    /**
+     * Retrieves the Events with id between from (inclusive) and to (exclusive). Events not available 
+     * in the cache are read with a single call of the storage.
+     * 
+     * @param from the id of the first Event (inclusive)
+     * @param to the id after the last Event (exclusive)
+     * @return the list of Events ordered by their id
+     */
+    public List<Event> getRange(int from, int to) {
+        List<Event> events = new ArrayList<>();
+
+        if (from < 0) from = 0;
+        if (to <= from) return events;
+
+        try {
+            for (C2KLocalObject obj : getStorage().getIntegerIdRange(itemPath, HISTORY.getName(), from, to, transactionKey)) {
+                events.add((Event)obj);
+            }
+        }
+        catch (PersistencyException e) {
+            log.error("getRange() - {} from:{} to:{}", itemPath, from, to, e);
+            throw new IllegalArgumentException(e);
+        }
+        return events;
+    }
+
     //TODO error handling is missing to check boundary values for start+-batchSize
     public Map<Integer, Event> list(int start, int batchSize, Boolean descending) {
         Map<Integer, Event> batch = new LinkedHashMap<>();
@@ -141,20 +177,12 @@ public class History extends C2KLocalObjectMap<Event> {
         int last = getLastId();
 
         if (descending) {
-            int i = last - start;
+            List<Event> events = getRange(last - start - batchSize + 1, last - start + 1);
 
-            while (i >= 0 && batch.size() < batchSize) {
-                batch.put(i, getEvent(i));
-                i--;
-            }
+            for (int i = events.size() - 1; i >= 0; i--) batch.put(events.get(i).getID(), events.get(i));
         }
         else {
-            Integer i = start;
-
-            while (i <= last && batch.size() < batchSize) {
-                batch.put(i, getEvent(i));
-                i++;
-            }
+            for (Event event : getRange(start, Math.min(last + 1, start + batchSize))) batch.put(event.getID(), event);
         }
 
         return batch;
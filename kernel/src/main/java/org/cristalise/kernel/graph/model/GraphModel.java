@@ -20,8 +20,6 @@
  */
 package org.cristalise.kernel.graph.model;
 
-import java.util.Hashtable;
-
 import org.cristalise.kernel.graph.event.ClearedEvent;
 import org.cristalise.kernel.graph.event.EdgeRemovedEvent;
 import org.cristalise.kernel.graph.event.EdgesChangedEvent;
@@ -35,6 +33,7 @@ import org.cristalise.kernel.graph.event.VertexCreatedEvent;
 import org.cristalise.kernel.graph.event.VertexMovedEvent;
 import org.cristalise.kernel.graph.event.VertexRemovedEvent;
 import org.cristalise.kernel.graph.event.VerticesChangedEvent;
+import org.cristalise.kernel.utils.IntObjectMap;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -46,12 +45,17 @@ public class GraphModel {
     private int mHeight = 0;
     private int mNextId = 0;
     protected int mStartVertexId = -1;
-    protected Hashtable<String, Vertex> mVertexHashtable = new Hashtable<String, Vertex>();
-    protected Hashtable<String, DirectedEdge> mEdgeHashtable = new Hashtable<String, DirectedEdge>();
+    protected IntObjectMap<Vertex> mVertexMap = new IntObjectMap<Vertex>();
+    protected IntObjectMap<DirectedEdge> mEdgeMap = new IntObjectMap<DirectedEdge>();
     private GraphableVertex mContainingVertex;
 
     /* Transient data */
 
+    // Arrays of the vertices and edges ordered by their ids, rebuilt lazily after structural changes
+    private transient volatile Vertex[]          mVertexArray = null;
+    private transient volatile GraphableVertex[] mGraphableVertexArray = null;
+    private transient volatile DirectedEdge[]    mEdgeArray = null;
+
     protected transient Vertex            mNewEdgeOriginVertex = null;
     protected transient GraphPoint        mNewEdgeEndPoint = null;
 
@@ -181,46 +185,87 @@ public class GraphModel {
         mContainingVertex = vertex;
     }
 
+    private void verticesChanged() {
+        mVertexArray = null;
+        mGraphableVertexArray = null;
+        if (mContainingVertex != null) mContainingVertex.childrenChanged();
+    }
+
+    private void edgesChanged() {
+        mEdgeArray = null;
+    }
+
     public void setVertices(Vertex[] vertices) {
-        mVertexHashtable = new Hashtable<String, Vertex>();
+        IntObjectMap<Vertex> vertexMap = new IntObjectMap<Vertex>(vertices.length);
         for (Vertex vertice : vertices) {
-            mVertexHashtable.put(String.valueOf(vertice.getID()), vertice);
+            vertexMap.put(vertice.getID(), vertice);
             checkSize(vertice);
 
         }
+        mVertexMap = vertexMap;
+        verticesChanged();
         publishEvent(mVerticesChangedEvent);
     }
 
+    /**
+     * The array is cached until the next structural change of the model, therefore it must not be modified.
+     *
+     * @return the vertices ordered by their id
+     */
     public Vertex[] getVertices() {
-        Object[] vertexObjs = mVertexHashtable.values().toArray();
-        Vertex[] vertices = new Vertex[vertexObjs.length];
-        int i = 0;
-        for (i = 0; i < vertices.length; i++) {
-            vertices[i] = (Vertex)vertexObjs[i];
+        Vertex[] vertices = mVertexArray;
+        if (vertices == null) {
+            vertices = mVertexMap.values(Vertex[]::new);
+            mVertexArray = vertices;
+        }
+        return vertices;
+    }
+
+    /**
+     * The array is cached until the next structural change of the model, therefore it must not be modified.
+     *
+     * @return the vertices ordered by their id
+     * @throws ClassCastException if the model contains a Vertex which is not a GraphableVertex
+     */
+    public GraphableVertex[] getGraphableVertices() {
+        GraphableVertex[] vertices = mGraphableVertexArray;
+        if (vertices == null) {
+            Vertex[] vs = getVertices();
+            vertices = new GraphableVertex[vs.length];
+            for (int i = 0; i < vs.length; i++) {
+                vertices[i] = (GraphableVertex) vs[i];
+            }
+            mGraphableVertexArray = vertices;
         }
         return vertices;
     }
 
     public void setEdges(DirectedEdge[] edges) {
-        mEdgeHashtable = new Hashtable<String, DirectedEdge>();
+        IntObjectMap<DirectedEdge> edgeMap = new IntObjectMap<DirectedEdge>(edges.length);
         for (DirectedEdge edge : edges) {
-            mEdgeHashtable.put(String.valueOf(edge.getID()), edge);
+            edgeMap.put(edge.getID(), edge);
         }
+        mEdgeMap = edgeMap;
+        edgesChanged();
         publishEvent(mEdgesChangedEvent);
     }
 
+    /**
+     * The array is cached until the next structural change of the model, therefore it must not be modified.
+     *
+     * @return the edges ordered by their id
+     */
     public DirectedEdge[] getEdges() {
-        Object[] edgeObjs = mEdgeHashtable.values().toArray();
-        DirectedEdge[] edges = new DirectedEdge[edgeObjs.length];
-        int i = 0;
-        for (i = 0; i < edges.length; i++) {
-            edges[i] = (DirectedEdge)edgeObjs[i];
+        DirectedEdge[] edges = mEdgeArray;
+        if (edges == null) {
+            edges = mEdgeMap.values(DirectedEdge[]::new);
+            mEdgeArray = edges;
         }
         return edges;
     }
 
 	public Vertex getVertexById(int id) {
-		return mVertexHashtable.get(String.valueOf(id));
+		return mVertexMap.get(id);
 	}
 
 
@@ -236,7 +281,8 @@ public class GraphModel {
         e.setTerminusPoint(terminus.getCentrePoint());
         origin.addOutEdgeId(mNextId);
         terminus.addInEdgeId(mNextId);
-        mEdgeHashtable.put(String.valueOf(mNextId), e);
+        mEdgeMap.put(mNextId, e);
+        edgesChanged();
         mNextId++;
         return mNextId - 1;
     }
@@ -250,7 +296,8 @@ public class GraphModel {
         origin.removeOutEdgeId(edgeId);
         terminus.removeInEdgeId(edgeId);
         // Remove the edge
-        mEdgeHashtable.remove(String.valueOf(e.getID()));
+        mEdgeMap.remove(e.getID());
+        edgesChanged();
         publishEvent(mEdgeRemovedEvent);
     }
 
@@ -262,8 +309,9 @@ public class GraphModel {
 	        }
 	        placeVertex(v, location);
 	    }
-        mVertexHashtable.put(String.valueOf(mNextId), v);
+        mVertexMap.put(mNextId, v);
 		v.setID(mNextId);
+        verticesChanged();
         return mNextId++;
     }
 
@@ -291,7 +339,7 @@ public class GraphModel {
             // Remove the id of the edge from the origin vertex
             origin.removeOutEdgeId(edgeId);
             // Remove the edge
-            mEdgeHashtable.remove(String.valueOf(edgeId));
+            mEdgeMap.remove(edgeId);
         }
         // Remove all the out edges
         for (i = 0; i < outEdges.length; i++) {
@@ -300,10 +348,12 @@ public class GraphModel {
             // Remove the id of the edge from the terminus vertex
             terminus.removeInEdgeId(edgeId);
             // Remove the edge
-            mEdgeHashtable.remove(String.valueOf(edgeId));
+            mEdgeMap.remove(edgeId);
         }
         // Remove the vertex
-        mVertexHashtable.remove(String.valueOf(v.getID()));
+        mVertexMap.remove(v.getID());
+        verticesChanged();
+        edgesChanged();
         publishEvent(mVertexRemovedEvent);
     }
 
@@ -337,11 +387,11 @@ public class GraphModel {
 
 
     public Vertex resolveVertex(int id) {
-        return mVertexHashtable.get(String.valueOf(id));
+        return mVertexMap.get(id);
     }
 
     public DirectedEdge resolveEdge(int id) {
-        return mEdgeHashtable.get(String.valueOf(id));
+        return mEdgeMap.get(id);
     }
 
     public DirectedEdge[] getInEdges(Vertex v) {
@@ -416,11 +466,7 @@ public class GraphModel {
     }
 
     public void clearTags(Object tag) {
-        Vertex vertex = null;
-        Object[] vertexObjs = mVertexHashtable.values().toArray();
-        int i = 0;
-        for (i = 0; i < vertexObjs.length; i++) {
-            vertex = (Vertex)vertexObjs[i];
+        for (Vertex vertex : getVertices()) {
             vertex.clearTag(tag);
         }
     }
@@ -430,8 +476,10 @@ public class GraphModel {
     }
 
     public void clear() {
-        mVertexHashtable = new Hashtable<String, Vertex>();
-        mEdgeHashtable = new Hashtable<String, DirectedEdge>();
+        mVertexMap = new IntObjectMap<Vertex>();
+        mEdgeMap = new IntObjectMap<DirectedEdge>();
+        verticesChanged();
+        edgesChanged();
         mStartVertexId = -1;
         publishEvent(mClearedEvent);
     }
@@ -499,37 +547,31 @@ public class GraphModel {
     public void setGraphModelCastorData(GraphModelCastorData data) {
         int i = 0;
 
-        // Create and populate the vertex hashtable
-        mVertexHashtable = new Hashtable<String, Vertex>();
+        // Create and populate the vertex map
+        IntObjectMap<Vertex> vertexMap = new IntObjectMap<Vertex>(data.mVertexImpls.length);
         for (i = 0; i < data.mVertexImpls.length; i++) {
-            mVertexHashtable.put(String.valueOf(data.mVertexImpls[i].getID()), data.mVertexImpls[i]);
+            vertexMap.put(data.mVertexImpls[i].getID(), data.mVertexImpls[i]);
             checkSize(data.mVertexImpls[i]);
         }
-        // Create and populate the edge hastable
-        mEdgeHashtable = new Hashtable<String, DirectedEdge>();
+        // Create and populate the edge map
+        IntObjectMap<DirectedEdge> edgeMap = new IntObjectMap<DirectedEdge>(data.mEdgeImpls.length);
         for (i = 0; i < data.mEdgeImpls.length; i++) {
-            mEdgeHashtable.put(String.valueOf(data.mEdgeImpls[i].getID()), data.mEdgeImpls[i]);
+            edgeMap.put(data.mEdgeImpls[i].getID(), data.mEdgeImpls[i]);
         }
+        mVertexMap = vertexMap;
+        mEdgeMap = edgeMap;
+        verticesChanged();
+        edgesChanged();
         // Set the start vertex id and the id generation counter
         mStartVertexId = data.mStartVertexId;
         mNextId = data.mNextId;
     }
 
     public GraphModelCastorData getGraphModelCastorData() {
-        Object[] vertexObjs = mVertexHashtable.values().toArray();
-        Vertex[] vertexImpls = new Vertex[vertexObjs.length];
-        Object[] edgeObjs = mEdgeHashtable.values().toArray();
-        DirectedEdge[] directedEdgeImpls = new DirectedEdge[edgeObjs.length];
+        // Copy the cached arrays, GraphModelCastorData exposes them
+        Vertex[] vertexImpls = getVertices().clone();
+        DirectedEdge[] directedEdgeImpls = getEdges().clone();
         String className = null;
-        int i = 0;
-        // Put in the vertices
-        for (i = 0; i < vertexImpls.length; i++) {
-            vertexImpls[i] = (Vertex)vertexObjs[i];
-        }
-        // Put in the edges
-        for (i = 0; i < directedEdgeImpls.length; i++) {
-            directedEdgeImpls[i] = (DirectedEdge)edgeObjs[i];
-        }
         // Disable persistency of the vertex outline creator: determined by container
         // Determine the class name of the vertex outline creator
 //        if (mVertexOutlineCreator == null) {
@@ -94,6 +94,23 @@ public abstract class GraphableVertex extends Vertex {
         this.parent = parent;
     }
 
+    /**
+     * Renaming changes the path of the vertex, so the parent is notified like on structural changes.
+     */
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        if (parent != null) parent.childrenChanged();
+    }
+
+    /**
+     * Called when a vertex was added to, removed from or renamed in the children graph model of this vertex
+     * or of any of its descendants. The default implementation propagates the notification to the parent.
+     */
+    protected void childrenChanged() {
+        if (parent != null) parent.childrenChanged();
+    }
+
     @Override
     public GraphModel getChildrenGraphModel() {
         return mChildrenGraphModel;
@@ -143,12 +160,7 @@ public abstract class GraphableVertex extends Vertex {
 
     public GraphableVertex[] getLayoutableChildren() {
         if (getIsComposite() && mChildrenGraphModel != null) {
-            Vertex[] vs = mChildrenGraphModel.getVertices();
-            GraphableVertex[] gvs = new GraphableVertex[vs.length];
-            for (int i = 0; i < vs.length; i++) {
-                gvs[i] = (GraphableVertex) vs[i];
-            }
-            return gvs;
+            return mChildrenGraphModel.getGraphableVertices();
         }
         return null;
     }
@@ -241,6 +253,7 @@ public abstract class GraphableVertex extends Vertex {
             for (DirectedEdge edge : edges)
                 ((GraphableEdge) edge).setParent(this);
         childrenGraph.setContainingVertex(this);
+        childrenChanged();
     }
 
     /**
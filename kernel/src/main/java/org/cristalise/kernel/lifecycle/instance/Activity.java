@@ -91,7 +91,7 @@ public class Activity extends WfVertex {
     /**
      * true is available to be executed
      */
-    public boolean           active = false;
+    private boolean          active = false;
     /**
      * used in verify()
      */
@@ -564,10 +564,26 @@ public class Activity extends WfVertex {
     }
 
     /**
-     * sets the ability to be executed
+     * sets the ability to be executed and notifies the Workflow to keep its index of active Activities up to date
      */
     public void setActive(boolean acti) {
+        if (active == acti) return;
+
         active = acti;
+
+        Workflow wf = findWorkflow();
+        if (wf != null) wf.activeChanged(this);
+    }
+
+    /**
+     * Unlike {@link #getWf()} it can be used while the Activity is not (yet) part of a Workflow
+     *
+     * @return the Workflow containing this Activity or null
+     */
+    protected Workflow findWorkflow() {
+        GraphableVertex vertex = this;
+        while (vertex != null && !(vertex instanceof Workflow)) vertex = vertex.getParent();
+        return (Workflow) vertex;
     }
 
     /**
@@ -600,16 +616,16 @@ public class Activity extends WfVertex {
         return calculateJobsBase(agent, itemPath, true);
     }
 
-    private List<Job> calculateJobsBase(AgentPath agent, ItemPath itemPath, boolean includeInactive)
+    List<Job> calculateJobsBase(AgentPath agent, ItemPath itemPath, boolean includeInactive)
             throws ObjectNotFoundException, InvalidDataException
     {
-        log.trace("calculateJobsBase() - act:" + getPath());
+        if (log.isTraceEnabled()) log.trace("calculateJobsBase() - act:{}", getPath());
         List<Job> jobs = new ArrayList<Job>();
         if ((includeInactive || getActive()) && !getName().equals("domain")) {
             List<Transition> transitions = getStateMachine().getPossibleTransitions(this, agent);
-            log.trace("calculateJobsBase() - Got " + transitions.size() + " transitions.");
+            log.trace("calculateJobsBase() - Got {} transitions.", transitions.size());
             for (Transition transition : transitions) {
-                log.trace("calculateJobsBase() - Creating Job object for transition " + transition.getName());
+                log.trace("calculateJobsBase() - Creating Job object for transition {}", transition.getName());
                 jobs.add(new Job(this, itemPath, transition.getName(), agent, transition.getRoleOverride()));
             }
         }
@@ -676,7 +692,7 @@ public class Activity extends WfVertex {
             throws AccessRightsException, InvalidTransitionException, InvalidDataException, ObjectNotFoundException, PersistencyException,
             ObjectAlreadyExistsException, ObjectCannotBeUpdated, CannotManageException, InvalidCollectionModification
     {
-        active = false;
+        setActive(false);
     }
 
     @Override
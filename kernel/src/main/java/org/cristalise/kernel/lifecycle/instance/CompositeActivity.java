@@ -22,6 +22,7 @@ package org.cristalise.kernel.lifecycle.instance;
 
 import static org.cristalise.kernel.graph.model.BuiltInVertexProperties.ABORTABLE;
 import static org.cristalise.kernel.graph.model.BuiltInVertexProperties.REPEAT_WHEN;
+import static org.cristalise.kernel.SystemProperties.Workflow_calculateJobs_useActiveIndex;
 import static org.cristalise.kernel.graph.model.BuiltInVertexProperties.STATE_MACHINE_NAME;
 
 import java.util.ArrayList;
@@ -376,7 +377,7 @@ public class CompositeActivity extends Activity {
 
         if (startVertex instanceof Activity) {
             Activity act = (Activity)startVertex;
-            if (!act.isFinished() && act.active) return false;
+            if (!act.isFinished() && act.getActive()) return false;
         }
 
         return isFinishable(startVertex == null ? null : startVertex.findLastVertex());
@@ -405,7 +406,7 @@ public class CompositeActivity extends Activity {
         }
         else if (lastVertex instanceof Activity) {
             Activity act = (Activity)lastVertex;
-            return act.isFinished() && !act.active;
+            return act.isFinished() && !act.getActive();
         }
 
         return false;
@@ -423,12 +424,18 @@ public class CompositeActivity extends Activity {
     }
 
     /**
-     *
+     * When recursing inside a Workflow only its active Activities are visited (see {@link Workflow#calculateActiveJobs}),
+     * unless it was disabled by {@link org.cristalise.kernel.SystemProperties#Workflow_calculateJobs_useActiveIndex}.
      */
     @Override
     public ArrayList<Job> calculateJobs(AgentPath agent, ItemPath itemPath, boolean recurse)
             throws ObjectNotFoundException, InvalidDataException
     {
+        if (recurse && Workflow_calculateJobs_useActiveIndex.getBoolean()) {
+            Workflow wf = findWorkflow();
+            if (wf != null) return wf.calculateActiveJobs(this, agent, itemPath);
+        }
+
         ArrayList<Job> jobs = new ArrayList<Job>();
         boolean childActive = false;
         if (recurse) {
@@ -436,7 +443,7 @@ public class CompositeActivity extends Activity {
                 if (getChildren()[i] instanceof Activity) {
                     Activity child = (Activity) getChildren()[i];
                     jobs.addAll(child.calculateJobs(agent, itemPath, recurse));
-                    childActive |= child.active;
+                    childActive |= child.getActive();
                 }
             }
         }
@@ -511,7 +518,7 @@ public class CompositeActivity extends Activity {
         for (GraphableVertex childV : getChildren()) {
             if (childV instanceof CompositeActivity) {
                 CompositeActivity ca = (CompositeActivity) childV;
-                if (ca.active) {
+                if (ca.getActive()) {
                     ca.request(agentPath, itemPath, abortId, "", "", new byte[0], transactionKey);
                     ca.setActive(false);
                 }
@@ -590,7 +597,7 @@ public class CompositeActivity extends Activity {
         for (Vertex v : GraphTraversal.getTraversal(getChildrenGraphModel(), fromVertex, direction, false)) {
             if (v instanceof Activity) {
                 Activity act = (Activity) v;
-                if (!act.isFinished() && act.active) nextActs.add(act);
+                if (!act.isFinished() && act.getActive()) nextActs.add(act);
             }
         }
 
@@ -88,7 +88,7 @@ public class Join extends WfVertex {
             if(v instanceof Activity) {
                 Activity act = (Activity)v;
 
-                if (!act.isFinished() && act.active) return true;
+                if (!act.isFinished() && act.getActive()) return true;
             }
         }
 
@@ -21,6 +21,13 @@
 package org.cristalise.kernel.lifecycle.instance;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.cristalise.kernel.common.AccessRightsException;
 import org.cristalise.kernel.common.CannotManageException;
@@ -64,6 +71,24 @@ public class Workflow extends CompositeActivity implements C2KLocalObject {
             new TypeNameAndConstructionInfo("Next", "Next")
     };
 
+    /**
+     * Index of the vertices found by {@link #search(String)} keyed by the searched path or id. It is filled
+     * on demand and cleared on every structural change or rename within the workflow.
+     */
+    private final Map<String, GraphableVertex> mStepIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Position of each Activity in the order the recursive calculateJobs() visits them (children first,
+     * then the CompositeActivity). Built on demand, null when the structure of the workflow has changed.
+     */
+    private Map<Activity, Integer> mActivityOrder;
+
+    /**
+     * The active Activities of the workflow. It is kept up to date by {@link Activity#setActive(boolean)}
+     * while mActivityOrder is valid.
+     */
+    private Set<Activity> mActiveActivities;
+
     /**
      * @see java.lang.Object#Object()
      */
@@ -110,6 +135,135 @@ public class Workflow extends CompositeActivity implements C2KLocalObject {
             throw new ObjectNotFoundException(stepPath + " not found");
     }
 
+    /**
+     * Uses the step index to avoid walking the tree of activities for paths that were already resolved.
+     * Vertices found by their Name property are not indexed, because that property can be changed
+     * without any notification.
+     *
+     * @see org.cristalise.kernel.graph.model.GraphableVertex#search(java.lang.String)
+     */
+    @Override
+    public GraphableVertex search(String ids) {
+        GraphableVertex vertex = mStepIndex.get(ids);
+
+        if (vertex == null) {
+            vertex = super.search(ids);
+            if (vertex != null && isNameOrIdMatch(ids, vertex)) mStepIndex.put(ids, vertex);
+        }
+        return vertex;
+    }
+
+    /**
+     * @return true if the last element of the searched path or id is the name or the id of the vertex
+     */
+    private static boolean isNameOrIdMatch(String ids, GraphableVertex vertex) {
+        String last = ids.substring(ids.lastIndexOf('/') + 1);
+        return vertex.getName().equals(last) || String.valueOf(vertex.getID()).equals(last);
+    }
+
+    /**
+     * @see org.cristalise.kernel.graph.model.GraphableVertex#childrenChanged()
+     */
+    @Override
+    protected synchronized void childrenChanged() {
+        // called from the constructor of the superclass before the index is initialised
+        if (mStepIndex != null) mStepIndex.clear();
+
+        mActivityOrder = null;
+        mActiveActivities = null;
+    }
+
+    /**
+     * Called by {@link Activity#setActive(boolean)} of any Activity in the workflow
+     */
+    synchronized void activeChanged(Activity act) {
+        if (mActivityOrder == null) return;
+
+        if (!mActivityOrder.containsKey(act)) {
+            // not indexed yet, rebuild the index next time
+            mActivityOrder = null;
+            mActiveActivities = null;
+        }
+        else if (act.getActive()) {
+            mActiveActivities.add(act);
+        }
+        else {
+            mActiveActivities.remove(act);
+        }
+    }
+
+    private void buildActivityIndex() {
+        mActivityOrder = new IdentityHashMap<>();
+        mActiveActivities = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        indexActivity(this);
+    }
+
+    private void indexActivity(Activity act) {
+        if (act instanceof CompositeActivity) {
+            GraphableVertex[] children = act.getChildren();
+
+            if (children != null) for (GraphableVertex child : children) {
+                if (child instanceof Activity) indexActivity((Activity) child);
+            }
+        }
+
+        mActivityOrder.put(act, mActivityOrder.size());
+        if (act.getActive()) mActiveActivities.add(act);
+    }
+
+    /**
+     * Returns the active Activities of the given CompositeActivity and its descendants including itself,
+     * in the order of the recursive traversal.
+     */
+    private synchronized List<Activity> getActiveActivities(CompositeActivity root) {
+        if (mActivityOrder == null) buildActivityIndex();
+
+        List<Activity> acts = new ArrayList<>();
+
+        for (Activity act : mActiveActivities) {
+            for (GraphableVertex v = act; v != null; v = v.getParent()) {
+                if (v == root) {
+                    acts.add(act);
+                    break;
+                }
+            }
+        }
+
+        acts.sort(Comparator.comparingInt(mActivityOrder::get));
+        return acts;
+    }
+
+    /**
+     * Calculates the same list of Jobs as the recursive CompositeActivity.calculateJobs(), but only the active
+     * Activities are visited, as inactive ones have no Jobs. A CompositeActivity has its own Jobs only if none
+     * of its direct children is active.
+     *
+     * @param root the CompositeActivity to calculate the Jobs for
+     * @param agent the Agent to calculate the Jobs for
+     * @param itemPath the Item of this Workflow
+     * @return the list of Jobs
+     */
+    ArrayList<Job> calculateActiveJobs(CompositeActivity root, AgentPath agent, ItemPath itemPath)
+            throws ObjectNotFoundException, InvalidDataException
+    {
+        ArrayList<Job> jobs = new ArrayList<Job>();
+
+        for (Activity act : getActiveActivities(root)) {
+            if (act instanceof CompositeActivity && hasActiveChild((CompositeActivity) act)) continue;
+
+            jobs.addAll(act.calculateJobsBase(agent, itemPath, false));
+        }
+        return jobs;
+    }
+
+    private static boolean hasActiveChild(CompositeActivity ca) {
+        for (GraphableVertex child : ca.getChildren()) {
+            if (child instanceof Activity && ((Activity) child).getActive()) return true;
+        }
+        return false;
+    }
+
     /**
      * @see org.cristalise.kernel.graph.model.GraphableVertex#getPath()
      */
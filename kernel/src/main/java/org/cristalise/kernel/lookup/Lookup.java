@@ -23,6 +23,7 @@ package org.cristalise.kernel.lookup;
 import static org.cristalise.kernel.lookup.Lookup.SearchConstraints.WILDCARD_MATCH;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -279,6 +280,36 @@ public interface Lookup {
      */
     public PagedResult search(Path start, List<Property> props, int offset, int limit, TransactionKey transactionKey);
 
+    /**
+     * Search for Items in the specified path with the given property list using keyset pagination, i.e. the page
+     * starts after the given Path instead of skipping a number of records. The result is ordered by the path, so
+     * the next page can be retrieved by passing the last Path of the actual page. The default implementation
+     * filters the complete result of {@link #search(Path, List, int, int, TransactionKey)}, implementations
+     * backed by a database should override it.
+     *
+     * @param start Search root
+     * @param props list of Properties
+     * @param after the last Path of the previous page, use null to retrieve the first page
+     * @param limit the max number of records to be returned, use 0 to retrieve all records
+     * @param transactionKey identifier of the active transaction
+     * @return PagedResult of matching Paths, maxRows is -1 if the implementation did not count the records
+     */
+    public default PagedResult search(Path start, List<Property> props, Path after, int limit, TransactionKey transactionKey) {
+        List<Path> all = new ArrayList<>(search(start, props, 0, 0, transactionKey).rows);
+        all.sort(Comparator.comparing(Path::getStringPath));
+
+        List<Path> rows = new ArrayList<>();
+
+        for (Path p : all) {
+            if (after != null && p.getStringPath().compareTo(after.getStringPath()) <= 0) continue;
+
+            rows.add(p);
+            if (limit > 0 && rows.size() == limit) break;
+        }
+
+        return new PagedResult(all.size(), rows);
+    }
+
     /**
      * Search for Items of a particular type, based on its PropertyDescription outcome
      *
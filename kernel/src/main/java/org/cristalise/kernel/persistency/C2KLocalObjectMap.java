@@ -29,14 +29,13 @@ import static org.cristalise.kernel.persistency.ClusterType.OUTCOME;
 import static org.cristalise.kernel.persistency.ClusterType.PROPERTY;
 import static org.cristalise.kernel.persistency.ClusterType.VIEWPOINT;
 
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.cristalise.kernel.common.ObjectNotFoundException;
@@ -95,6 +94,33 @@ public class C2KLocalObjectMap<V extends C2KLocalObject> implements Map<String,
         return clusterType + (path.length() > 0 ? "/" : "") + path;
     }
 
+    private String getKey(C2KLocalObject obj) {
+        return StringUtils.removeStart(obj.getClusterPath(), clusterType + "/");
+    }
+
+    /**
+     * Reads all objects of the cluster with a single call of the storage if it is supported
+     * 
+     * @return the objects of the cluster or null if the storage does not support bulk read
+     */
+    @SuppressWarnings("unchecked")
+    private List<V> loadObjects() {
+        try {
+            List<C2KLocalObject> objects = storage.getClusterObjects(itemPath, clusterType.getName(), transactionKey);
+
+            if (objects == null) return null;
+
+            List<V> values = new ArrayList<>();
+            for (C2KLocalObject obj : objects) values.add((V)obj);
+
+            return values;
+        }
+        catch (PersistencyException e) {
+            log.error("loadObjects() - {}/{}", itemPath, clusterType, e);
+            throw new IllegalArgumentException(e);
+        }
+    }
+
     protected Set<String> loadKeys(String path) throws PersistencyException {
         Set<String> keys = new HashSet<>();
         String fullKey = getFullKey(path);
@@ -211,17 +237,26 @@ public class C2KLocalObjectMap<V extends C2KLocalObject> implements Map<String,
 
     @Override
     public Set<Entry<String, V>> entrySet() {
-        Set<Entry<String, V>> entries = new TreeSet<>();
-        for (String key: keySet()) {
-            entries.add(new AbstractMap.SimpleImmutableEntry<String, V>(key, get(key)));
+        Map<String, V> entries = new TreeMap<>();
+        List<V> values = loadObjects();
+
+        if (values != null) {
+            for (V value: values) entries.put(getKey(value), value);
+        }
+        else {
+            for (String key: keySet()) entries.put(key, get(key));
         }
-        return entries;
+        return entries.entrySet();
     }
 
     @Override
     public Collection<V> values() {
-        List<V> values = new ArrayList<>();
-        for (String key: keySet()) values.add(get(key));
+        List<V> values = loadObjects();
+
+        if (values == null) {
+            values = new ArrayList<>();
+            for (String key: keySet()) values.add(get(key));
+        }
         return values;
     }
     
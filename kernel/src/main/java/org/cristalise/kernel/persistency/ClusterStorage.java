@@ -20,7 +20,9 @@
  */
 package org.cristalise.kernel.persistency;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.entity.C2KLocalObject;
@@ -197,6 +199,31 @@ public abstract class ClusterStorage {
      */
     public abstract String executeQuery(Query query, TransactionKey transactionKey) throws PersistencyException;
 
+    /**
+     * Checks if the storage can stream the result of the query written in the given language. 
+     * The default implementation returns false.
+     * 
+     * @param language the language of the query
+     * @return true if {@link #executeQuery(Query, OutputStream, boolean, TransactionKey)} is supported
+     */
+    public boolean checkQueryStreamingSupport(String language) {
+        return false;
+    }
+
+    /**
+     * Executes the query and writes the result directly to the OutputStream, so large results are not
+     * kept in memory. The default implementation throws PersistencyException.
+     * 
+     * @param query the query to be executed
+     * @param out the stream to write the result to, it is not closed
+     * @param jsonFlag write the result as JSON instead of XML
+     * @param transactionKey the key of the transaction, can be null
+     * @throws PersistencyException When the query or the write failed
+     */
+    public void executeQuery(Query query, OutputStream out, boolean jsonFlag, TransactionKey transactionKey) throws PersistencyException {
+        throw new PersistencyException("Streaming query result is not supported by storage:" + getName());
+    }
+
     /**
      * History and JobList based on a integer id that is incremented each tome a new Event or Job is stored
      * 
@@ -208,6 +235,47 @@ public abstract class ClusterStorage {
      */
     public abstract int getLastIntegerId(ItemPath itemPath, String path, TransactionKey transactionKey) throws PersistencyException;
 
+    /**
+     * Fetches the objects with integer ids between from (inclusive) and to (exclusive), e.g. Events of the History.
+     * The default implementation calls {@link #get(ItemPath, String, TransactionKey)} for each id. Implementations
+     * should override it to retrieve the range in a single query.
+     * 
+     * @param itemPath The ItemPath (UUID) of the containing Item
+     * @param path the cluster patch, e.g. 'AuditTrail'
+     * @param from the first id of the range (inclusive)
+     * @param to the last id of the range (exclusive)
+     * @param transactionKey the key of the transaction, can be null
+     * @return the list of objects ordered by their id, ids without object are skipped
+     * @throws PersistencyException When storage fails
+     */
+    public List<C2KLocalObject> getIntegerIdRange(ItemPath itemPath, String path, int from, int to, TransactionKey transactionKey) 
+            throws PersistencyException
+    {
+        List<C2KLocalObject> result = new ArrayList<>();
+
+        for (int id = from; id < to; id++) {
+            C2KLocalObject obj = get(itemPath, path + "/" + id, transactionKey);
+            if (obj != null) result.add(obj);
+        }
+        return result;
+    }
+
+    /**
+     * Fetches all objects of a cluster, or of the subtree of a cluster, in a single call. The default implementation
+     * returns null, which means the storage does not support bulk reads and the caller shall read the objects one by one.
+     * 
+     * @param itemPath The ItemPath (UUID) of the containing Item
+     * @param path the cluster path, e.g. 'Job' or 'ViewPoint/Schema'
+     * @param transactionKey the key of the transaction, can be null
+     * @return the list of objects stored under the path, or null if bulk read is not supported for the path
+     * @throws PersistencyException When storage fails
+     */
+    public List<C2KLocalObject> getClusterObjects(ItemPath itemPath, String path, TransactionKey transactionKey) 
+            throws PersistencyException
+    {
+        return null;
+    }
+
     /**
      * Fetches a CRISTAL local object from storage by path
      * 
@@ -31,11 +31,13 @@ import static org.cristalise.kernel.persistency.ClusterType.PATH;
 import static org.cristalise.kernel.persistency.ClusterType.PROPERTY;
 import static org.cristalise.kernel.persistency.ClusterType.VIEWPOINT;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,25 +50,33 @@ import org.apache.commons.lang3.StringUtils;
 import org.cristalise.kernel.SystemProperties;
 import org.cristalise.kernel.collection.Collection;
 import org.cristalise.kernel.collection.CollectionMember;
+import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.common.ObjectNotFoundException;
 import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.entity.C2KLocalObject;
 import org.cristalise.kernel.entity.Job;
 import org.cristalise.kernel.entity.proxy.ProxyMessage;
+import org.cristalise.kernel.events.Event;
 import org.cristalise.kernel.events.History;
 import org.cristalise.kernel.lifecycle.instance.Workflow;
 import org.cristalise.kernel.lookup.ItemPath;
 import org.cristalise.kernel.lookup.Path;
+import org.cristalise.kernel.persistency.codec.ClusterCodec;
+import org.cristalise.kernel.persistency.codec.ClusterCodecs;
 import org.cristalise.kernel.persistency.outcome.Outcome;
 import org.cristalise.kernel.persistency.outcome.OutcomeAttachment;
 import org.cristalise.kernel.persistency.outcome.Viewpoint;
 import org.cristalise.kernel.process.Gateway;
 import org.cristalise.kernel.property.Property;
 import org.cristalise.kernel.querying.Query;
+import org.w3c.dom.Document;
 
 import com.google.common.base.Predicates;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Sets;
 
 import lombok.extern.slf4j.Slf4j;
@@ -89,6 +99,12 @@ public class ClusterStorageManager {
      * Stores individual C2KLocalObjects in the GUAVA cache, where the key = UUID/clusterPath
      */
     Cache<String, C2KLocalObject> cache;
+    /**
+     * Secondary index of the cache, where the key = UUID and the value = the keys of the cached entries of the Item.
+     * It makes the invalidation of an Item or a cluster proportional to the number of entries of that Item
+     * instead of the size of the cache. It is updated by the removal listener of the cache.
+     */
+    private final Map<String, Set<String>> cacheIndex = new ConcurrentHashMap<>();
     /**
      * For each transactionKey stores proxy messages to be sent during commit
      */
@@ -96,11 +112,64 @@ public class ClusterStorageManager {
     /**
      * Stores the transactionKey for each Item updated during the transaction. It prevents concurrent writing to the same Item.
      */
-    private Map<ItemPath, TransactionKey> itemLocks = new ConcurrentHashMap<ItemPath, TransactionKey>();
+    private final ItemLockManager lockManager = new ItemLockManager(SystemProperties.ClusterStorage_lockTimeout.getInteger());
+    /**
+     * High-water mark of the Event ids of each Item, where the key = UUID. It is bumped each time a new Event is 
+     * committed, including the Events of other servers notified by ProxyMessages.
+     */
+    private final Map<String, Integer> lastEventIds = new ConcurrentHashMap<>();
     /**
-     * Catalog of the locked Items. It is required during commit/abort.
+     * The last Event ids of the Items updated by each transaction, which are published in lastEventIds during commit
      */
-    private Map<TransactionKey, Set<ItemPath>> lockCatalog = new ConcurrentHashMap<TransactionKey, Set<ItemPath>>();
+    private final Map<TransactionKey, Map<String, Integer>> pendingLastEventIds = new ConcurrentHashMap<>();
+    /**
+     * Overlay of each transaction, created by begin(). The objects written and the paths removed by the transaction
+     * are kept here instead of the shared cache, so they are only visible for the reads of the same transaction.
+     * The objects read by the transaction are private copies, so changing them does not alter the shared cache.
+     * The written objects are published into the shared cache during commit and the overlay is dropped during abort.
+     */
+    private final Map<TransactionKey, TransactionCache> transactionCaches = new ConcurrentHashMap<>();
+
+    /**
+     * The objects put, loaded and the paths removed by a transaction, where the key = UUID/clusterPath
+     */
+    private static class TransactionCache {
+        /**
+         * Objects written by the transaction, which are published during commit
+         */
+        final Map<String, C2KLocalObject> entries = new ConcurrentHashMap<>();
+        /**
+         * Objects read by the transaction, which are not published, because other transactions could have 
+         * committed a newer version since they were read
+         */
+        final Map<String, C2KLocalObject> loaded = new ConcurrentHashMap<>();
+        /**
+         * Removed paths, which also apply to the entries below them. An entry put after the removal takes precedence.
+         */
+        final Set<String> removedPaths = ConcurrentHashMap.newKeySet();
+
+        C2KLocalObject get(String fullPath) {
+            C2KLocalObject obj = entries.get(fullPath);
+            return obj != null ? obj : loaded.get(fullPath);
+        }
+
+        void remove(String fullPath) {
+            entries.keySet().removeIf(key -> isBelow(key, fullPath));
+            loaded.keySet().removeIf(key -> isBelow(key, fullPath));
+            removedPaths.add(fullPath);
+        }
+
+        boolean isRemoved(String fullPath) {
+            for (String removed : removedPaths) {
+                if (isBelow(fullPath, removed)) return true;
+            }
+            return false;
+        }
+
+        static boolean isBelow(String key, String path) {
+            return key.equals(path) || key.startsWith(path + "/");
+        }
+    }
 
     /**
      * Initializes all ClusterStorage handlers listed by class name in the property "ClusterStorages"
@@ -149,6 +218,7 @@ public class ClusterStorageManager {
 
         cache = CacheBuilder
                 .from(SystemProperties.ClusterStorage_cacheSpec.getString())
+                .removalListener((RemovalListener<String, C2KLocalObject>) this::unindexCacheEntry)
                 .build();
     }
 
@@ -270,6 +340,46 @@ public class ClusterStorageManager {
         else                throw new PersistencyException("No storage was found supporting language:"+query.getLanguage()+" query:"+query.getName());
     }
 
+    /**
+     * Executes the Query and writes the result to the OutputStream. If the storage supporting the language of
+     * the Query cannot stream the result, the complete XML result is written, which only works for XML.
+     *
+     * @param query the Query to be executed
+     * @param out the stream to write the result to, it is not closed
+     * @param jsonFlag write the result as JSON instead of XML
+     * @param transactionKey the key of the transaction, can be null
+     * @throws PersistencyException When the query or the write failed
+     */
+    public void executeQuery(Query query, OutputStream out, boolean jsonFlag, TransactionKey transactionKey) throws PersistencyException {
+        ClusterStorage reader = findStorageForQuery(query.getLanguage());
+
+        if (reader == null) {
+            throw new PersistencyException("No storage was found supporting language:"+query.getLanguage()+" query:"+query.getName());
+        }
+        else if (reader.checkQueryStreamingSupport(query.getLanguage())) {
+            reader.executeQuery(query, out, jsonFlag, transactionKey);
+        }
+        else if (!jsonFlag) {
+            try {
+                out.write(reader.executeQuery(query, transactionKey).getBytes(StandardCharsets.UTF_8));
+            }
+            catch (IOException e) {
+                throw new PersistencyException(e);
+            }
+        }
+        else {
+            throw new PersistencyException("Storage "+reader.getName()+" cannot stream JSON result of query:"+query.getName());
+        }
+    }
+
+    /**
+     * Checks if the result of the Query can be written as JSON by {@link #executeQuery(Query, OutputStream, boolean, TransactionKey)}
+     */
+    public boolean checkQueryStreamingSupport(Query query) {
+        ClusterStorage reader = findStorageForQuery(query.getLanguage());
+        return reader != null && reader.checkQueryStreamingSupport(query.getLanguage());
+    }
+
     public String[] getClusterContents(ItemPath itemPath, ClusterType type) throws PersistencyException {
         return getClusterContents(itemPath, type, null);
     }
@@ -436,13 +546,44 @@ public class ClusterStorageManager {
             }
         }
 
+        String fullPath = getFullPath(itemPath, path);
+
+        TransactionCache txCache = getTransactionCache(transactionKey);
+
+        // a transaction reads its own overlay, and loads a private copy of the committed object into it
+        if (txCache != null) {
+            C2KLocalObject obj = txCache.get(fullPath);
+
+            if (obj == null) {
+                if (txCache.isRemoved(fullPath)) {
+                    obj = retrive(itemPath, correctPath, transactionKey);
+                }
+                else {
+                    obj = copyForTransaction(getShared(itemPath, correctPath, fullPath, transactionKey), correctPath);
+                }
+                txCache.loaded.put(fullPath, obj);
+            }
+            return obj;
+        }
+
+        return getShared(itemPath, correctPath, fullPath, transactionKey);
+    }
+
+    /**
+     * Returns the object from the shared cache, and loads it from the storages if it is not cached
+     */
+    private C2KLocalObject getShared(ItemPath itemPath, String correctPath, String fullPath, TransactionKey transactionKey)
+            throws PersistencyException, ObjectNotFoundException
+    {
         try {
-            return cache.get(getFullPath(itemPath, path), new Callable<C2KLocalObject>() {
+            C2KLocalObject obj = cache.get(fullPath, new Callable<C2KLocalObject>() {
                 @Override
                 public C2KLocalObject call() throws PersistencyException, ObjectNotFoundException  {
                     return retrive(itemPath, correctPath, transactionKey);
                 }
             });
+            indexCacheEntry(fullPath);
+            return obj;
         }
         catch (ExecutionException e) {
             Throwable cause = e.getCause();
@@ -454,6 +595,26 @@ public class ClusterStorageManager {
         }
     }
 
+    /**
+     * Copies the object of the shared cache, so the transaction can change it without affecting the cache.
+     * Outcomes are copied by cloning their DOM, other objects are copied with the ClusterCodec of their ClusterType.
+     */
+    private C2KLocalObject copyForTransaction(C2KLocalObject obj, String path) throws PersistencyException {
+        try {
+            if (obj instanceof Outcome) {
+                return new Outcome(path, (Document) ((Outcome) obj).getDOM().cloneNode(true));
+            }
+            else {
+                ClusterCodec codec = ClusterCodecs.getCodec(ClusterType.getFromPath(path));
+                return (C2KLocalObject) codec.decode(codec.encode(obj));
+            }
+        }
+        catch (InvalidDataException e) {
+            log.error("copyForTransaction() - could not copy {}", path, e);
+            throw new PersistencyException("Could not copy " + path + ": " + e.getMessage());
+        }
+    }
+
     /**
      * 
      * @param itemPath
@@ -465,7 +626,148 @@ public class ClusterStorageManager {
     }
 
     /**
-     * Retrieves the last id of the History
+     * Adds the key of the new cache entry to the index. It must be called after the entry was added to the cache.
+     */
+    private void indexCacheEntry(String fullPath) {
+        String uuid = StringUtils.substringBefore(fullPath, "/");
+
+        cacheIndex.compute(uuid, (k, keys) -> {
+            if (keys == null) keys = ConcurrentHashMap.newKeySet();
+            keys.add(fullPath);
+            return keys;
+        });
+    }
+
+    /**
+     * Removal listener of the cache to keep the index in sync
+     */
+    private void unindexCacheEntry(RemovalNotification<String, C2KLocalObject> notification) {
+        if (notification.getCause() == RemovalCause.REPLACED) return;
+
+        String fullPath = notification.getKey();
+        String uuid = StringUtils.substringBefore(fullPath, "/");
+
+        cacheIndex.computeIfPresent(uuid, (k, keys) -> {
+            keys.remove(fullPath);
+            // the entry could have been added again concurrently
+            if (cache.asMap().containsKey(fullPath)) keys.add(fullPath);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Returns the keys of the cached entries of the Item starting with the given prefix
+     * 
+     * @param itemPath the Item
+     * @param prefix the prefix of the keys, or null to return all keys of the Item
+     * @return the list of keys
+     */
+    private List<String> getCachedKeys(ItemPath itemPath, String prefix) {
+        return getCachedKeys(itemPath.getUUID().toString(), prefix);
+    }
+
+    private List<String> getCachedKeys(String uuid, String prefix) {
+        Set<String> keys = cacheIndex.get(uuid);
+
+        if (keys == null) return new ArrayList<>();
+
+        List<String> result = new ArrayList<>();
+        for (String key : keys) {
+            if (prefix == null || key.startsWith(prefix)) result.add(key);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the write overlay of the transaction
+     * 
+     * @param transactionKey the key of the transaction, can be null
+     * @return the overlay or null if there is no transaction
+     */
+    private TransactionCache getTransactionCache(TransactionKey transactionKey) {
+        if (transactionKey == null) return null;
+        else                        return transactionCaches.get(transactionKey);
+    }
+
+    /**
+     * Returns the object from the overlay of the transaction or from the shared cache. It is only used to read
+     * Events, which are never changed, so the object of the shared cache is not copied.
+     */
+    private C2KLocalObject getIfCached(String fullPath, TransactionKey transactionKey) {
+        TransactionCache txCache = getTransactionCache(transactionKey);
+
+        if (txCache != null) {
+            C2KLocalObject obj = txCache.get(fullPath);
+            if (obj != null || txCache.isRemoved(fullPath)) return obj;
+        }
+        return cache.getIfPresent(fullPath);
+    }
+
+    /**
+     * Adds the object read from the storages to the overlay of the transaction if it exists, otherwise to the shared cache
+     */
+    private void putCached(String fullPath, C2KLocalObject obj, TransactionKey transactionKey) {
+        TransactionCache txCache = getTransactionCache(transactionKey);
+
+        if (txCache != null) {
+            txCache.loaded.put(fullPath, obj);
+        }
+        else {
+            cache.put(fullPath, obj);
+            indexCacheEntry(fullPath);
+        }
+    }
+
+    /**
+     * Keeps the removal in the overlay of the transaction or clears the shared cache when there is no transaction
+     */
+    private void removeCached(ItemPath itemPath, String fullPath, TransactionKey transactionKey) {
+        fullPath = StringUtils.removeEnd(fullPath, "/");
+
+        if (transactionKey != null) {
+            transactionCaches.computeIfAbsent(transactionKey, k -> new TransactionCache()).remove(fullPath);
+        }
+        else {
+            clearCachedPath(itemPath.getUUID().toString(), fullPath);
+        }
+    }
+
+    /**
+     * Clears the shared cache entry of the fullPath and the entries below it. The fullPath can be the UUID only.
+     */
+    private void clearCachedPath(String uuid, String fullPath) {
+        if (fullPath.equals(uuid) || fullPath.equals(uuid + "/" + HISTORY.getName())) lastEventIds.remove(uuid);
+
+        List<String> keys = getCachedKeys(uuid, fullPath + "/");
+        if (!fullPath.equals(uuid)) keys.add(fullPath);
+
+        clearCache(keys);
+    }
+
+    /**
+     * Publishes the overlay of the committed transaction into the shared cache
+     */
+    private void publishTransactionCache(TransactionKey transactionKey) {
+        TransactionCache txCache = transactionCaches.remove(transactionKey);
+
+        if (txCache == null) return;
+
+        log.trace("publishTransactionCache() - transactionKey:{} removed:{} entries:{}",
+                transactionKey, txCache.removedPaths.size(), txCache.entries.size());
+
+        for (String fullPath : txCache.removedPaths) clearCachedPath(StringUtils.substringBefore(fullPath, "/"), fullPath);
+
+        txCache.entries.forEach((fullPath, obj) -> {
+            cache.put(fullPath, obj);
+            indexCacheEntry(fullPath);
+        });
+    }
+
+    /**
+     * Retrieves the last id of the History from the cache if available. Only use it to read the History,
+     * because the cached value of other nodes' Items might be behind the committed data.
+     * Use {@link #getLastStoredIntegerId(ItemPath, String, TransactionKey)} to assign the id of a new Event.
+     *
      * @param itemPath current Item
      * @param path the cluster path. The leading slash is removed if exists
      * @param transactionKey
@@ -475,13 +777,169 @@ public class ClusterStorageManager {
     public int getLastIntegerId(ItemPath itemPath, String path, TransactionKey transactionKey) throws PersistencyException {
         if (path.startsWith("/") && path.length() > 1) path = path.substring(1);
 
+        String uuid = itemPath.getUUID().toString();
+
+        if (transactionKey != null) {
+            Map<String, Integer> pending = pendingLastEventIds.get(transactionKey);
+            if (pending != null && pending.containsKey(uuid)) return pending.get(uuid);
+        }
+
+        Integer lastId = lastEventIds.get(uuid);
+        if (lastId != null) return lastId;
+
         ArrayList<ClusterStorage> readers = findStorages(HISTORY, false);
         for(ClusterStorage storage: readers) {
-            return storage.getLastIntegerId(itemPath, path, transactionKey);
+            lastId = storage.getLastIntegerId(itemPath, path, transactionKey);
+            // Events of the transaction are in pendingLastEventIds, so the value read from the storage is committed
+            if (lastId >= 0) lastEventIds.merge(uuid, lastId, Math::max);
+            return lastId;
         }
         return -1;
     }
 
+    /**
+     * Retrieves the last id of the History from the storage, bypassing the cache of the committed ids.
+     * It is used when the id of a new Event is assigned, because the storage read within the transaction
+     * also sees the Events committed by other nodes, so their id is not reused.
+     *
+     * @param itemPath current Item
+     * @param path the cluster path. The leading slash is removed if exists
+     * @param transactionKey the key of the transaction, can be null
+     * @return the ID used starting with 0 or -1 if the cluster empty
+     * @throws PersistencyException When storage fails
+     */
+    public int getLastStoredIntegerId(ItemPath itemPath, String path, TransactionKey transactionKey) throws PersistencyException {
+        if (path.startsWith("/") && path.length() > 1) path = path.substring(1);
+
+        String uuid = itemPath.getUUID().toString();
+        int lastId = -1;
+
+        ArrayList<ClusterStorage> readers = findStorages(HISTORY, false);
+        for(ClusterStorage storage: readers) {
+            lastId = storage.getLastIntegerId(itemPath, path, transactionKey);
+            break;
+        }
+
+        if (transactionKey != null) {
+            Map<String, Integer> pending = pendingLastEventIds.get(transactionKey);
+            if (pending != null && pending.containsKey(uuid)) lastId = Math.max(lastId, pending.get(uuid));
+        }
+
+        return lastId;
+    }
+
+    /**
+     * Retrieves the objects with integer ids between from (inclusive) and to (exclusive), e.g. Events of the History.
+     * Objects which are not in the cache are read with a single call of the ClusterStorage and they are added to the cache.
+     * 
+     * @param itemPath current Item
+     * @param path the cluster path, e.g. HISTORY
+     * @param from the first id of the range (inclusive)
+     * @param to the last id of the range (exclusive)
+     * @param transactionKey the key of the transaction, can be null
+     * @return the list of objects ordered by their id
+     * @throws PersistencyException When storage fails
+     */
+    public List<C2KLocalObject> getIntegerIdRange(ItemPath itemPath, String path, int from, int to, TransactionKey transactionKey) 
+            throws PersistencyException
+    {
+        if (path.startsWith("/") && path.length() > 1) path = path.substring(1);
+
+        C2KLocalObject[] objects = new C2KLocalObject[Math.max(0, to - from)];
+        int firstMissing = -1, lastMissing = -1;
+
+        for (int id = from; id < to; id++) {
+            objects[id - from] = getIfCached(getFullPath(itemPath, path + "/" + id), transactionKey);
+
+            if (objects[id - from] == null) {
+                if (firstMissing == -1) firstMissing = id;
+                lastMissing = id;
+            }
+        }
+
+        if (firstMissing != -1) {
+            log.debug("getIntegerIdRange() - {}/{} reading ids [{},{}]", itemPath, path, firstMissing, lastMissing);
+
+            ArrayList<ClusterStorage> readers = findStorages(ClusterStorage.getClusterType(path), false);
+            for (ClusterStorage thisReader : readers) {
+                List<C2KLocalObject> fetched = thisReader.getIntegerIdRange(itemPath, path, firstMissing, lastMissing + 1, transactionKey);
+
+                for (C2KLocalObject obj : fetched) {
+                    int id = Integer.parseInt(obj.getName());
+
+                    if (id >= from && id < to && objects[id - from] == null) {
+                        objects[id - from] = obj;
+
+                        putCached(getFullPath(itemPath, ClusterStorage.getPath(obj)), obj, transactionKey);
+                    }
+                }
+                if (!fetched.isEmpty()) break;
+            }
+        }
+
+        List<C2KLocalObject> result = new ArrayList<>();
+        for (C2KLocalObject obj : objects) if (obj != null) result.add(obj);
+
+        return result;
+    }
+
+    /**
+     * Retrieves all objects stored under the cluster path with a single call of the ClusterStorage, e.g. all Jobs
+     * of the Item. The objects are added to the cache.
+     * 
+     * @param itemPath current Item
+     * @param path the cluster path, e.g. JOB or VIEWPOINT/Schema
+     * @param transactionKey the key of the transaction, can be null
+     * @return the list of objects or null if none of the ClusterStorages supports bulk read of the path
+     * @throws PersistencyException When storage fails
+     */
+    public List<C2KLocalObject> getClusterObjects(ItemPath itemPath, String path, TransactionKey transactionKey) 
+            throws PersistencyException
+    {
+        if (path.startsWith("/") && path.length() > 1) path = path.substring(1);
+
+        ArrayList<ClusterStorage> readers = findStorages(ClusterStorage.getClusterType(path), false);
+        for (ClusterStorage thisReader : readers) {
+            List<C2KLocalObject> objects = thisReader.getClusterObjects(itemPath, path, transactionKey);
+
+            if (objects != null) {
+                log.debug("getClusterObjects() - {} read #{} objects of {}/{}", thisReader, objects.size(), itemPath, path);
+
+                for (C2KLocalObject obj : objects) {
+                    putCached(getFullPath(itemPath, ClusterStorage.getPath(obj)), obj, transactionKey);
+                }
+                return objects;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bumps the known high-water mark of the Event ids when the key (UUID/HISTORY/id) points to a new Event,
+     * e.g. stored by another server. Items without known mark are not added, they are read on demand.
+     */
+    private void updateLastEventId(String fullPath) {
+        String[] elements = StringUtils.split(fullPath, '/');
+
+        if (elements.length == 3 && HISTORY.getName().equals(elements[1]) && StringUtils.isNumeric(elements[2])) {
+            lastEventIds.computeIfPresent(elements[0], (uuid, lastId) -> Math.max(lastId, Integer.parseInt(elements[2])));
+        }
+    }
+
+    /**
+     * Updates the high-water mark of the Event ids of the Item
+     */
+    private void updateLastEventId(ItemPath itemPath, int id, TransactionKey transactionKey) {
+        String uuid = itemPath.getUUID().toString();
+
+        if (transactionKey == null) {
+            lastEventIds.merge(uuid, id, Math::max);
+        }
+        else {
+            pendingLastEventIds.computeIfAbsent(transactionKey, k -> new ConcurrentHashMap<>()).merge(uuid, id, Math::max);
+        }
+    }
+
     /**
      * Creates or overwrites a cluster in all writers. Used when committing transactions.
      */
@@ -503,7 +961,15 @@ public class ClusterStorageManager {
             }
         }
 
-        cache.put(getFullPath(itemPath, path), obj);
+        if (transactionKey != null) {
+            transactionCaches.computeIfAbsent(transactionKey, k -> new TransactionCache()).entries.put(fullPath, obj);
+        }
+        else {
+            cache.put(fullPath, obj);
+            indexCacheEntry(fullPath);
+        }
+
+        if (obj instanceof Event) updateLastEventId(itemPath, ((Event)obj).getID(), transactionKey);
 
         ProxyMessage message = new ProxyMessage(itemPath, path, ADD);
 
@@ -535,7 +1001,7 @@ public class ClusterStorageManager {
             }
         }
 
-        clearCache(itemPath, path);
+        removeCached(itemPath, getFullPath(itemPath, path), transactionKey);
 
         ProxyMessage message = new ProxyMessage(itemPath, path, DELETE);
 
@@ -567,7 +1033,7 @@ public class ClusterStorageManager {
             }
         }
 
-        clearCache(itemPath, cluster);
+        removeCached(itemPath, getFullPath(itemPath, cluster.getName()), transactionKey);
 
         //do NOT send ProxyMessage notification about deleted Jobs
         if (cluster != JOB) {
@@ -602,7 +1068,7 @@ public class ClusterStorageManager {
             }
         }
 
-        clearCache(itemPath);
+        removeCached(itemPath, itemPath.getUUID().toString(), transactionKey);
 
         ProxyMessage message = new ProxyMessage(itemPath, itemPath.getItemName(), DELETE);
 
@@ -645,7 +1111,9 @@ public class ClusterStorageManager {
             return clearCache(itemPath);
         }
         else {
-            return clearCache( "^"+itemPath.getName()+"/"+cluster.getName() );
+            if (cluster == HISTORY) lastEventIds.remove(itemPath.getUUID().toString());
+
+            return clearCache(getCachedKeys(itemPath, getFullPath(itemPath, cluster.getName())));
         }
     }
 
@@ -659,12 +1127,16 @@ public class ClusterStorageManager {
             return 0;
         }
 
-        return clearCache("^"+itemPath.getName());
+        lastEventIds.remove(itemPath.getUUID().toString());
+
+        return clearCache(getCachedKeys(itemPath, null));
     }
 
     /**
+     * Clears the entries with keys containing the pattern. It checks all keys of the cache, so use the
+     * methods with ItemPath whenever possible.
      * 
-     * @param pattern
+     * @param pattern regex applied on the keys (UUID/clusterPath)
      */
     public long clearCache(String pattern) {
         log.debug( "clearCache({}) - pattern:{}", pattern);
@@ -674,7 +1146,7 @@ public class ClusterStorageManager {
     }
 
     /**
-     * Clear the cache of the given cluster content of the given Item.
+     * Clear the cache of the given cluster content of the given Item, including the entries below the given path.
      * 
      * @param itemPath the item for which the cache should be cleared. Cannot be null.
      * @param path the identifier of the cluster content to be cleared. Cannot not be nul.
@@ -687,9 +1159,11 @@ public class ClusterStorageManager {
 
         String fullPath = getFullPath(itemPath, path);
         log.trace( "clearCache() - removing {}", fullPath);
-        cache.invalidate(fullPath);
 
-        return 1;
+        List<String> keys = getCachedKeys(itemPath, fullPath.endsWith("/") ? fullPath : fullPath + "/");
+        keys.add(fullPath);
+
+        return clearCache(keys);
     }
 
     /**
@@ -699,6 +1173,8 @@ public class ClusterStorageManager {
     public long clearCache(List<String> fullPathList) {
         log.trace( "clearCache() - removing #{} entries", fullPathList.size());
         cache.invalidateAll(fullPathList);
+
+        for (String fullPath : fullPathList) updateLastEventId(fullPath);
         
         return fullPathList.size();
     }
@@ -710,6 +1186,7 @@ public class ClusterStorageManager {
         long size= cache.size();
         log.trace( "clearCache() - clearing entire cache #{} enries.", size);
         cache.invalidateAll();
+        lastEventIds.clear();
 
         return size;
     }
@@ -721,12 +1198,8 @@ public class ClusterStorageManager {
      */
     public void begin(TransactionKey transactionKey)  throws PersistencyException {
         if (transactionKey != null) {
-            if (lockCatalog.containsKey(transactionKey)) {
-                throw new PersistencyException("TransactionKey '"+transactionKey+"' is already in use");
-            }
-            else {
-                lockCatalog.put(transactionKey, new LinkedHashSet<ItemPath>());
-            }
+            lockManager.begin(transactionKey);
+            transactionCaches.putIfAbsent(transactionKey, new TransactionCache());
         }
 
         for (ClusterStorage thisStore: allStores.values()) {
@@ -745,15 +1218,13 @@ public class ClusterStorageManager {
         }
 
         if (transactionKey != null) {
-            if (lockCatalog.containsKey(transactionKey)) {
-                for(ItemPath ip: lockCatalog.get(transactionKey)) {
-                    itemLocks.remove(ip);
-                }
-                lockCatalog.remove(transactionKey);
-            }
-            else {
-                throw new PersistencyException("TransactionKey '"+transactionKey+"' is unknown");
-            }
+            // publish before releasing the locks, so the next transaction of the Item cannot be published earlier
+            publishTransactionCache(transactionKey);
+
+            lockManager.release(transactionKey);
+
+            Map<String, Integer> pending = pendingLastEventIds.remove(transactionKey);
+            if (pending != null) pending.forEach((uuid, id) -> lastEventIds.merge(uuid, id, Math::max));
 
             Gateway.sendProxyEvent(proxyMessagesMap.remove(transactionKey));
         }
@@ -770,15 +1241,10 @@ public class ClusterStorageManager {
         }
 
         if (transactionKey != null) {
-            if (lockCatalog.containsKey(transactionKey)) {
-                for(ItemPath ip: lockCatalog.get(transactionKey)) {
-                    itemLocks.remove(ip);
-                }
-                lockCatalog.remove(transactionKey);
-            }
-            else {
-                throw new PersistencyException("TransactionKey '"+transactionKey+"' is unknown");
-            }
+            lockManager.release(transactionKey);
+
+            pendingLastEventIds.remove(transactionKey);
+            transactionCaches.remove(transactionKey);
 
             proxyMessagesMap.remove(transactionKey);
         }
@@ -814,6 +1280,19 @@ public class ClusterStorageManager {
         }
     }
 
+    /**
+     * Sends the ProxyMessage to the subscribers. If the change was done in a transaction the message is kept
+     * and it is only sent when the transaction is committed, similar to the messages of the ClusterStorage changes.
+     * It can be used to notify changes done in the Lookup.
+     *
+     * @param message the message to be sent
+     * @param transactionKey the key of the transaction, can be null
+     */
+    public void sendProxyEvent(ProxyMessage message, TransactionKey transactionKey) {
+        if (transactionKey != null) keepMessageForLater(message, transactionKey);
+        else                        Gateway.sendProxyEvent(message);
+    }
+
     /**
      * 
      * @param message
@@ -829,36 +1308,13 @@ public class ClusterStorageManager {
     }
 
     private void lockItem(ItemPath itemPath, TransactionKey transactionKey) throws PersistencyException {
-        synchronized(itemLocks) {
-            // look to see if this object is already locked
-            if (itemLocks.containsKey(itemPath)) {
-                TransactionKey existingTransaction = itemLocks.get(itemPath);
-
-                if (transactionKey != null && existingTransaction.equals(transactionKey)) {
-                    // nothing to do
-                    lockCatalog.get(transactionKey).add(itemPath);
-                }
-                else {
-                    // the item is already locked by someone else
-                    // at this point a semaphore could be used to block the thread, but this could create deadlocks
-                    throw new PersistencyException("Access denied for '"+transactionKey+"': '"+itemPath+
-                                                   "' has been locked for writing by '"+existingTransaction+"'");
-                }
-            }
-            else { // no locks for this item
-                if (transactionKey == null) {
-                    // nothing to do, all the writer storages must be in autocommit mode
-                }
-                else {// add the lock
-                    Set<ItemPath> lockEntry = lockCatalog.get(transactionKey);
-                    if (lockEntry == null) {
-                        throw new PersistencyException("'"+itemPath+"' - No lockentry was found for transactionKey:"+transactionKey);
-                    }
-    
-                    lockEntry.add(itemPath);
-                    itemLocks.put(itemPath, transactionKey);
-                }
-            }
-        }
+        lockManager.lock(itemPath, transactionKey);
+    }
+
+    /**
+     * @return the manager of the Item locks, e.g. to read the contention metrics
+     */
+    public ItemLockManager getLockManager() {
+        return lockManager;
     }
 }
@@ -0,0 +1,284 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.persistency;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cristalise.kernel.common.PersistencyException;
+import org.cristalise.kernel.lookup.ItemPath;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps track of the Items locked for writing by each transaction. Locks are held per Item in a ConcurrentHashMap,
+ * so transactions writing different Items never contend. A transaction trying to lock an Item held by another 
+ * transaction either fails immediately (timeout is 0) or waits for the lock to be released up to the timeout. 
+ * Waiting transactions are checked for deadlocks, in which case the waiting transaction fails immediately.
+ */
+@Slf4j
+public class ItemLockManager {
+
+    /**
+     * Number of monitors used to wait for the release of locks. Items are mapped to monitors by their hashCode.
+     */
+    private static final int STRIPES = 64;
+
+    /**
+     * The transactionKey holding the lock for each Item
+     */
+    private final Map<ItemPath, TransactionKey> itemLocks = new ConcurrentHashMap<>();
+    /**
+     * Catalog of the Items locked by each transaction. It is required during commit/abort.
+     */
+    private final Map<TransactionKey, Set<ItemPath>> lockCatalog = new ConcurrentHashMap<>();
+    /**
+     * The Item each waiting transaction is waiting for. It is used for deadlock detection.
+     */
+    private final Map<TransactionKey, ItemPath> waitingFor = new ConcurrentHashMap<>();
+
+    private final Object[] stripes = new Object[STRIPES];
+
+    /**
+     * Maximum time in milliseconds to wait for a lock, 0 means no waiting
+     */
+    @Getter
+    private final long timeout;
+
+    /** Number of locks acquired */
+    private final AtomicLong lockCount = new AtomicLong();
+    /** Number of times the Item was already locked by another transaction */
+    private final AtomicLong contentionCount = new AtomicLong();
+    /** Number of lock requests failed because of timeout */
+    private final AtomicLong timeoutCount = new AtomicLong();
+    /** Number of deadlocks detected */
+    private final AtomicLong deadlockCount = new AtomicLong();
+    /** Accumulated time in nanoseconds spent waiting for locks */
+    private final AtomicLong waitTimeNanos = new AtomicLong();
+
+    /**
+     * 
+     * @param timeout the maximum time in milliseconds to wait for a lock, 0 or negative means no waiting
+     */
+    public ItemLockManager(long timeout) {
+        this.timeout = Math.max(0, timeout);
+
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+
+        log.debug("ItemLockManager() - timeout:{}ms", this.timeout);
+    }
+
+    private Object getStripe(ItemPath itemPath) {
+        return stripes[Math.floorMod(itemPath.hashCode(), STRIPES)];
+    }
+
+    /**
+     * Registers the transaction
+     * 
+     * @param transactionKey the key of the transaction
+     * @throws PersistencyException the transactionKey is already in use
+     */
+    public void begin(TransactionKey transactionKey) throws PersistencyException {
+        if (lockCatalog.putIfAbsent(transactionKey, Collections.synchronizedSet(new LinkedHashSet<>())) != null) {
+            throw new PersistencyException("TransactionKey '"+transactionKey+"' is already in use");
+        }
+    }
+
+    /**
+     * Locks the Item for the given transaction. Locking an Item already locked by the same transaction does nothing.
+     * 
+     * @param itemPath the Item to lock
+     * @param transactionKey the key of the transaction, when null the Item shall not be locked by any transaction
+     * @throws PersistencyException the Item is locked by another transaction, or waiting for the lock has timed out
+     * or would cause a deadlock
+     */
+    public void lock(ItemPath itemPath, TransactionKey transactionKey) throws PersistencyException {
+        if (transactionKey == null) {
+            // nothing to lock, all the writer storages must be in autocommit mode
+            TransactionKey existingTransaction = itemLocks.get(itemPath);
+
+            if (existingTransaction != null) {
+                throw new PersistencyException("Access denied for 'null': '"+itemPath+"' has been locked for writing by '"+existingTransaction+"'");
+            }
+            return;
+        }
+
+        Set<ItemPath> lockEntry = lockCatalog.get(transactionKey);
+
+        if (lockEntry == null) {
+            throw new PersistencyException("'"+itemPath+"' - No lockentry was found for transactionKey:"+transactionKey);
+        }
+
+        TransactionKey existingTransaction = itemLocks.putIfAbsent(itemPath, transactionKey);
+
+        if (existingTransaction == null) {
+            lockCount.incrementAndGet();
+            lockEntry.add(itemPath);
+        }
+        else if (!existingTransaction.equals(transactionKey)) {
+            contentionCount.incrementAndGet();
+
+            if (timeout == 0) {
+                throw new PersistencyException("Access denied for '"+transactionKey+"': '"+itemPath+
+                                               "' has been locked for writing by '"+existingTransaction+"'");
+            }
+
+            waitForLock(itemPath, transactionKey);
+            lockCount.incrementAndGet();
+            lockEntry.add(itemPath);
+        }
+    }
+
+    private void waitForLock(ItemPath itemPath, TransactionKey transactionKey) throws PersistencyException {
+        Object stripe = getStripe(itemPath);
+        long start    = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        waitingFor.put(transactionKey, itemPath);
+
+        try {
+            synchronized (stripe) {
+                TransactionKey existingTransaction;
+
+                while ((existingTransaction = itemLocks.putIfAbsent(itemPath, transactionKey)) != null) {
+                    if (isDeadlock(transactionKey, existingTransaction)) {
+                        deadlockCount.incrementAndGet();
+                        throw new PersistencyException("Deadlock detected for '"+transactionKey+"': '"+itemPath+
+                                                       "' has been locked for writing by '"+existingTransaction+"'");
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0) {
+                        timeoutCount.incrementAndGet();
+                        throw new PersistencyException("Timeout after "+timeout+"ms for '"+transactionKey+"': '"+itemPath+
+                                                       "' has been locked for writing by '"+existingTransaction+"'");
+                    }
+
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(stripe, remaining);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new PersistencyException("Interrupted while waiting for the lock of '"+itemPath+"'");
+                    }
+                }
+            }
+        }
+        finally {
+            waitingFor.remove(transactionKey);
+            waitTimeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Follows the chain of waiting transactions starting from the owner of the lock. 
+     * 
+     * @return true if the chain leads back to the given transaction
+     */
+    private boolean isDeadlock(TransactionKey transactionKey, TransactionKey owner) {
+        // the chain cannot be longer than the number of active transactions
+        for (int i = 0; owner != null && i <= lockCatalog.size(); i++) {
+            if (owner.equals(transactionKey)) return true;
+
+            ItemPath waitedItem = waitingFor.get(owner);
+
+            if (waitedItem == null) return false;
+
+            owner = itemLocks.get(waitedItem);
+        }
+        return false;
+    }
+
+    /**
+     * Releases all the locks of the transaction and wakes up the transactions waiting for them
+     * 
+     * @param transactionKey the key of the transaction
+     * @throws PersistencyException the transactionKey is unknown
+     */
+    public void release(TransactionKey transactionKey) throws PersistencyException {
+        Set<ItemPath> lockEntry = lockCatalog.remove(transactionKey);
+
+        if (lockEntry == null) {
+            throw new PersistencyException("TransactionKey '"+transactionKey+"' is unknown");
+        }
+
+        synchronized (lockEntry) {
+            for (ItemPath ip : lockEntry) {
+                itemLocks.remove(ip, transactionKey);
+
+                if (timeout > 0) {
+                    Object stripe = getStripe(ip);
+                    synchronized (stripe) {
+                        stripe.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the transactionKey holding the lock of the Item or null
+     */
+    public TransactionKey getLockingTransaction(ItemPath itemPath) {
+        return itemLocks.get(itemPath);
+    }
+
+    public int getLockedItemCount() {
+        return itemLocks.size();
+    }
+
+    public long getLockCount() {
+        return lockCount.get();
+    }
+
+    public long getContentionCount() {
+        return contentionCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getDeadlockCount() {
+        return deadlockCount.get();
+    }
+
+    /**
+     * @return the accumulated time in milliseconds transactions spent waiting for locks
+     */
+    public long getWaitTimeMillis() {
+        return waitTimeNanos.get() / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemLockManager[timeout:" + timeout + "ms locked:" + getLockedItemCount() + " locks:" + getLockCount()
+                + " contended:" + getContentionCount() + " timeouts:" + getTimeoutCount() + " deadlocks:" + getDeadlockCount()
+                + " waitTime:" + getWaitTimeMillis() + "ms]";
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.persistency.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.cristalise.kernel.common.InvalidDataException;
+import org.cristalise.kernel.process.Gateway;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.NamespaceSupport;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Encodes the objects as a compact binary stream of the SAX events produced by the Castor mapping. The element and
+ * attribute names are written only once and referenced by their index afterwards. Decoding replays the events
+ * directly into the Castor unmarshaller, so no XML text is written or parsed. As the same mapping is used, the
+ * objects can always be exported as XML.
+ * 
+ * <p>The data starts with the 'C2KB' magic and the version of the format, followed by the events. Strings are
+ * written as UTF-8 bytes prefixed with their length, integers are written as unsigned varints.
+ */
+@Slf4j
+public class BinaryXmlClusterCodec implements ClusterCodec {
+
+    public static final String NAME = "binary";
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = {'C', '2', 'K', 'B'};
+
+    private static final int END           = 0;
+    private static final int START_ELEMENT = 1;
+    private static final int END_ELEMENT   = 2;
+    private static final int CHARACTERS    = 3;
+    private static final int START_PREFIX  = 4;
+    private static final int END_PREFIX    = 5;
+    private static final int NULL_OBJECT   = 6;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object obj) throws InvalidDataException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        Encoder encoder = new Encoder(new DataOutputStream(bytes));
+
+        try {
+            encoder.out.write(MAGIC);
+            encoder.out.writeByte(FORMAT_VERSION);
+
+            if (obj == null) encoder.writeVarInt(NULL_OBJECT);
+            else             Gateway.getMarshaller().marshall(obj, encoder);
+
+            encoder.flushText();
+            encoder.writeVarInt(END);
+            encoder.out.flush();
+        }
+        catch (IOException | SAXException e) {
+            log.error("encode() - failed", e);
+            throw new InvalidDataException("encode failed", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] data) throws InvalidDataException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) throw new InvalidDataException("decode() - data was not created by the binary codec");
+            }
+
+            int version = in.readUnsignedByte();
+            if (version > FORMAT_VERSION) {
+                throw new InvalidDataException("decode() - unsupported format version:" + version + " supported:" + FORMAT_VERSION);
+            }
+
+            in.mark(Integer.MAX_VALUE);
+            if (readVarInt(in) == NULL_OBJECT) return null;
+            in.reset();
+        }
+        catch (IOException e) {
+            log.error("decode() - failed", e);
+            throw new InvalidDataException("decode failed", e);
+        }
+
+        return Gateway.getMarshaller().unmarshall(handler -> replay(in, handler));
+    }
+
+    /**
+     * Replays the recorded events into the handler
+     */
+    private static void replay(DataInputStream in, ContentHandler handler) throws SAXException, IOException {
+        List<String> names = new ArrayList<>();
+        AttributesImpl atts = new AttributesImpl();
+
+        handler.startDocument();
+
+        for (int event = readVarInt(in); event != END; event = readVarInt(in)) {
+            switch (event) {
+                case START_PREFIX:
+                    handler.startPrefixMapping(readName(in, names), readName(in, names));
+                    break;
+
+                case END_PREFIX:
+                    handler.endPrefixMapping(readName(in, names));
+                    break;
+
+                case START_ELEMENT:
+                    String uri       = readName(in, names);
+                    String localName = readName(in, names);
+                    String qName     = readName(in, names);
+
+                    atts.clear();
+                    for (int i = readVarInt(in); i > 0; i--) {
+                        atts.addAttribute(readName(in, names), readName(in, names), readName(in, names), "CDATA", readString(in));
+                    }
+
+                    handler.startElement(uri, localName, qName, atts);
+                    break;
+
+                case END_ELEMENT:
+                    handler.endElement(readName(in, names), readName(in, names), readName(in, names));
+                    break;
+
+                case CHARACTERS:
+                    char[] text = readString(in).toCharArray();
+                    handler.characters(text, 0, text.length);
+                    break;
+
+                default:
+                    throw new IOException("Invalid event:" + event);
+            }
+        }
+
+        handler.endDocument();
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Index 0 means a new name follows, otherwise it is the index of a name read before plus one
+     */
+    private static String readName(DataInputStream in, List<String> names) throws IOException {
+        int index = readVarInt(in);
+
+        if (index == 0) {
+            String name = readString(in);
+            names.add(name);
+            return name;
+        }
+        return names.get(index - 1);
+    }
+
+    /**
+     * Records the SAX events of the Castor marshaller. Namespace declarations received as xmlns attributes are
+     * converted to prefix mappings, so the replayed events are the same as the ones of a namespace aware parser.
+     */
+    private static class Encoder extends DefaultHandler {
+        final DataOutputStream     out;
+        final Map<String, Integer> names   = new HashMap<>();
+        final NamespaceSupport     ns      = new NamespaceSupport();
+        final List<String[]>       pending = new ArrayList<>();
+        final StringBuilder        text    = new StringBuilder();
+
+        Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            pending.add(new String[] {prefix, uri});
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) {
+            // the end of the prefix mappings are written by endElement()
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            try {
+                flushText();
+
+                ns.pushContext();
+
+                for (String[] mapping : pending) declarePrefix(mapping[0], mapping[1]);
+                pending.clear();
+
+                List<Integer> attIndexes = new ArrayList<>();
+
+                for (int i = 0; i < atts.getLength(); i++) {
+                    String attQName = atts.getQName(i);
+
+                    if      ("xmlns".equals(attQName))       declarePrefix("", atts.getValue(i));
+                    else if (attQName.startsWith("xmlns:"))  declarePrefix(attQName.substring(6), atts.getValue(i));
+                    else                                     attIndexes.add(i);
+                }
+
+                writeVarInt(START_ELEMENT);
+                writeElementName(uri, localName, qName);
+
+                writeVarInt(attIndexes.size());
+                for (int i : attIndexes) {
+                    String attQName = atts.getQName(i);
+                    String attUri   = atts.getURI(i);
+
+                    // unprefixed attributes have no namespace
+                    if (StringUtils.isEmpty(attUri) && attQName.indexOf(':') > 0) attUri = ns.getURI(StringUtils.substringBefore(attQName, ":"));
+
+                    writeName(attUri);
+                    writeName(StringUtils.isEmpty(atts.getLocalName(i)) ? StringUtils.substringAfter(attQName, ":") : atts.getLocalName(i));
+                    writeName(attQName);
+                    writeString(atts.getValue(i));
+                }
+            }
+            catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            try {
+                flushText();
+
+                writeVarInt(END_ELEMENT);
+                writeElementName(uri, localName, qName);
+
+                Enumeration<?> prefixes = ns.getDeclaredPrefixes();
+                while (prefixes.hasMoreElements()) {
+                    writeVarInt(END_PREFIX);
+                    writeName((String) prefixes.nextElement());
+                }
+
+                ns.popContext();
+            }
+            catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        private void declarePrefix(String prefix, String uri) throws IOException {
+            // the same declaration could be received both as prefix mapping and as xmlns attribute
+            if (uri.equals(ns.getURI(prefix)) && Collections.list(ns.getDeclaredPrefixes()).contains(prefix)) return;
+
+            ns.declarePrefix(prefix, uri);
+
+            writeVarInt(START_PREFIX);
+            writeName(prefix);
+            writeName(uri);
+        }
+
+        private void writeElementName(String uri, String localName, String qName) throws IOException {
+            String prefix = qName.indexOf(':') > 0 ? StringUtils.substringBefore(qName, ":") : "";
+
+            if (StringUtils.isEmpty(uri))       uri = StringUtils.defaultString(ns.getURI(prefix));
+            if (StringUtils.isEmpty(localName)) localName = prefix.isEmpty() ? qName : StringUtils.substringAfter(qName, ":");
+
+            writeName(uri);
+            writeName(localName);
+            writeName(qName);
+        }
+
+        void flushText() throws IOException {
+            if (text.length() == 0) return;
+
+            writeVarInt(CHARACTERS);
+            writeString(text.toString());
+            text.setLength(0);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        void writeName(String name) throws IOException {
+            if (name == null) name = "";
+
+            Integer index = names.get(name);
+
+            if (index == null) {
+                names.put(name, names.size() + 1);
+                writeVarInt(0);
+                writeString(name);
+            }
+            else {
+                writeVarInt(index);
+            }
+        }
+    }
+}
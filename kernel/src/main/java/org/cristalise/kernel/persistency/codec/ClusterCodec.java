@@ -0,0 +1,60 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.persistency.codec;
+
+import org.cristalise.kernel.common.InvalidDataException;
+
+/**
+ * Converts the objects of a cluster into bytes and back. The codec of each ClusterType is selected 
+ * by {@link ClusterCodecs#getCodec(org.cristalise.kernel.persistency.ClusterType)}.
+ */
+public interface ClusterCodec {
+
+    /**
+     * @return the name of the codec used in the configuration
+     */
+    public String getName();
+
+    /**
+     * @return true if the codec produces the XML of the Castor mapping, i.e. the data can be stored in XML columns and files
+     */
+    public default boolean isXml() {
+        return false;
+    }
+
+    /**
+     * Encodes the object
+     * 
+     * @param obj the object to be encoded, can be null
+     * @return the encoded bytes
+     * @throws InvalidDataException the object could not be encoded
+     */
+    public byte[] encode(Object obj) throws InvalidDataException;
+
+    /**
+     * Decodes the bytes created by {@link #encode(Object)}
+     * 
+     * @param data the encoded bytes
+     * @return the decoded object, can be null
+     * @throws InvalidDataException the data could not be decoded, e.g. it was created by a different codec or version
+     */
+    public Object decode(byte[] data) throws InvalidDataException;
+}
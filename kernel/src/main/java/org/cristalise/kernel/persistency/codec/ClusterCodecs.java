@@ -0,0 +1,92 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.persistency.codec;
+
+import static org.cristalise.kernel.SystemProperties.ClusterStorage_Codec_$clusterType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cristalise.kernel.common.InvalidDataException;
+import org.cristalise.kernel.persistency.ClusterType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Returns the {@link ClusterCodec} configured for each ClusterType by {@link org.cristalise.kernel.SystemProperties#ClusterStorage_Codec_$clusterType}.
+ * The value is either 'xml', 'binary' or the class name of a ClusterCodec implementation.
+ */
+@Slf4j
+public class ClusterCodecs {
+
+    private static final ClusterCodec XML_CODEC    = new XmlClusterCodec();
+    private static final ClusterCodec BINARY_CODEC = new BinaryXmlClusterCodec();
+
+    /**
+     * Instances of the codecs configured by their class name
+     */
+    private static final Map<String, ClusterCodec> customCodecs = new ConcurrentHashMap<>();
+
+    private ClusterCodecs() {}
+
+    /**
+     * Returns the codec configured for the ClusterType
+     * 
+     * @param type the ClusterType
+     * @return the codec, the XML codec by default
+     * @throws InvalidDataException the configured class could not be instantiated
+     */
+    public static ClusterCodec getCodec(ClusterType type) throws InvalidDataException {
+        String codecName = ClusterStorage_Codec_$clusterType.getString(XmlClusterCodec.NAME, type.name());
+
+        if      (XmlClusterCodec.NAME.equals(codecName))       return XML_CODEC;
+        else if (BinaryXmlClusterCodec.NAME.equals(codecName)) return BINARY_CODEC;
+
+        ClusterCodec codec = customCodecs.get(codecName);
+
+        if (codec == null) {
+            try {
+                codec = (ClusterCodec) ClusterStorage_Codec_$clusterType.getInstance(type.name());
+                customCodecs.put(codecName, codec);
+
+                log.info("getCodec() - type:{} codec:{}", type, codecName);
+            }
+            catch (ReflectiveOperationException | ClassCastException e) {
+                log.error("getCodec() - type:{} codec:{}", type, codecName, e);
+                throw new InvalidDataException("Could not instantiate ClusterCodec:" + codecName);
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Returns the codec to decode the binary data of the ClusterType. It is the configured codec unless it is the XML
+     * codec, in which case data written earlier with the binary codec is decoded by the binary codec.
+     * 
+     * @param type the ClusterType
+     * @return the codec
+     * @throws InvalidDataException the configured class could not be instantiated
+     */
+    public static ClusterCodec getBinaryCodec(ClusterType type) throws InvalidDataException {
+        ClusterCodec codec = getCodec(type);
+        return codec.isXml() ? BINARY_CODEC : codec;
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.persistency.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.cristalise.kernel.common.InvalidDataException;
+import org.cristalise.kernel.process.Gateway;
+
+/**
+ * Encodes the objects as the UTF-8 bytes of the XML produced by the Castor mapping. This is the default codec.
+ */
+public class XmlClusterCodec implements ClusterCodec {
+
+    public static final String NAME = "xml";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isXml() {
+        return true;
+    }
+
+    @Override
+    public byte[] encode(Object obj) throws InvalidDataException {
+        return Gateway.getMarshaller().marshall(obj).getBytes(UTF_8);
+    }
+
+    @Override
+    public Object decode(byte[] data) throws InvalidDataException {
+        return Gateway.getMarshaller().unmarshall(new String(data, UTF_8));
+    }
+}
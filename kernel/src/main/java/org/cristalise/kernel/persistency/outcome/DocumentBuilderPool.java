@@ -0,0 +1,161 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.persistency.outcome;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded pool of non-validating, non-namespace-aware {@link DocumentBuilder} instances. DocumentBuilder
+ * is not thread-safe, so each parse borrows one exclusively. Builders are created lazily up to the
+ * configured size, afterwards callers wait for a free builder. The time spent waiting is recorded
+ * to help tuning the size of the pool.
+ */
+@Slf4j
+public class DocumentBuilderPool {
+
+    private final DocumentBuilderFactory        factory;
+    private final BlockingQueue<DocumentBuilder> idleBuilders;
+    private final AtomicInteger                 createdCount = new AtomicInteger();
+
+    @Getter
+    private final int size;
+
+    /** Number of builders borrowed from the pool */
+    private final AtomicLong borrowCount = new AtomicLong();
+    /** Number of times a caller had to wait for a free builder */
+    private final AtomicLong waitCount = new AtomicLong();
+    /** Accumulated time in nanoseconds spent waiting for a free builder */
+    private final AtomicLong waitTimeNanos = new AtomicLong();
+
+    /**
+     *
+     * @param size the maximum number of DocumentBuilders, values smaller than 1 are changed to 1
+     */
+    public DocumentBuilderPool(int size) {
+        this.size = Math.max(1, size);
+
+        factory = DocumentBuilderFactory.newInstance();
+        factory.setValidating(false);
+        factory.setNamespaceAware(false);
+
+        idleBuilders = new ArrayBlockingQueue<>(this.size);
+
+        log.debug("DocumentBuilderPool() - size:{}", this.size);
+    }
+
+    /**
+     * Parses the input source into a DOM tree. When input source is null it creates empty Document.
+     *
+     * @param xml the input to be parsed, can be null.
+     * @return the parsed Document
+     * @throws SAXException error parsing document
+     * @throws IOException any IO errors occur or the thread was interrupted while waiting for a builder
+     */
+    public Document parse(InputSource xml) throws SAXException, IOException {
+        DocumentBuilder builder = borrow();
+
+        try {
+            if (xml != null) return builder.parse(xml);
+            else             return builder.newDocument();
+        }
+        finally {
+            release(builder);
+        }
+    }
+
+    private DocumentBuilder borrow() throws IOException {
+        borrowCount.incrementAndGet();
+
+        DocumentBuilder builder = idleBuilders.poll();
+        if (builder != null) return builder;
+
+        if (createdCount.incrementAndGet() <= size) {
+            try {
+                return factory.newDocumentBuilder();
+            }
+            catch (ParserConfigurationException e) {
+                createdCount.decrementAndGet();
+                log.error("borrow() - cannot create DocumentBuilder", e);
+                throw new IOException(e);
+            }
+        }
+        createdCount.decrementAndGet();
+
+        long start = System.nanoTime();
+        try {
+            builder = idleBuilders.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for DocumentBuilder", e);
+        }
+
+        waitCount.incrementAndGet();
+        waitTimeNanos.addAndGet(System.nanoTime() - start);
+
+        return builder;
+    }
+
+    private void release(DocumentBuilder builder) {
+        builder.reset();
+
+        if (!idleBuilders.offer(builder)) {
+            log.warn("release() - pool is full, discarding DocumentBuilder");
+            createdCount.decrementAndGet();
+        }
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * @return the accumulated time in milliseconds callers spent waiting for a free builder
+     */
+    public long getWaitTimeMillis() {
+        return waitTimeNanos.get() / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentBuilderPool[size:" + size + " created:" + createdCount.get() + " borrowed:" + getBorrowCount()
+                + " waited:" + getWaitCount() + " waitTime:" + getWaitTimeMillis() + "ms]";
+    }
+}
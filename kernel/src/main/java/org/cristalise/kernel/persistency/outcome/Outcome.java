@@ -21,6 +21,8 @@
 package org.cristalise.kernel.persistency.outcome;
 
 import static org.cristalise.kernel.SystemProperties.Outcome_Validation_useDOM;
+import static org.cristalise.kernel.SystemProperties.Outcome_parserPoolSize;
+import static org.cristalise.kernel.SystemProperties.Outcome_xpathCacheSize;
 import static org.cristalise.kernel.persistency.ClusterType.OUTCOME;
 
 import java.io.IOException;
@@ -38,19 +40,15 @@ import java.util.TreeMap;
 import java.util.function.Consumer;
 
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.lang3.StringUtils;
 import org.cristalise.kernel.common.InvalidDataException;
@@ -59,7 +57,6 @@ import org.cristalise.kernel.common.PersistencyException;
 import org.cristalise.kernel.entity.C2KLocalObject;
 import org.cristalise.kernel.persistency.ClusterType;
 import org.cristalise.kernel.persistency.TransactionKey;
-import org.cristalise.kernel.process.AbstractMain;
 import org.cristalise.kernel.utils.LocalObjectLoader;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -109,32 +106,21 @@ public class Outcome implements C2KLocalObject {
     /** The parsed XML document */
     Document mDOM;
 
-    /** Parser of  XML Documents */
-    static DocumentBuilder parser;
+    /** Pool of XML Document parsers, initialised lazily to use the configured size */
+    private static volatile DocumentBuilderPool parserPool;
 
-    /** Use this static ThreadLocal variable for thread-safe XPath evaluation */
-    private static final ThreadLocal<XPathFactory> XPATH_FACTORY = new ThreadLocal<XPathFactory>() {
-        @Override
-        protected XPathFactory initialValue() {
-            return XPathFactory.newInstance();
-        }
-    };
+    /** Thread-confined cache of compiled XPath expressions, initialised lazily to use the configured size */
+    private static volatile XPathExpressionCache xpathCache;
 
-    static {
-        System.setProperty(DTM_MANAGER_NAME, DTM_MANAGER_VALUE);
+    /** Compiled pretty print XSLT, initialised lazily */
+    private static volatile Templates prettyPrintTemplates;
 
-        // Set up parser
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setValidating(false);
-        dbf.setNamespaceAware(false);
+    /** Transformer is not thread-safe but it can be reused by the same thread */
+    private static final ThreadLocal<Transformer> TRANSFORMER        = new ThreadLocal<>();
+    private static final ThreadLocal<Transformer> PRETTY_TRANSFORMER = new ThreadLocal<>();
 
-        try {
-            parser = dbf.newDocumentBuilder();
-        }
-        catch (ParserConfigurationException e) {
-            log.error("FATAL: Cannot function without XML parser", e);
-            AbstractMain.shutdown(1);
-        }
+    static {
+        System.setProperty(DTM_MANAGER_NAME, DTM_MANAGER_VALUE);
     }
 
     /**
@@ -316,8 +302,22 @@ public class Outcome implements C2KLocalObject {
      * @throws XPathExpressionException  If expression cannot be compiled.
      */
     public Object evaluateXpath(Node startNode, String xpathExpr, QName returnType) throws XPathExpressionException {
-        XPath xpath = XPATH_FACTORY.get().newXPath();
-        return xpath.compile(xpathExpr).evaluate(startNode, returnType);
+        return getXPathCache().get(xpathExpr).evaluate(startNode, returnType);
+    }
+
+    /**
+     * Returns the cache of compiled XPath expressions used by {@link #evaluateXpath(Node, String, QName)}.
+     * The size of the cache is configured by {@link org.cristalise.kernel.SystemProperties#Outcome_xpathCacheSize}
+     *
+     * @return the XPathExpressionCache
+     */
+    public static XPathExpressionCache getXPathCache() {
+        if (xpathCache == null) {
+            synchronized (Outcome.class) {
+                if (xpathCache == null) xpathCache = new XPathExpressionCache(Outcome_xpathCacheSize.getInteger());
+            }
+        }
+        return xpathCache;
     }
 
     /**
@@ -861,10 +861,22 @@ public class Outcome implements C2KLocalObject {
      * @throws IOException any IO errors occur
      */
     public static Document parse(InputSource xml) throws SAXException, IOException {
-        synchronized (parser) {
-            if (xml!=null) return parser.parse(xml);
-            else           return parser.newDocument();
+        return getParserPool().parse(xml);
+    }
+
+    /**
+     * Returns the pool of XML parsers used by {@link #parse(InputSource)}. The size of the pool is
+     * configured by {@link org.cristalise.kernel.SystemProperties#Outcome_parserPoolSize}
+     *
+     * @return the DocumentBuilderPool
+     */
+    public static DocumentBuilderPool getParserPool() {
+        if (parserPool == null) {
+            synchronized (Outcome.class) {
+                if (parserPool == null) parserPool = new DocumentBuilderPool(Outcome_parserPoolSize.getInteger());
+            }
         }
+        return parserPool;
     }
 
     /**
@@ -994,37 +1006,69 @@ public class Outcome implements C2KLocalObject {
         return nodeToTemove.getParentNode().removeChild(nodeToTemove);
     }
 
+    /**
+     * Compiles the pretty print XSLT only once, because Templates is thread-safe
+     */
+    private static Templates getPrettyPrintTemplates() throws InvalidDataException {
+        if (prettyPrintTemplates == null) {
+            synchronized (Outcome.class) {
+                if (prettyPrintTemplates == null) {
+                    try (InputStream is = Outcome.class.getResourceAsStream("/org/cristalise/kernel/utils/resources/textFiles/prettyPrint.xslt")) {
+                        TransformerFactory tf = TransformerFactory.newInstance();
+                        tf.setAttribute("indent-number", 2);
+
+                        prettyPrintTemplates = tf.newTemplates(new StreamSource(is));
+                    }
+                    catch (Exception ex) {
+                        log.error("getPrettyPrintTemplates()", ex);
+                        throw new InvalidDataException(ex);
+                    }
+                }
+            }
+        }
+        return prettyPrintTemplates;
+    }
+
     private static Transformer getPrettyTransformer() throws InvalidDataException {
-        try {
-            TransformerFactory tf = TransformerFactory.newInstance();
-            tf.setAttribute("indent-number", 2);
+        Transformer transformer = PRETTY_TRANSFORMER.get();
 
-            // add XSLT for pretty print
-            InputStream is = Outcome.class.getResourceAsStream("/org/cristalise/kernel/utils/resources/textFiles/prettyPrint.xslt");
-            Transformer transformer = tf.newTransformer(new StreamSource(is));
+        if (transformer == null) {
+            try {
+                transformer = getPrettyPrintTemplates().newTransformer();
     
-            // add extra standalone to break the root node to a new line
-            transformer.setOutputProperty(OutputKeys.STANDALONE, "no");
+                // add extra standalone to break the root node to a new line
+                transformer.setOutputProperty(OutputKeys.STANDALONE, "no");
+                transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+                transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
 
-            return transformer;
-        }
-        catch (Exception ex) {
-            log.error("getPrettyTransformer()", ex);
-            throw new InvalidDataException(ex);
+                PRETTY_TRANSFORMER.set(transformer);
+            }
+            catch (Exception ex) {
+                log.error("getPrettyTransformer()", ex);
+                throw new InvalidDataException(ex);
+            }
         }
+        return transformer;
     }
 
     private static Transformer getTransformer() throws InvalidDataException {
-        try {
-            TransformerFactory tf = TransformerFactory.newInstance();
-            Transformer             transformer = tf.newTransformer();
+        Transformer transformer = TRANSFORMER.get();
     
-            return transformer;
-        }
-        catch (Exception ex) {
-            log.error("getTransformer()", ex);
-            throw new InvalidDataException(ex);
+        if (transformer == null) {
+            try {
+                transformer = TransformerFactory.newInstance().newTransformer();
+
+                transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+                transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+
+                TRANSFORMER.set(transformer);
+            }
+            catch (Exception ex) {
+                log.error("getTransformer()", ex);
+                throw new InvalidDataException(ex);
+            }
         }
+        return transformer;
     }
 
     /**
@@ -1039,15 +1083,15 @@ public class Outcome implements C2KLocalObject {
         try {
             Transformer transformer = prettyPrint ? getPrettyTransformer() : getTransformer();
 
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-
             Writer out = new StringWriter();
             transformer.transform(new DOMSource(node), new StreamResult(out));
             return out.toString();
         }
         catch (Exception ex) {
             log.error("serialize()", ex);
+            // the state of the failed Transformer is unknown, so it shall not be reused
+            if (prettyPrint) PRETTY_TRANSFORMER.remove();
+            else             TRANSFORMER.remove();
             throw new InvalidDataException(ex);
         }
     }
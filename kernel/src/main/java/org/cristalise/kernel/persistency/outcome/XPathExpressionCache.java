@@ -0,0 +1,113 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.persistency.outcome;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded cache of compiled {@link XPathExpression}s keyed by the expression string. XPathExpression
+ * is not thread-safe, therefore each thread has its own LRU map of compiled expressions. Hits and
+ * misses are counted over all threads.
+ */
+@Slf4j
+public class XPathExpressionCache {
+
+    @Getter
+    private final int size;
+
+    private final AtomicLong hitCount  = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final ThreadLocal<XPath> xpath = ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
+
+    private final ThreadLocal<Map<String, XPathExpression>> expressions;
+
+    /**
+     *
+     * @param size the maximum number of compiled expressions kept per thread, 0 disables caching
+     */
+    public XPathExpressionCache(int size) {
+        this.size = Math.max(0, size);
+
+        expressions = ThreadLocal.withInitial(() -> new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                return size() > XPathExpressionCache.this.size;
+            }
+        });
+
+        log.debug("XPathExpressionCache() - size:{}", this.size);
+    }
+
+    /**
+     * Returns the compiled expression from the cache of the current thread or compiles and caches it.
+     * The returned instance shall only be used by the calling thread.
+     *
+     * @param xpathExpr the XPath expression
+     * @return the compiled expression
+     * @throws XPathExpressionException If expression cannot be compiled.
+     */
+    public XPathExpression get(String xpathExpr) throws XPathExpressionException {
+        if (size == 0) {
+            missCount.incrementAndGet();
+            return xpath.get().compile(xpathExpr);
+        }
+
+        Map<String, XPathExpression> threadCache = expressions.get();
+        XPathExpression expr = threadCache.get(xpathExpr);
+
+        if (expr != null) {
+            hitCount.incrementAndGet();
+        }
+        else {
+            missCount.incrementAndGet();
+            expr = xpath.get().compile(xpathExpr);
+            threadCache.put(xpathExpr, expr);
+        }
+
+        return expr;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "XPathExpressionCache[size:" + size + " hits:" + getHitCount() + " misses:" + getMissCount() + "]";
+    }
+}
@@ -285,6 +285,8 @@ public class Gateway extends ProxyManager
 
             createServerVerticles();
 
+            mSecurityManager.subscribeProxyMessages(mVertx);
+
             // addClearCacheCommand("proxy-clearCache");
             addClearCacheCommand("storage-clearCache");
 
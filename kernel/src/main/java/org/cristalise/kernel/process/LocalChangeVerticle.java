@@ -26,6 +26,7 @@ import java.util.ArrayList;
 
 import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.entity.proxy.ProxyMessage;
+import org.cristalise.kernel.security.SecurityManager;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
@@ -35,8 +36,8 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * Subscribes to the ProxyMessages channel to perform 2 actions: cleans the local cache of ClusterStorage 
- * and sends change notifications to local subscribers. The order is very important, the cache 
- * should be cleared first so the notified consumer will read the new value.
+ * and the permission cache of SecurityManager, and sends change notifications to local subscribers. The order
+ * is very important, the cache should be cleared first so the notified consumer will read the new value.
  */
 @Slf4j
 public class LocalChangeVerticle extends AbstractVerticle {
@@ -94,6 +95,7 @@ public class LocalChangeVerticle extends AbstractVerticle {
 
     private void clearCache(JsonArray proxyMessages) throws InvalidDataException {
         ArrayList<String> clearCacheList = new ArrayList<String>();
+        SecurityManager secMan = Gateway.getSecurityManager();
 
         for (Object element: proxyMessages) {
             ProxyMessage msg = new ProxyMessage((String)element);
@@ -103,6 +105,8 @@ public class LocalChangeVerticle extends AbstractVerticle {
                 log.trace("clearCache() - adding entry:{}", key);
                 clearCacheList.add(key);
             }
+
+            if (secMan != null) secMan.clearPermissionCache(msg);
         }
 
         Gateway.getStorage().clearCache(clearCacheList);
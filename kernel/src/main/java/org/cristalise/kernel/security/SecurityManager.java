@@ -21,12 +21,17 @@
 package org.cristalise.kernel.security;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.cristalise.kernel.SystemProperties.SecurityManager_permissionCacheSpec;
 import static org.cristalise.kernel.SystemProperties.Shiro_iniFile;
 import static org.cristalise.kernel.graph.model.BuiltInVertexProperties.SECURITY_ACTION;
+import static org.cristalise.kernel.persistency.ClusterType.PROPERTY;
 import static org.cristalise.kernel.property.BuiltInItemProperties.NAME;
 import static org.cristalise.kernel.property.BuiltInItemProperties.SECURITY_DOMAIN;
 import static org.cristalise.kernel.property.BuiltInItemProperties.TYPE;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.UsernamePasswordToken;
@@ -40,13 +45,21 @@ import org.cristalise.kernel.common.AccessRightsException;
 import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.common.ObjectNotFoundException;
 import org.cristalise.kernel.entity.proxy.AgentProxy;
+import org.cristalise.kernel.entity.proxy.ProxyMessage;
 import org.cristalise.kernel.lifecycle.instance.Activity;
 import org.cristalise.kernel.lookup.AgentPath;
 import org.cristalise.kernel.lookup.ItemPath;
 import org.cristalise.kernel.persistency.TransactionKey;
 import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.process.LocalChangeVerticle;
 import org.cristalise.kernel.property.PropertyUtility;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -57,12 +70,39 @@ public class SecurityManager {
     private static final String securityMsgBegin = "[errorMessage]";
     private static final String securityMsgEnd   = "[/errorMessage]";
 
+    /**
+     * The authorization decisions of the Agents, i.e. the results of Subject.isPermitted() for each WildcardPermission.
+     * Null if the cache is disabled.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Cache<AgentPath, ConcurrentMap<String, Boolean>> agentPermissions;
+
+    /**
+     * The domain and target parts of the WildcardPermission of the Items, i.e. the SecurityDomain (or Type) 
+     * and Name ItemProperties. Null if the cache is disabled.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Cache<ItemPath, String[]> itemPermissionTargets;
+
     /**
      * 
      * @throws InvalidDataException
      */
     public SecurityManager() throws InvalidDataException {
         setupShiro();
+
+        String cacheSpec = SecurityManager_permissionCacheSpec.getString();
+
+        if (isBlank(cacheSpec)) {
+            agentPermissions      = null;
+            itemPermissionTargets = null;
+        }
+        else {
+            agentPermissions      = CacheBuilder.from(cacheSpec).build();
+            itemPermissionTargets = CacheBuilder.from(cacheSpec).build();
+        }
+
+        log.debug("SecurityManager() - permissionCacheSpec:'{}'", cacheSpec);
     }
 
     /**
@@ -241,16 +281,128 @@ public class SecurityManager {
     public boolean checkPermissions(AgentPath agent, Activity act, ItemPath itemPath, TransactionKey transactionKey)
             throws AccessRightsException, ObjectNotFoundException
     {
-        String domain = getWildcardPermissionDomain(itemPath, transactionKey);
+        String[] domainAndTarget = getWildcardPermissionDomainAndTarget(itemPath, transactionKey);
         String action = getWildcardPermissionAction(act);
-        String target = PropertyUtility.getPropertyValue(itemPath, NAME, "", transactionKey);
 
         //The Shiro's WildcardPermission string 
-        String permission = domain+":"+action+":"+target;
+        String permission = domainAndTarget[0]+":"+action+":"+domainAndTarget[1];
+
+        log.debug("checkPermissions() - agent:'{}' permission:'{}'", agent, permission);
+
+        return isPermitted(agent, permission);
+    }
+
+    /**
+     * Checks the permission using the Shiro Subject of the Agent. The result is cached until the Roles
+     * or the permissions of the Roles are changed.
+     * 
+     * @param agent the Agent to be authorized
+     * @param permission the Shiro WildcardPermission string
+     * @return true if the Agent has the permission
+     */
+    private boolean isPermitted(AgentPath agent, String permission) {
+        if (agentPermissions == null) return getSubject(agent).isPermitted(permission);
+
+        ConcurrentMap<String, Boolean> decisions = agentPermissions.asMap().computeIfAbsent(agent, k -> new ConcurrentHashMap<>());
+
+        return decisions.computeIfAbsent(permission, p -> getSubject(agent).isPermitted(p));
+    }
+
+    /**
+     * Removes the cached SecurityDomain and Name of the Item. It is called when the ItemProperties were changed.
+     * If the Item is an Agent its cached authorization decisions are removed as well.
+     * 
+     * @param itemPath the Item which ItemProperties were changed
+     */
+    public void clearPermissionCache(ItemPath itemPath) {
+        if (itemPermissionTargets == null) return;
+
+        itemPermissionTargets.invalidate(itemPath);
+        agentPermissions.invalidate(itemPath);
+    }
+
+    /**
+     * Removes all cached authorization decisions of the Agents. It is called when the Roles of an Agent 
+     * or the permissions of a Role were changed.
+     */
+    public void clearAgentPermissionCache() {
+        if (agentPermissions == null) return;
+
+        agentPermissions.invalidateAll();
+    }
+
+    /**
+     * Removes the entries of the permission cache affected by the change notified in the ProxyMessage
+     * 
+     * @param message the ProxyMessage of a ClusterStorage or Lookup change
+     */
+    public void clearPermissionCache(ProxyMessage message) {
+        if (message.isClusterStoreMesssage()) {
+            if (message.getClusterType() == PROPERTY) clearPermissionCache(message.getItemPath());
+        }
+        else if (message.isRoleMessage()) {
+            log.trace("clearPermissionCache() - role changed:{}", message.getPath());
+            clearAgentPermissionCache();
+        }
+    }
+
+    /**
+     * Subscribes to the ProxyMessages channel to keep the permission cache up to date. It shall be used in 
+     * server processes, because client processes clear the cache in the {@link LocalChangeVerticle}.
+     * 
+     * @param vertx the Vertx instance of the process
+     */
+    public void subscribeProxyMessages(Vertx vertx) {
+        if (agentPermissions == null) return;
+
+        vertx.eventBus().consumer(ProxyMessage.ebAddress, message -> {
+            for (Object element: (JsonArray) message.body()) {
+                try {
+                    clearPermissionCache(new ProxyMessage((String)element));
+                }
+                catch (InvalidDataException e) {
+                    log.warn("subscribeProxyMessages() - invalid message:{}", element, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes all entries from the permission cache
+     */
+    public void clearPermissionCache() {
+        if (agentPermissions == null) return;
+
+        agentPermissions.invalidateAll();
+        itemPermissionTargets.invalidateAll();
+    }
+
+    /**
+     * Returns the domain and the target part of the WildcardPermission of the Item. The values read 
+     * within a transaction are not cached, because they might not be committed yet.
+     * 
+     * @param itemPath the Item
+     * @param transactionKey the key of the transaction, can be null
+     * @return array of the domain and the target
+     * @throws ObjectNotFoundException Item was not found 
+     * @throws AccessRightsException domain was blank
+     */
+    private String[] getWildcardPermissionDomainAndTarget(ItemPath itemPath, TransactionKey transactionKey) 
+            throws ObjectNotFoundException, AccessRightsException
+    {
+        if (itemPermissionTargets != null) {
+            String[] domainAndTarget = itemPermissionTargets.getIfPresent(itemPath);
+            if (domainAndTarget != null) return domainAndTarget;
+        }
+
+        String domain = getWildcardPermissionDomain(itemPath, transactionKey);
+        String target = PropertyUtility.getPropertyValue(itemPath, NAME, "", transactionKey);
+
+        String[] domainAndTarget = {domain, target};
 
-        log.debug("checkPermissions() - agent:'{}' permission:'{}'", agent.getAgentName(), permission);
+        if (itemPermissionTargets != null && transactionKey == null) itemPermissionTargets.put(itemPath, domainAndTarget);
 
-        return getSubject(agent).isPermitted(permission);
+        return domainAndTarget;
     }
     
     /**
@@ -39,8 +39,11 @@ import org.exolab.castor.mapping.Mapping;
 import org.exolab.castor.mapping.MappingException;
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.Marshaller;
+import org.exolab.castor.xml.UnmarshalHandler;
 import org.exolab.castor.xml.ValidationException;
 import org.exolab.castor.xml.XMLContext;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -144,6 +147,54 @@ public class CastorXMLUtility {
         }
     }
 
+    /**
+     * Marshalls a mapped object into SAX events. The mapping must be loaded before. See updateMapping().
+     *
+     * @param obj the object to be marshalled, cannot be null
+     * @param handler the ContentHandler receiving the SAX events
+     * @throws InvalidDataException all errors captured
+     */
+    public void marshall(Object obj, ContentHandler handler) throws InvalidDataException {
+        try {
+            Marshaller marshaller = mappingContext.createMarshaller();
+            marshaller.setContentHandler(handler);
+            marshaller.setMarshalAsDocument(false);
+            marshaller.marshal(obj);
+        }
+        catch (IOException | MarshalException | ValidationException ex) {
+            log.error("marshall() - failed", ex);
+            throw new InvalidDataException("marshall failed", ex);
+        }
+    }
+
+    /**
+     * Source of SAX events, e.g. replaying the events recorded by {@link #marshall(Object, ContentHandler)}
+     */
+    @FunctionalInterface
+    public interface SAXEventSource {
+        public void emit(ContentHandler handler) throws SAXException, IOException;
+    }
+
+    /**
+     * Unmarshalls a mapped object from SAX events. The mapping must be loaded before. See updateMapping().
+     *
+     * @param source the source of SAX events
+     * @return the unmarshalled object
+     * @throws InvalidDataException all errors captured
+     */
+    public Object unmarshall(SAXEventSource source) throws InvalidDataException {
+        UnmarshalHandler handler = mappingContext.createUnmarshaller().createHandler();
+
+        try {
+            source.emit(handler);
+            return handler.getObject();
+        }
+        catch (SAXException | IOException ex) {
+            log.error("unmarshall() - failed", ex);
+            throw new InvalidDataException("unmarshall failed", ex);
+        }
+    }
+
     /**
      * Unmarshalls a mapped object from XML string. The mapping must be loaded before. See updateMapping().
      *
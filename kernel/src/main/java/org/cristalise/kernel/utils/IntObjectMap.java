@@ -0,0 +1,216 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.utils;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Hash map with primitive int keys and non-null values, using open addressing with linear probing.
+ * It avoids the boxing of the keys and the String conversion used by the Hashtable based maps.
+ * All methods are synchronized, like the ones of Hashtable.
+ *
+ * @param <V> the type of the values
+ */
+public class IntObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[]    keys;
+    private Object[] values;
+    private int      size = 0;
+
+    public IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     *
+     * @param expectedSize the number of entries the map shall hold without resizing
+     */
+    public IntObjectMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expectedSize * 4) capacity <<= 1;
+
+        keys   = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+
+        while (values[i] != null) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized V get(int key) {
+        int i = indexOf(key);
+        return i == -1 ? null : (V) values[i];
+    }
+
+    public synchronized boolean containsKey(int key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @param key the key
+     * @param value the value, null removes the key
+     * @return the previous value of the key or null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V put(int key, V value) {
+        if (value == null) return remove(key);
+
+        if ((size + 1) * 4 > keys.length * 3) resize(keys.length << 1);
+
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i]   = key;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the key, shifting back the following entries of the probe sequence so no tombstones are needed.
+     *
+     * @param key the key
+     * @return the removed value or null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(int key) {
+        int i = indexOf(key);
+        if (i == -1) return null;
+
+        V old = (V) values[i];
+        int mask = keys.length - 1;
+        int j = i;
+
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) break;
+
+            int home = hash(keys[j]) & mask;
+
+            // move entry j into the hole at i only if its home slot is not in the cyclic range (i, j]
+            if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) continue;
+
+            keys[i]   = keys[j];
+            values[i] = values[j];
+            i = j;
+        }
+
+        values[i] = null;
+        size--;
+        return old;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the values in ascending order of their keys.
+     *
+     * @param generator creates the array of the requested length
+     * @return new array containing the values
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V[] values(IntFunction<V[]> generator) {
+        int[] sortedKeys = keys();
+        V[] result = generator.apply(sortedKeys.length);
+
+        for (int i = 0; i < sortedKeys.length; i++) result[i] = (V) values[indexOf(sortedKeys[i])];
+
+        return result;
+    }
+
+    /**
+     * @return new array containing the keys in ascending order
+     */
+    public synchronized int[] keys() {
+        int[] result = new int[size];
+        int j = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) result[j++] = keys[i];
+        }
+
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void resize(int capacity) {
+        int[]    oldKeys   = keys;
+        Object[] oldValues = values;
+
+        keys   = new int[capacity];
+        values = new Object[capacity];
+
+        int mask = capacity - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+
+            int j = hash(oldKeys[i]) & mask;
+            while (values[j] != null) j = (j + 1) & mask;
+
+            keys[j]   = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "IntObjectMap[size:" + size + " capacity:" + keys.length + "]";
+    }
+}
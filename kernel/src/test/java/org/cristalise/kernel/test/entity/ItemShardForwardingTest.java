@@ -0,0 +1,188 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.entity;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.cristalise.kernel.SystemProperties;
+import org.cristalise.kernel.entity.Item;
+import org.cristalise.kernel.entity.ItemVerticle;
+import org.cristalise.kernel.entity.ItemVertxEBProxy;
+import org.cristalise.kernel.entity.TraceableEntity;
+import org.cristalise.kernel.entity.proxy.ItemProxy;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.test.process.MainTest;
+import org.cristalise.kernel.utils.FileStringUtility;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.serviceproxy.ServiceBinder;
+
+/**
+ * Checks the forwarding of the requests arriving on the common address, and the fallback used when the shard
+ * of the Item is not owned. No ItemVerticle is deployed, the owner of one shard and the service of the common 
+ * address are replaced by services returning the name of their address.
+ */
+public class ItemShardForwardingTest {
+
+    static final int    SHARDS          = 4;
+    static final String FORWARD_ADDRESS = "test.forwarder";
+
+    static Vertx vertx;
+
+    /**
+     * Item of the shard with a registered owner
+     */
+    static String ownedUuid;
+    /**
+     * Item of a shard without owner
+     */
+    static String unownedUuid;
+
+    /**
+     * Returns the address it was registered on as the result of the request
+     */
+    static class AddressEchoItem implements Item {
+        final String address;
+
+        AddressEchoItem(String address) {
+            this.address = address;
+        }
+
+        @Override
+        public Future<String> requestAction(String itemUuid, String agentUuid, String stepPath, int transitionID, String requestData, String fileName, List<Byte> attachment) {
+            return Future.succeededFuture(address);
+        }
+
+        @Override
+        public Future<String> requestBinaryAction(String itemUuid, String agentUuid, String stepPath, int transitionID, String requestData, String fileName, String attachment) {
+            return Future.succeededFuture(address);
+        }
+
+        @Override
+        public Future<String> queryLifeCycle(String itemUuid, String agentUuid, boolean filter) {
+            return Future.succeededFuture(address);
+        }
+    }
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        Properties props = FileStringUtility.loadConfigFile(MainTest.class.getResource("/server.conf").getPath());
+        props.put(SystemProperties.ItemVerticle_shards.getSystemPropertyName(), String.valueOf(SHARDS));
+        Gateway.init(props);
+
+        vertx = Vertx.vertx();
+        FieldUtils.writeDeclaredStaticField(Gateway.class, "mVertx", vertx, true);
+
+        ownedUuid = UUID.randomUUID().toString();
+        do {
+            unownedUuid = UUID.randomUUID().toString();
+        }
+        while (ItemVerticle.getShard(ownedUuid, SHARDS) == ItemVerticle.getShard(unownedUuid, SHARDS));
+
+        String shardAddress = ItemVerticle.getAddress(ownedUuid);
+
+        // TraceableEntity awaits the forwarded request, so it must run on a virtual thread
+        vertx.deployVerticle(new AbstractVerticle() {
+            @Override
+            public void start() {
+                new ServiceBinder(vertx).setAddress(FORWARD_ADDRESS).register(Item.class, new TraceableEntity());
+                new ServiceBinder(vertx).setAddress(shardAddress).register(Item.class, new AddressEchoItem(shardAddress));
+                new ServiceBinder(vertx).setAddress(ItemVerticle.ebAddress).register(Item.class, new AddressEchoItem(ItemVerticle.ebAddress));
+            }
+        }, new DeploymentOptions().setThreadingModel(ThreadingModel.VIRTUAL_THREAD))
+        .toCompletionStage().toCompletableFuture().get(30, SECONDS);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        Gateway.close();
+    }
+
+    private String request(String address, String itemUuid) throws Exception {
+        return new ItemVertxEBProxy(vertx, address)
+                .requestBinaryAction(itemUuid, UUID.randomUUID().toString(), "workflow/domain/Step", 0, "", "", "")
+                .toCompletionStage().toCompletableFuture().get(10, SECONDS);
+    }
+
+    private String requestWithItemProxy(String itemUuid) throws Exception {
+        ItemProxy proxy = new ItemProxy(new ItemPath(itemUuid)) {};
+        return proxy.requestAction(itemUuid, UUID.randomUUID().toString(), "workflow/domain/Step", 0, "", "", null);
+    }
+
+    @Test
+    public void commonAddress_ForwardsRequestToOwnerOfShard() throws Exception {
+        assertEquals(ItemVerticle.getAddress(ownedUuid), request(FORWARD_ADDRESS, ownedUuid));
+    }
+
+    @Test
+    public void commonAddress_ExecutesRequestOfUnownedShard() throws Exception {
+        try {
+            request(FORWARD_ADDRESS, unownedUuid);
+            fail("Request of a non-existing Item shall fail");
+        }
+        catch (Exception e) {
+            // the request was executed locally instead of failing with NO_HANDLERS
+            assertFalse(ItemVerticle.isNoHandlers(e));
+            assertTrue(e.getCause() instanceof ReplyException);
+            assertEquals(ReplyFailure.RECIPIENT_FAILURE, ((ReplyException) e.getCause()).failureType());
+        }
+    }
+
+    @Test
+    public void unownedShard_IsNoHandlers() throws Exception {
+        try {
+            request(ItemVerticle.getAddress(unownedUuid), unownedUuid);
+            fail("Shard shall have no owner");
+        }
+        catch (Exception e) {
+            assertTrue(ItemVerticle.isNoHandlers(e));
+        }
+    }
+
+    @Test
+    public void itemProxy_SendsRequestToShard() throws Exception {
+        assertEquals(ItemVerticle.getAddress(ownedUuid), requestWithItemProxy(ownedUuid));
+    }
+
+    @Test
+    public void itemProxy_FallsBackToCommonAddress() throws Exception {
+        assertEquals(ItemVerticle.ebAddress, requestWithItemProxy(unownedUuid));
+    }
+}
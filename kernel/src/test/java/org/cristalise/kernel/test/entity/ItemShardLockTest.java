@@ -0,0 +1,120 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.entity;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.cristalise.kernel.SystemProperties;
+import org.cristalise.kernel.entity.ItemVerticle;
+import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.test.process.MainTest;
+import org.cristalise.kernel.utils.FileStringUtility;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Lock;
+
+/**
+ * Checks that the owner of a shard and the fallback executing the requests of an unowned shard cannot update 
+ * the same Item concurrently, also while the ownership of the shard is given up. The deployed ItemVerticle owns
+ * all shards, and each update reads the counter, sleeps and writes the incremented value, so concurrent updates
+ * are lost.
+ */
+public class ItemShardLockTest {
+
+    static final int SHARDS  = 4;
+    static final int UPDATES = 200;
+
+    static Vertx vertx;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        Properties props = FileStringUtility.loadConfigFile(MainTest.class.getResource("/server.conf").getPath());
+        props.put(SystemProperties.ItemVerticle_shards.getSystemPropertyName(), String.valueOf(SHARDS));
+        Gateway.init(props);
+
+        vertx = Vertx.vertx();
+        FieldUtils.writeDeclaredStaticField(Gateway.class, "mVertx", vertx, true);
+
+        DeploymentOptions options = new DeploymentOptions().setThreadingModel(ThreadingModel.VIRTUAL_THREAD);
+        vertx.deployVerticle(ItemVerticle.class, options).toCompletionStage().toCompletableFuture().get(30, SECONDS);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        Gateway.close();
+    }
+
+    private static Void update(String itemUuid, boolean shardOwner, AtomicInteger counter) throws Exception {
+        for (int i = 0; i < UPDATES; i++) {
+            Lock lock = ItemVerticle.getItemLock(vertx, itemUuid, shardOwner, 30000).toCompletionStage().toCompletableFuture().get(60, SECONDS);
+            try {
+                int value = counter.get();
+                Thread.sleep(1);
+                counter.set(value + 1);
+            }
+            finally {
+                lock.release();
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void ownerAndFallback_UpdateItemOneAtATime() throws Exception {
+        String itemUuid = UUID.randomUUID().toString();
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<Void> owner    = executor.submit(() -> update(itemUuid, true,  counter));
+            Future<Void> fallback = executor.submit(() -> update(itemUuid, false, counter));
+
+            // the fallback waits for the lock of the shard while it is owned
+            Thread.sleep(100);
+            assertFalse(fallback.isDone());
+
+            ItemVerticle.releaseShard(vertx, ItemVerticle.getShard(itemUuid, SHARDS)).toCompletionStage().toCompletableFuture().get(30, SECONDS);
+
+            owner.get(60, SECONDS);
+            fallback.get(60, SECONDS);
+
+            assertEquals(2 * UPDATES, counter.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.entity;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.cristalise.kernel.SystemProperties;
+import org.cristalise.kernel.entity.ItemVerticle;
+import org.cristalise.kernel.entity.proxy.ItemProxy;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.test.process.MainTest;
+import org.cristalise.kernel.utils.FileStringUtility;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+
+/**
+ * Checks the routing of the Item requests when ItemVerticle.shards is set. Surefire does not reuse the forks,
+ * so the static configuration of ItemVerticle is initialised with the shards set in this class.
+ */
+public class ItemVerticleTest {
+
+    static final int SHARDS = 4;
+
+    static Vertx vertx;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        Properties props = FileStringUtility.loadConfigFile(MainTest.class.getResource("/server.conf").getPath());
+        props.put(SystemProperties.ItemVerticle_shards.getSystemPropertyName(), String.valueOf(SHARDS));
+        Gateway.init(props);
+
+        vertx = Vertx.vertx();
+        FieldUtils.writeDeclaredStaticField(Gateway.class, "mVertx", vertx, true);
+
+        DeploymentOptions options = new DeploymentOptions().setThreadingModel(ThreadingModel.VIRTUAL_THREAD).setInstances(2);
+        vertx.deployVerticle(ItemVerticle.class, options).toCompletionStage().toCompletableFuture().get(30, SECONDS);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        Gateway.close();
+    }
+
+    @Test
+    public void getAddress_RoutesToShardOfItem() {
+        assertEquals(SHARDS, ItemVerticle.shards);
+
+        for (int i = 0; i < 100; i++) {
+            String uuid = UUID.randomUUID().toString();
+            int shard = ItemVerticle.getShard(uuid, SHARDS);
+
+            assertTrue(shard >= 0 && shard < SHARDS);
+            assertEquals(shard, ItemVerticle.getShard(uuid, SHARDS));
+            assertEquals(ItemVerticle.getShardAddress(shard), ItemVerticle.getAddress(uuid));
+            assertNotEquals(ItemVerticle.ebAddress, ItemVerticle.getAddress(uuid));
+        }
+    }
+
+    @Test
+    public void claimShards_LocksAllShards() throws Exception {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            try {
+                vertx.sharedData().getLockWithTimeout(ItemVerticle.getShardAddress(shard), 100)
+                        .toCompletionStage().toCompletableFuture().get(10, SECONDS);
+                fail("Shard " + shard + " shall be owned by the deployed ItemVerticle");
+            }
+            catch (Exception e) {
+                // lock is held by the owner of the shard
+            }
+        }
+    }
+
+    @Test
+    public void getItem_SendsRequestToOwnerOfShard() throws Exception {
+        ItemProxy proxy = new ItemProxy(new ItemPath(UUID.randomUUID().toString())) {};
+
+        try {
+            proxy.getItem().requestBinaryAction(proxy.getPath().getUUID().toString(), UUID.randomUUID().toString(), "workflow/domain/Step", 0, "", "", "")
+                    .toCompletionStage().toCompletableFuture().get(10, SECONDS);
+            fail("Request of a non-existing Item shall fail");
+        }
+        catch (Exception e) {
+            // the owner has received and executed the request, i.e. the failure is not NO_HANDLERS
+            assertFalse(ItemVerticle.isNoHandlers(e));
+            assertTrue(e.getCause() instanceof ReplyException);
+            assertEquals(ReplyFailure.RECIPIENT_FAILURE, ((ReplyException) e.getCause()).failureType());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.lifecycle;
+
+import static org.cristalise.kernel.graph.model.BuiltInVertexProperties.NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Properties;
+
+import org.cristalise.kernel.graph.model.GraphPoint;
+import org.cristalise.kernel.graph.model.GraphableVertex;
+import org.cristalise.kernel.lifecycle.instance.Activity;
+import org.cristalise.kernel.lifecycle.instance.CompositeActivity;
+import org.cristalise.kernel.lifecycle.instance.Workflow;
+import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.utils.FileStringUtility;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class WorkflowSearchTest {
+
+    Workflow wf;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        Properties props = FileStringUtility.loadConfigFile(WorkflowSearchTest.class.getResource("/server.conf").getPath());
+        Gateway.init(props);
+    }
+
+    @Before
+    public void setup() throws Exception {
+        String wfXML = FileStringUtility.url2String(WorkflowSearchTest.class.getResource("/LifeCycle.workflow"));
+        wf = (Workflow) Gateway.getMarshaller().unmarshall(wfXML);
+    }
+
+    @Test
+    public void searchByPathAndId() throws Exception {
+        GraphableVertex synthesis = wf.search("workflow/domain/Synthesis");
+
+        assertNotNull(synthesis);
+        assertEquals("Synthesis", synthesis.getName());
+        assertSame(synthesis, wf.search("workflow/domain/Synthesis"));
+        assertSame(synthesis, wf.search("workflow/domain/18"));
+        assertSame(synthesis, wf.search(synthesis.getPath()));
+
+        assertNull(wf.search("workflow/domain/NotExisting"));
+    }
+
+    @Test
+    public void searchAfterStructuralChange() throws Exception {
+        CompositeActivity domain = (CompositeActivity) wf.search("workflow/domain");
+
+        assertNull(wf.search("workflow/domain/NewStep"));
+
+        Activity newStep = domain.newAtomChild("NewStep", false, new GraphPoint(0, 0));
+        assertSame(newStep, wf.search("workflow/domain/NewStep"));
+
+        domain.getChildrenGraphModel().removeVertex(newStep);
+        assertNull(wf.search("workflow/domain/NewStep"));
+    }
+
+    @Test
+    public void searchAfterRename() throws Exception {
+        GraphableVertex synthesis = wf.search("workflow/domain/Synthesis");
+
+        synthesis.setName("Synthesis2");
+
+        assertNull(wf.search("workflow/domain/Synthesis"));
+        assertSame(synthesis, wf.search("workflow/domain/Synthesis2"));
+    }
+
+    @Test
+    public void searchAfterNamePropertyChange() throws Exception {
+        GraphableVertex synthesis = wf.search("workflow/domain/Synthesis");
+
+        synthesis.getProperties().setBuiltInProperty(NAME, "Alias");
+        assertSame(synthesis, wf.search("workflow/domain/Alias"));
+
+        synthesis.getProperties().setBuiltInProperty(NAME, "Alias2");
+        assertNull(wf.search("workflow/domain/Alias"));
+        assertSame(synthesis, wf.search("workflow/domain/Alias2"));
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.persistency;
+
+import static org.cristalise.kernel.graph.model.BuiltInVertexProperties.STATE_MACHINE_NAME;
+import static org.cristalise.kernel.graph.model.BuiltInVertexProperties.STATE_MACHINE_VERSION;
+import static org.cristalise.kernel.test.persistency.CastorXMLTest.compareXML;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.unitils.reflectionassert.ReflectionAssert.assertReflectionEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.cristalise.kernel.collection.Dependency;
+import org.cristalise.kernel.lifecycle.instance.Workflow;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.persistency.codec.BinaryXmlClusterCodec;
+import org.cristalise.kernel.persistency.codec.ClusterCodec;
+import org.cristalise.kernel.persistency.codec.XmlClusterCodec;
+import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.test.process.MainTest;
+import org.cristalise.kernel.utils.CastorHashMap;
+import org.cristalise.kernel.utils.FileStringUtility;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Round trip tests of the binary cluster codec. The benchmark comparing the size and the throughput
+ * of the Castor XML and the binary codecs is skipped unless the 'benchmark' profile is active.
+ */
+@Slf4j
+public class ClusterCodecBenchmarkTest {
+
+    private static final int WARMUP     = 50;
+    private static final int ITERATIONS = 200;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        Properties props = FileStringUtility.loadConfigFile(MainTest.class.getResource("/server.conf").getPath());
+        Gateway.init(props);
+    }
+
+    private long measureEncode(ClusterCodec codec, Object obj, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) codec.encode(obj);
+        return System.nanoTime() - start;
+    }
+
+    private long measureDecode(ClusterCodec codec, byte[] data, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) codec.decode(data);
+        return System.nanoTime() - start;
+    }
+
+    private static long opsPerSec(long nanos) {
+        return ITERATIONS * 1_000_000_000L / Math.max(1, nanos);
+    }
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        String xml = FileStringUtility.url2String(ClusterCodecBenchmarkTest.class.getResource("/LifeCycle.workflow"));
+        Workflow wf = (Workflow) Gateway.getMarshaller().unmarshall(xml);
+
+        ClusterCodec binary = new BinaryXmlClusterCodec();
+        Workflow decoded = (Workflow) binary.decode(binary.encode(wf));
+
+        String expected = Gateway.getMarshaller().marshall(wf);
+        String actual   = Gateway.getMarshaller().marshall(decoded);
+
+        assertTrue(compareXML(expected, actual));
+    }
+
+    @Test
+    public void binaryRoundTrip_JobActProps() throws Exception {
+        CastorHashMap actProps = new CastorHashMap();
+        actProps.setBuiltInProperty(STATE_MACHINE_NAME, "Default");
+        actProps.setBuiltInProperty(STATE_MACHINE_VERSION, 0);
+        actProps.put("Description", "<b>escaped</b> & text", true);
+        actProps.put("Breakpoint", false);
+        actProps.put("Counter", 3.5);
+
+        ClusterCodec binary = new BinaryXmlClusterCodec();
+        CastorHashMap decoded = (CastorHashMap) binary.decode(binary.encode(actProps));
+
+        assertEquals(actProps, decoded);
+        assertEquals(actProps.getAbstract(), decoded.getAbstract());
+        assertTrue(compareXML(Gateway.getMarshaller().marshall(actProps), Gateway.getMarshaller().marshall(decoded)));
+    }
+
+    @Test
+    public void binaryRoundTrip_Collection() throws Exception {
+        Dependency dep = new Dependency("TestDep");
+        CastorHashMap collProps = new CastorHashMap();
+        collProps.put("Type", "Unknown");
+        collProps.put("State", "Unmanaged");
+        dep.setProperties(collProps);
+
+        CastorHashMap memberProps = new CastorHashMap();
+        memberProps.put("Name", "myName");
+        memberProps.put("Stats", "chaotic");
+        dep.addMember(new ItemPath(), memberProps, "", null);
+        dep.getCounter();
+
+        ClusterCodec binary = new BinaryXmlClusterCodec();
+        Dependency decoded = (Dependency) binary.decode(binary.encode(dep));
+        decoded.getCounter();
+
+        assertReflectionEquals(dep, decoded);
+        assertTrue(compareXML(Gateway.getMarshaller().marshall(dep), Gateway.getMarshaller().marshall(decoded)));
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        assumeTrue("Enable with -Pbenchmark", Boolean.getBoolean("benchmark"));
+
+        String xml = FileStringUtility.url2String(ClusterCodecBenchmarkTest.class.getResource("/LifeCycle.workflow"));
+        Workflow wf = (Workflow) Gateway.getMarshaller().unmarshall(xml);
+
+        ClusterCodec castor = new XmlClusterCodec();
+        ClusterCodec binary = new BinaryXmlClusterCodec();
+
+        byte[] xmlData    = castor.encode(wf);
+        byte[] binaryData = binary.encode(wf);
+
+        measureEncode(castor, wf, WARMUP);
+        measureEncode(binary, wf, WARMUP);
+        measureDecode(castor, xmlData, WARMUP);
+        measureDecode(binary, binaryData, WARMUP);
+
+        long xmlEncode    = measureEncode(castor, wf, ITERATIONS);
+        long binaryEncode = measureEncode(binary, wf, ITERATIONS);
+        long xmlDecode    = measureDecode(castor, xmlData, ITERATIONS);
+        long binaryDecode = measureDecode(binary, binaryData, ITERATIONS);
+
+        log.info("benchmark() - Workflow size xml:{} bytes binary:{} bytes ({} chars)",
+                xmlData.length, binaryData.length, new String(xmlData, StandardCharsets.UTF_8).length());
+        log.info("benchmark() - encode xml:{} ops/s binary:{} ops/s", opsPerSec(xmlEncode), opsPerSec(binaryEncode));
+        log.info("benchmark() - decode xml:{} ops/s binary:{} ops/s", opsPerSec(xmlDecode), opsPerSec(binaryDecode));
+    }
+}
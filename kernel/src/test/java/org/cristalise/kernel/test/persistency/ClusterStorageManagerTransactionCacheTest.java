@@ -0,0 +1,162 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.persistency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.cristalise.kernel.common.ObjectNotFoundException;
+import org.cristalise.kernel.entity.C2KLocalObject;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.persistency.ClusterStorageManager;
+import org.cristalise.kernel.persistency.TransactionKey;
+import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.property.Property;
+import org.cristalise.kernel.test.process.MainTest;
+import org.cristalise.kernel.utils.FileStringUtility;
+import org.cristalise.storage.MemoryOnlyClusterStorage;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.cache.Cache;
+
+public class ClusterStorageManagerTransactionCacheTest {
+
+    ClusterStorageManager storage;
+    Cache<String, C2KLocalObject> sharedCache;
+    ItemPath itemPath;
+    String fullPath;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        Properties props = FileStringUtility.loadConfigFile(MainTest.class.getResource("/server.conf").getPath());
+        Gateway.init(props);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        Gateway.close();
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        Gateway.getProperties().put("ClusterStorage", new ArrayList<>(Arrays.asList(new MemoryOnlyClusterStorage())));
+
+        storage = new ClusterStorageManager();
+        sharedCache = (Cache<String, C2KLocalObject>) FieldUtils.readField(storage, "cache", true);
+
+        itemPath = new ItemPath(UUID.randomUUID());
+        fullPath = itemPath.getUUID() + "/Property/Name";
+
+        storage.put(itemPath, new Property("Name", "committed"), null);
+    }
+
+    @Test
+    public void readYourWritesAndPublishOnCommit() throws Exception {
+        TransactionKey transactionKey = new TransactionKey(itemPath);
+        Property newName = new Property("Name", "uncommitted");
+
+        storage.begin(transactionKey);
+        storage.put(itemPath, newName, transactionKey);
+
+        assertSame(newName, storage.get(itemPath, "Property/Name", transactionKey));
+        assertEquals("committed", ((Property) sharedCache.getIfPresent(fullPath)).getValue());
+
+        storage.commit(transactionKey);
+
+        assertSame(newName, sharedCache.getIfPresent(fullPath));
+    }
+
+    @Test
+    public void dropOnAbort() throws Exception {
+        TransactionKey transactionKey = new TransactionKey(itemPath);
+
+        storage.begin(transactionKey);
+        storage.put(itemPath, new Property("Name", "uncommitted"), transactionKey);
+        storage.abort(transactionKey);
+
+        assertEquals("committed", ((Property) sharedCache.getIfPresent(fullPath)).getValue());
+    }
+
+    @Test
+    public void readMutateAbortAndReread() throws Exception {
+        TransactionKey transactionKey = new TransactionKey(itemPath);
+
+        storage.begin(transactionKey);
+
+        Property name = (Property) storage.get(itemPath, "Property/Name", transactionKey);
+        name.setValue("uncommitted");
+
+        assertNotSame(sharedCache.getIfPresent(fullPath), name);
+        assertSame(name, storage.get(itemPath, "Property/Name", transactionKey));
+
+        storage.abort(transactionKey);
+
+        assertEquals("committed", ((Property) storage.get(itemPath, "Property/Name", null)).getValue());
+    }
+
+    @Test
+    public void readIsNotPublishedOnCommit() throws Exception {
+        TransactionKey transactionKey = new TransactionKey(itemPath);
+
+        storage.begin(transactionKey);
+        storage.get(itemPath, "Property/Name", transactionKey);
+
+        Property newName = new Property("Name", "committedByOther");
+        storage.put(itemPath, newName, null);
+
+        storage.commit(transactionKey);
+
+        assertSame(newName, sharedCache.getIfPresent(fullPath));
+    }
+
+    @Test
+    public void removeOnCommit() throws Exception {
+        TransactionKey transactionKey = new TransactionKey(itemPath);
+
+        storage.begin(transactionKey);
+        storage.remove(itemPath, "Property/Name", transactionKey);
+
+        try {
+            storage.get(itemPath, "Property/Name", transactionKey);
+            fail("Removed object shall not be returned in the same transaction");
+        }
+        catch (ObjectNotFoundException e) {}
+
+        assertEquals("committed", ((Property) sharedCache.getIfPresent(fullPath)).getValue());
+
+        storage.commit(transactionKey);
+
+        assertNull(sharedCache.getIfPresent(fullPath));
+    }
+}
@@ -25,10 +25,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.cristalise.kernel.SystemProperties;
+import org.cristalise.kernel.entity.C2KLocalObject;
 import org.cristalise.kernel.events.Event;
 import org.cristalise.kernel.events.History;
 import org.cristalise.kernel.lookup.ItemPath;
@@ -87,4 +90,65 @@ public class HistoryTest {
         assertThat(event29.getTimeStamp().mNano).isEqualTo(0);
     }
 
+    @Test
+    public void getRange() throws Exception {
+        History history = new History(itemPath, null);
+
+        List<Event> events = history.getRange(5, 10);
+
+        assertEquals(5, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(5 + i, events.get(i).getID().intValue());
+            assertThat(events.get(i)).isEqualToComparingFieldByFieldRecursively(history.getEvent(5 + i));
+        }
+
+        events = history.getRange(-3, 2);
+        assertEquals(2, events.size());
+        assertEquals(0, events.get(0).getID().intValue());
+        assertEquals(1, events.get(1).getID().intValue());
+
+        events = history.getRange(28, 40);
+        assertEquals(2, events.size());
+        assertEquals(28, events.get(0).getID().intValue());
+        assertEquals(29, events.get(1).getID().intValue());
+
+        assertTrue(history.getRange(3, 3).isEmpty());
+        assertTrue(history.getRange(30, 40).isEmpty());
+    }
+
+    @Test
+    public void listHistory() throws Exception {
+        History history = new History(itemPath, null);
+
+        Map<Integer, Event> batch = history.list(0, 10, false);
+        assertThat(batch.keySet()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+        batch = history.list(0, 5, true);
+        assertThat(batch.keySet()).containsExactly(29, 28, 27, 26, 25);
+
+        batch = history.list(25, 10, true);
+        assertThat(batch.keySet()).containsExactly(4, 3, 2, 1, 0);
+    }
+
+    @Test
+    public void getIntegerIdRange_MixesCachedAndStoredEvents() throws Exception {
+        ClusterStorageManager storage = Gateway.getStorage();
+
+        Event event12 = (Event)storage.get(itemPath, "AuditTrail/12", null);
+
+        List<C2KLocalObject> objects = storage.getIntegerIdRange(itemPath, "/AuditTrail", 10, 15, null);
+
+        assertEquals(5, objects.size());
+        for (int i = 0; i < objects.size(); i++) assertEquals(String.valueOf(10 + i), objects.get(i).getName());
+
+        assertThat(objects.get(2)).isEqualToComparingFieldByFieldRecursively(event12);
+        assertTrue(storage.getIntegerIdRange(itemPath, "AuditTrail", 40, 45, null).isEmpty());
+    }
+
+    @Test
+    public void getLastStoredIntegerId() throws Exception {
+        assertEquals(29, Gateway.getStorage().getLastStoredIntegerId(itemPath, "AuditTrail", null));
+        assertEquals(29, Gateway.getStorage().getLastIntegerId(itemPath, "/AuditTrail", null));
+    }
+
 }
@@ -0,0 +1,155 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.persistency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.cristalise.kernel.common.PersistencyException;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.persistency.ItemLockManager;
+import org.cristalise.kernel.persistency.TransactionKey;
+import org.junit.Test;
+
+public class ItemLockManagerTest {
+
+    ItemPath itemA = new ItemPath();
+    ItemPath itemB = new ItemPath();
+
+    TransactionKey key1 = new TransactionKey("t1");
+    TransactionKey key2 = new TransactionKey("t2");
+
+    @Test
+    public void failFastWithoutTimeout() throws Exception {
+        ItemLockManager locks = new ItemLockManager(0);
+        locks.begin(key1);
+        locks.begin(key2);
+
+        locks.lock(itemA, key1);
+        locks.lock(itemA, key1);
+        locks.lock(itemB, key2);
+
+        try {
+            locks.lock(itemA, key2);
+            fail("Item locked by other transaction shall throw exception");
+        }
+        catch (PersistencyException e) {}
+
+        locks.release(key1);
+        assertNull(locks.getLockingTransaction(itemA));
+
+        locks.lock(itemA, key2);
+        assertEquals(key2, locks.getLockingTransaction(itemA));
+        assertEquals(1, locks.getContentionCount());
+
+        locks.release(key2);
+        assertEquals(0, locks.getLockedItemCount());
+    }
+
+    @Test(expected = PersistencyException.class)
+    public void beginTwice() throws Exception {
+        ItemLockManager locks = new ItemLockManager(0);
+        locks.begin(key1);
+        locks.begin(key1);
+    }
+
+    @Test
+    public void waitForRelease() throws Exception {
+        ItemLockManager locks = new ItemLockManager(5000);
+        locks.begin(key1);
+        locks.begin(key2);
+        locks.lock(itemA, key1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiter = executor.submit(() -> { locks.lock(itemA, key2); return null; });
+
+            Thread.sleep(100);
+            locks.release(key1);
+
+            waiter.get(5, TimeUnit.SECONDS);
+            assertEquals(key2, locks.getLockingTransaction(itemA));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        ItemLockManager locks = new ItemLockManager(100);
+        locks.begin(key1);
+        locks.begin(key2);
+        locks.lock(itemA, key1);
+
+        try {
+            locks.lock(itemA, key2);
+            fail("Waiting for the lock shall time out");
+        }
+        catch (PersistencyException e) {}
+
+        assertEquals(1, locks.getTimeoutCount());
+        assertTrue(locks.getWaitTimeMillis() >= 100);
+    }
+
+    @Test
+    public void deadlockDetection() throws Exception {
+        ItemLockManager locks = new ItemLockManager(10000);
+        locks.begin(key1);
+        locks.begin(key2);
+        locks.lock(itemA, key1);
+        locks.lock(itemB, key2);
+
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // key2 waits for itemA held by key1
+            Future<?> waiter = executor.submit(() -> { started.countDown(); locks.lock(itemA, key2); return null; });
+
+            started.await();
+            Thread.sleep(100);
+
+            try {
+                // key1 waiting for itemB held by key2 would be a deadlock
+                locks.lock(itemB, key1);
+                fail("Deadlock shall be detected");
+            }
+            catch (PersistencyException e) {}
+
+            assertEquals(1, locks.getDeadlockCount());
+
+            locks.release(key1);
+            waiter.get(5, TimeUnit.SECONDS);
+            assertEquals(key2, locks.getLockingTransaction(itemA));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.persistency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.cristalise.kernel.persistency.outcome.Outcome;
+import org.cristalise.kernel.utils.FileStringUtility;
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks that Outcome.serialize() using cached Templates/Transformers produces the same output as the
+ * previous implementation creating a new TransformerFactory and Transformer for each call. The throughput
+ * of the two implementations is only measured when the tests are run with the 'benchmark' profile.
+ */
+@Slf4j
+public class OutcomeSerializeBenchmarkTest {
+
+    private static final int WARMUP     = 200;
+    private static final int ITERATIONS = 1000;
+
+    private static String uncachedSerialize(Node node, boolean prettyPrint) throws Exception {
+        TransformerFactory tf = TransformerFactory.newInstance();
+        Transformer transformer;
+
+        if (prettyPrint) {
+            tf.setAttribute("indent-number", 2);
+            InputStream is = Outcome.class.getResourceAsStream("/org/cristalise/kernel/utils/resources/textFiles/prettyPrint.xslt");
+            transformer = tf.newTransformer(new StreamSource(is));
+            transformer.setOutputProperty(OutputKeys.STANDALONE, "no");
+        }
+        else {
+            transformer = tf.newTransformer();
+        }
+
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+
+        StringWriter out = new StringWriter();
+        transformer.transform(new DOMSource(node), new StreamResult(out));
+        return out.toString();
+    }
+
+    private long measureUncached(Outcome outcome, boolean prettyPrint, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) uncachedSerialize(outcome.getDOM(), prettyPrint);
+        return System.nanoTime() - start;
+    }
+
+    private long measureCached(Outcome outcome, boolean prettyPrint, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) Outcome.serialize(outcome.getDOM(), prettyPrint);
+        return System.nanoTime() - start;
+    }
+
+    private static Outcome loadOutcome(String resource) throws Exception {
+        return new Outcome(FileStringUtility.url2String(OutcomeSerializeBenchmarkTest.class.getResource("/" + resource)));
+    }
+
+    private void checkSerialize(String resource) throws Exception {
+        Outcome outcome = loadOutcome(resource);
+
+        assertEquals(uncachedSerialize(outcome.getDOM(), false), Outcome.serialize(outcome.getDOM(), false));
+        assertEquals(uncachedSerialize(outcome.getDOM(), true),  Outcome.serialize(outcome.getDOM(), true));
+    }
+
+    private void benchmark(String resource, boolean prettyPrint) throws Exception {
+        Outcome outcome = loadOutcome(resource);
+
+        measureUncached(outcome, prettyPrint, WARMUP);
+        measureCached(outcome, prettyPrint, WARMUP);
+
+        long uncached = measureUncached(outcome, prettyPrint, ITERATIONS);
+        long cached   = measureCached(outcome, prettyPrint, ITERATIONS);
+
+        log.info("benchmark() - {} ({} chars) prettyPrint:{} uncached:{} ops/s cached:{} ops/s",
+                resource, outcome.getData().length(), prettyPrint, opsPerSec(uncached), opsPerSec(cached));
+    }
+
+    private static long opsPerSec(long nanos) {
+        return ITERATIONS * 1_000_000_000L / Math.max(1, nanos);
+    }
+
+    @Test
+    public void smallOutcome() throws Exception {
+        checkSerialize("outcomeTest.xml");
+    }
+
+    @Test
+    public void mediumOutcome() throws Exception {
+        checkSerialize("allPatients.xml");
+    }
+
+    @Test
+    public void largeOutcome() throws Exception {
+        checkSerialize("LifeCycle.workflow");
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        assumeTrue("Enable with -Pbenchmark", Boolean.getBoolean("benchmark"));
+
+        for (String resource : new String[] {"outcomeTest.xml", "allPatients.xml", "LifeCycle.workflow"}) {
+            benchmark(resource, false);
+            benchmark(resource, true);
+        }
+    }
+}
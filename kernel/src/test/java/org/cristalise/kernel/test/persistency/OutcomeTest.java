@@ -27,17 +27,22 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.cristalise.kernel.common.InvalidDataException;
 import org.cristalise.kernel.lookup.ItemPath;
 import org.cristalise.kernel.persistency.outcome.Outcome;
 import org.cristalise.kernel.persistency.outcome.Schema;
 import org.cristalise.kernel.persistency.outcome.Viewpoint;
+import org.cristalise.kernel.persistency.outcome.XPathExpressionCache;
 import org.cristalise.kernel.process.Gateway;
 import org.cristalise.kernel.test.process.MainTest;
 import org.cristalise.kernel.utils.FileStringUtility;
@@ -404,4 +409,37 @@ public class OutcomeTest {
         assertEquals("<xml>input</xml>", testOc.getField("Field4"));
         log.info(testOc.getData());
     }
+
+    @Test
+    public void testConcurrentParse() throws Exception {
+        String xml = testOc.getData();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> new Outcome(xml).getField("Field1")));
+            }
+
+            for (Future<String> result : results) assertEquals("Field1contents", result.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertTrue(Outcome.getParserPool().getBorrowCount() >= 200);
+        log.info("testConcurrentParse() - {}", Outcome.getParserPool());
+    }
+
+    @Test
+    public void testXPathCache() throws Exception {
+        XPathExpressionCache cache = Outcome.getXPathCache();
+
+        testOc.getFieldByXPath("//Field1");
+        long hits = cache.getHitCount();
+
+        assertEquals("Field1contents", testOc.getFieldByXPath("//Field1"));
+        assertEquals(hits + 1, cache.getHitCount());
+    }
 }
@@ -0,0 +1,221 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.security;
+
+import static org.cristalise.kernel.entity.proxy.ProxyMessage.Type.ADD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.realm.AuthorizingRealm;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.cristalise.kernel.SystemProperties;
+import org.cristalise.kernel.entity.proxy.ProxyMessage;
+import org.cristalise.kernel.lifecycle.instance.Activity;
+import org.cristalise.kernel.lookup.AgentPath;
+import org.cristalise.kernel.lookup.ItemPath;
+import org.cristalise.kernel.persistency.ClusterStorageManager;
+import org.cristalise.kernel.process.Gateway;
+import org.cristalise.kernel.property.Property;
+import org.cristalise.kernel.security.SecurityManager;
+import org.cristalise.kernel.test.process.MainTest;
+import org.cristalise.kernel.utils.FileStringUtility;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SecurityManagerTest {
+
+    static String   uuid = "fcecd4ad-40eb-421c-a648-edc1d74f339b";
+    static ItemPath itemPath;
+    static Path     tempDir;
+
+    AgentPath agent = new AgentPath(new ItemPath(), "dev");
+    Activity  act   = new Activity();
+
+    /**
+     * Records the permissions checked by Shiro, i.e. the ones not served from the cache of SecurityManager
+     */
+    public static class RecordingRealm extends AuthorizingRealm {
+        static final List<String> checkedPermissions = new CopyOnWriteArrayList<>();
+        static volatile Set<String> permissions = Set.of("*");
+
+        public RecordingRealm() {
+            setAuthorizationCachingEnabled(false);
+        }
+
+        @Override
+        public boolean isPermitted(PrincipalCollection principals, String permission) {
+            checkedPermissions.add(permission);
+            return super.isPermitted(principals, permission);
+        }
+
+        @Override
+        protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+            SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+            info.setStringPermissions(permissions);
+            return info;
+        }
+
+        @Override
+        protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) {
+            return null;
+        }
+    }
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        // the Name of the Item is updated by the tests, so the storage is copied
+        tempDir = Files.createTempDirectory("SecurityManagerTest");
+        Path propertyDir = Files.createDirectories(tempDir.resolve(uuid + "/Property"));
+        try (Stream<Path> files = Files.list(Paths.get("src/test/data/xmlstorage/directorybased/" + uuid + "/Property"))) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.copy(file, propertyDir.resolve(file.getFileName()));
+        }
+
+        Path shiroIni = tempDir.resolve("shiro.ini");
+        Files.writeString(shiroIni, "[main]\n"
+                + "recordingRealm = " + RecordingRealm.class.getName() + "\n"
+                + "securityManager.realms = $recordingRealm\n");
+
+        Properties props = FileStringUtility.loadConfigFile(MainTest.class.getResource("/server.conf").getPath());
+        props.put(SystemProperties.XMLStorage_root.getSystemPropertyName(), tempDir.toString());
+        props.put(SystemProperties.Shiro_iniFile.getSystemPropertyName(), shiroIni.toString());
+        Gateway.init(props);
+        FieldUtils.writeDeclaredStaticField(Gateway.class, "mStorage", new ClusterStorageManager(), true);
+
+        itemPath = new ItemPath(uuid);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        Gateway.close();
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        RecordingRealm.checkedPermissions.clear();
+        RecordingRealm.permissions = Set.of("*");
+        act.setName("Step");
+    }
+
+    /**
+     * ProxyMessages are parsed from their string form by the subscribers
+     */
+    private ProxyMessage received(ProxyMessage message) throws Exception {
+        return new ProxyMessage(message.toString());
+    }
+
+    private String getName() throws Exception {
+        return ((Property) Gateway.getStorage().get(itemPath, "Property/Name", null)).getValue();
+    }
+
+    @Test
+    public void checkPermissions_CacheHit() throws Exception {
+        SecurityManager security = new SecurityManager();
+
+        assertTrue(security.checkPermissions(agent, act, itemPath, null));
+        assertTrue(security.checkPermissions(agent, act, itemPath, null));
+
+        assertEquals(List.of("Batch:Step:" + getName()), RecordingRealm.checkedPermissions);
+    }
+
+    @Test
+    public void propertyMessage_ClearsItemEntries() throws Exception {
+        SecurityManager security = new SecurityManager();
+        String originalName = getName();
+
+        assertTrue(security.checkPermissions(agent, act, itemPath, null));
+
+        Gateway.getStorage().put(itemPath, new Property("Name", "Renamed", true), null);
+
+        try {
+            // the Name is served from the cache until the ProxyMessage is received
+            assertTrue(security.checkPermissions(agent, act, itemPath, null));
+            assertEquals(1, RecordingRealm.checkedPermissions.size());
+
+            security.clearPermissionCache(received(new ProxyMessage(itemPath, "Property/Name", ADD)));
+
+            assertTrue(security.checkPermissions(agent, act, itemPath, null));
+            assertEquals(List.of("Batch:Step:" + originalName, "Batch:Step:Renamed"), RecordingRealm.checkedPermissions);
+        }
+        finally {
+            Gateway.getStorage().put(itemPath, new Property("Name", originalName, true), null);
+        }
+    }
+
+    @Test
+    public void roleMessage_ClearsAgentDecisions() throws Exception {
+        SecurityManager security = new SecurityManager();
+
+        assertTrue(security.checkPermissions(agent, act, itemPath, null));
+
+        // permissions of the Role were changed, e.g. by setPermissions()
+        RecordingRealm.permissions = Set.of("Other:*");
+
+        assertTrue(security.checkPermissions(agent, act, itemPath, null));
+        assertEquals(1, RecordingRealm.checkedPermissions.size());
+
+        // the message sent by addRole(), removeRole() and setPermissions() of the LookupManager
+        ProxyMessage roleMessage = received(new ProxyMessage(null, "/role/Admin", ADD));
+        assertTrue(roleMessage.isRoleMessage());
+
+        security.clearPermissionCache(roleMessage);
+
+        assertFalse(security.checkPermissions(agent, act, itemPath, null));
+        assertEquals(2, RecordingRealm.checkedPermissions.size());
+    }
+
+    @Test
+    public void blankCacheSpec_DisablesCache() throws Exception {
+        Gateway.getProperties().put(SystemProperties.SecurityManager_permissionCacheSpec.getSystemPropertyName(), "");
+
+        try {
+            SecurityManager security = new SecurityManager();
+
+            assertTrue(security.checkPermissions(agent, act, itemPath, null));
+            assertTrue(security.checkPermissions(agent, act, itemPath, null));
+
+            assertEquals(2, RecordingRealm.checkedPermissions.size());
+        }
+        finally {
+            Gateway.getProperties().remove(SystemProperties.SecurityManager_permissionCacheSpec.getSystemPropertyName());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * This file is part of the CRISTAL-iSE kernel.
+ * Copyright (c) 2001-2015 The CRISTAL Consortium. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; with out even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation,
+ * Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.
+ *
+ * http://www.fsf.org/licensing/licenses/lgpl.html
+ */
+package org.cristalise.kernel.test.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.cristalise.kernel.utils.IntObjectMap;
+import org.junit.Test;
+
+public class IntObjectMapTest {
+
+    @Test
+    public void putGetRemove() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(-1, "minus one"));
+        assertEquals("one", map.put(1, "ONE"));
+
+        assertEquals(2, map.size());
+        assertEquals("ONE", map.get(1));
+        assertEquals("minus one", map.get(-1));
+        assertNull(map.get(2));
+
+        assertEquals("ONE", map.remove(1));
+        assertFalse(map.containsKey(1));
+        assertNull(map.remove(1));
+        assertEquals(1, map.size());
+
+        map.put(-1, null);
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void valuesAreOrderedByKey() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+
+        for (int i : new int[] {42, 3, 17, 0, 8}) map.put(i, i);
+
+        assertArrayEquals(new int[] {0, 3, 8, 17, 42}, map.keys());
+        assertArrayEquals(new Integer[] {0, 3, 8, 17, 42}, map.values(Integer[]::new));
+    }
+
+    @Test
+    public void randomOperationsMatchHashMap() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1234);
+
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(500);
+
+            if (random.nextInt(3) == 0) assertEquals(expected.remove(key), map.remove(key));
+            else                        assertEquals(expected.put(key, i), map.put(key, i));
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 500; key++) assertEquals(expected.get(key), map.get(key));
+    }
+}
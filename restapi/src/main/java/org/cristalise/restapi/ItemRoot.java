@@ -41,12 +41,14 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.lang3.StringUtils;
@@ -303,6 +305,21 @@ public class ItemRoot extends ItemUtils {
 
     private Response.ResponseBuilder returnQueryResult(String queryName, ItemProxy item,
                                        Object object, Query query, boolean jsonFlag) throws PersistencyException {
+        //JSON is not streamed, because the streaming writer returns the XML columns as strings instead of nested objects
+        if (!jsonFlag && Gateway.getStorage().checkQueryStreamingSupport(query)) {
+            //the result is written directly to the response (chunked) instead of building a String first
+            StreamingOutput stream = out -> {
+                try {
+                    item.executeQuery(query, out, false);
+                }
+                catch (PersistencyException e) {
+                    log.error("returnQueryResult() - could not execute query:{}", queryName, e);
+                    throw new WebApplicationException(e);
+                }
+            };
+            return Response.ok(stream);
+        }
+
         String xmlResult = item.executeQuery(query);
 
         if (jsonFlag) return Response.ok(XML.toJSONObject(xmlResult, true).toString());